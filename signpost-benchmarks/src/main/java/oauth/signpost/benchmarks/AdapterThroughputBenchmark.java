@@ -0,0 +1,319 @@
+package oauth.signpost.benchmarks;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
+import oauth.signpost.commonshttp3.CommonsHttp3OAuthConsumer;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.java11.Java11OAuthConsumer;
+import oauth.signpost.jetty.JettyOAuthConsumer;
+
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.mortbay.io.ByteArrayBuffer;
+import org.mortbay.jetty.client.ContentExchange;
+import org.mortbay.jetty.client.HttpExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signs and sends a request to a protected resource on an
+ * {@link OAuthStubServer} through each HTTP library Signpost supports, so
+ * that the cost of the adapters (header copies, body buffering, rebuilding the
+ * URL) shows up next to that of the round trip. The server verifies every
+ * signature; a request it rejects fails the benchmark.
+ * <p>
+ * Reports requests per millisecond and the latency distribution (-prof gc
+ * adds allocations). Run with several threads (-t) to load the client's
+ * connection pool. HttpURLConnection can't expose the body it sends, so for
+ * form bodies its consumer is given the body parameters as additional
+ * parameters, as GettingStarted.md advises.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdapterThroughputBenchmark {
+
+    @Param({ "HttpURLConnection", "commonshttp4", "commonshttp3", "jetty6", "java11" })
+    public String adapter;
+
+    @Param({ "0", "4096" })
+    public int bodySize;
+
+    private OAuthStubServer server;
+
+    private Client client;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new OAuthStubServer();
+        String url = server.url(OAuthStubServer.RESOURCE_PATH) + "?" + Fixtures.query(2);
+        String body = Fixtures.formBody(bodySize);
+        if ("HttpURLConnection".equals(adapter)) {
+            client = new UrlConnectionClient(url, body);
+        } else if ("commonshttp4".equals(adapter)) {
+            client = new CommonsHttp4Client(url, body);
+        } else if ("commonshttp3".equals(adapter)) {
+            client = new CommonsHttp3Client(url, body);
+        } else if ("jetty6".equals(adapter)) {
+            client = new Jetty6Client(url, body);
+        } else {
+            client = new Java11Client(url, body);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+        if (server.rejected() > 0) {
+            throw new IllegalStateException(server.rejected() + " requests didn't verify");
+        }
+    }
+
+    @Benchmark
+    public int signAndSend() throws Exception {
+        int status = client.send();
+        if (status != 200) {
+            throw new IllegalStateException("server answered " + status);
+        }
+        return status;
+    }
+
+    private abstract static class Client {
+
+        final String url;
+
+        final String body;
+
+        final OAuthConsumer consumer;
+
+        Client(String url, String body, OAuthConsumer consumer) {
+            this.url = url;
+            this.body = body;
+            this.consumer = consumer;
+            consumer.setTokenWithSecret(Fixtures.TOKEN, Fixtures.TOKEN_SECRET);
+        }
+
+        abstract int send() throws Exception;
+
+        void close() throws Exception {
+        }
+    }
+
+    private static final class UrlConnectionClient extends Client {
+
+        UrlConnectionClient(String url, String body) {
+            super(url, body, new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY,
+                    Fixtures.CONSUMER_SECRET));
+            if (!body.isEmpty()) {
+                HttpParameters bodyParams = new HttpParameters();
+                bodyParams.putAll(OAuth.decodeForm(body), true);
+                consumer.setAdditionalParameters(bodyParams);
+            }
+        }
+
+        @Override
+        int send() throws Exception {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            if (!body.isEmpty()) {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", OAuth.FORM_ENCODED);
+            }
+            consumer.sign(connection);
+            if (!body.isEmpty()) {
+                OutputStream out = connection.getOutputStream();
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            // read to the end, so that the connection goes back to the
+            // keep-alive cache
+            InputStream in = status < 400 ? connection.getInputStream() : connection
+                    .getErrorStream();
+            if (in != null) {
+                while (in.read() != -1) {
+                }
+                in.close();
+            }
+            return status;
+        }
+    }
+
+    private static final class CommonsHttp4Client extends Client {
+
+        private final CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnPerRoute(64).setMaxConnTotal(64).build();
+
+        CommonsHttp4Client(String url, String body) {
+            super(url, body, new CommonsHttpOAuthConsumer(Fixtures.CONSUMER_KEY,
+                    Fixtures.CONSUMER_SECRET));
+        }
+
+        @Override
+        int send() throws Exception {
+            HttpUriRequest request;
+            if (body.isEmpty()) {
+                request = new HttpGet(url);
+            } else {
+                HttpPost post = new HttpPost(url);
+                post.setEntity(new StringEntity(body, ContentType.APPLICATION_FORM_URLENCODED));
+                request = post;
+            }
+            consumer.sign(request);
+            CloseableHttpResponse response = httpClient.execute(request);
+            try {
+                EntityUtils.consume(response.getEntity());
+                return response.getStatusLine().getStatusCode();
+            } finally {
+                response.close();
+            }
+        }
+
+        @Override
+        void close() throws Exception {
+            httpClient.close();
+        }
+    }
+
+    private static final class CommonsHttp3Client extends Client {
+
+        private final MultiThreadedHttpConnectionManager connectionManager =
+                new MultiThreadedHttpConnectionManager();
+
+        private final org.apache.commons.httpclient.HttpClient httpClient;
+
+        CommonsHttp3Client(String url, String body) {
+            super(url, body, new CommonsHttp3OAuthConsumer(Fixtures.CONSUMER_KEY,
+                    Fixtures.CONSUMER_SECRET));
+            connectionManager.getParams().setDefaultMaxConnectionsPerHost(64);
+            connectionManager.getParams().setMaxTotalConnections(64);
+            httpClient = new org.apache.commons.httpclient.HttpClient(connectionManager);
+        }
+
+        @Override
+        int send() throws Exception {
+            org.apache.commons.httpclient.HttpMethod method;
+            if (body.isEmpty()) {
+                method = new GetMethod(url);
+            } else {
+                PostMethod post = new PostMethod(url);
+                post.setRequestEntity(new StringRequestEntity(body, OAuth.FORM_ENCODED,
+                        "UTF-8"));
+                method = post;
+            }
+            consumer.sign(method);
+            try {
+                int status = httpClient.executeMethod(method);
+                method.getResponseBody();
+                return status;
+            } finally {
+                method.releaseConnection();
+            }
+        }
+
+        @Override
+        void close() {
+            connectionManager.shutdown();
+        }
+    }
+
+    private static final class Java11Client extends Client {
+
+        private final java.net.http.HttpClient httpClient = java.net.http.HttpClient
+            .newHttpClient();
+
+        Java11Client(String url, String body) {
+            super(url, body, new Java11OAuthConsumer(Fixtures.CONSUMER_KEY,
+                    Fixtures.CONSUMER_SECRET));
+        }
+
+        @Override
+        int send() throws Exception {
+            java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest
+                .newBuilder(URI.create(url));
+            if (body.isEmpty()) {
+                builder.GET();
+            } else {
+                builder.header("Content-Type", OAuth.FORM_ENCODED).POST(
+                    java.net.http.HttpRequest.BodyPublishers.ofString(body));
+            }
+            consumer.sign(builder);
+            return httpClient.send(builder.build(), BodyHandlers.discarding()).statusCode();
+        }
+    }
+
+    private static final class Jetty6Client extends Client {
+
+        private final org.mortbay.jetty.client.HttpClient httpClient =
+                new org.mortbay.jetty.client.HttpClient();
+
+        Jetty6Client(String url, String body) throws Exception {
+            super(url, body, new JettyOAuthConsumer(Fixtures.CONSUMER_KEY,
+                    Fixtures.CONSUMER_SECRET));
+            httpClient.setConnectorType(org.mortbay.jetty.client.HttpClient.CONNECTOR_SELECT_CHANNEL);
+            httpClient.setMaxConnectionsPerAddress(64);
+            httpClient.start();
+        }
+
+        @Override
+        int send() throws Exception {
+            ContentExchange exchange = new ContentExchange(true);
+            exchange.setURL(url);
+            if (body.isEmpty()) {
+                exchange.setMethod("GET");
+            } else {
+                exchange.setMethod("POST");
+                exchange.setRequestContentType(OAuth.FORM_ENCODED);
+                exchange.setRequestContent(new ByteArrayBuffer(body
+                        .getBytes(StandardCharsets.UTF_8)));
+            }
+            consumer.sign(exchange);
+            httpClient.send(exchange);
+            if (exchange.waitForDone() != HttpExchange.STATUS_COMPLETED) {
+                throw new IllegalStateException("exchange ended in state " + exchange.getStatus());
+            }
+            return exchange.getResponseStatus();
+        }
+
+        @Override
+        void close() throws Exception {
+            httpClient.stop();
+        }
+    }
+}
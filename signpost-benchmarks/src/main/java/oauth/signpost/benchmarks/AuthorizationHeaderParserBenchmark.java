@@ -0,0 +1,54 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.AuthorizationHeaderParser;
+import oauth.signpost.http.HttpParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses the Authorization header a consumer writes, once with
+ * {@link AuthorizationHeaderParser} and once by splitting on commas and
+ * equals signs the way OAuth.oauthHeaderToParamsMap used to. Run with -prof gc
+ * to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthorizationHeaderParserBenchmark {
+
+    private static final String HEADER = "OAuth realm=\"http://photos.example.net/\", "
+            + "oauth_consumer_key=\"" + Fixtures.CONSUMER_KEY + "\", oauth_token=\""
+            + Fixtures.TOKEN + "\", oauth_signature_method=\"HMAC-SHA1\", "
+            + "oauth_signature=\"tR3%2BTy81lMeYAr%2FFid0kMTYa%2FWM%3D\", oauth_timestamp=\""
+            + Fixtures.TIMESTAMP + "\", oauth_nonce=\"" + Fixtures.NONCE
+            + "\", oauth_version=\"1.0\"";
+
+    @Benchmark
+    public HttpParameters parser() {
+        return AuthorizationHeaderParser.parse(HEADER);
+    }
+
+    @Benchmark
+    public HttpParameters split() {
+        HttpParameters params = new HttpParameters();
+        String header = HEADER.substring("OAuth ".length());
+        for (String keyValuePair : header.split(",")) {
+            String[] keyValue = keyValuePair.split("=");
+            params.put(keyValue[0].trim(), keyValue[1].replace("\"", "").trim());
+        }
+        return params;
+    }
+}
@@ -0,0 +1,67 @@
+package oauth.signpost.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.signature.PlainTextMessageSigner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes signatures the size of an HMAC-SHA1 and an HMAC-SHA256 digest, and a
+ * larger block, with the Base64 encoder the signers use and with
+ * {@link java.util.Base64} for reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Base64Benchmark {
+
+    // the encoder is package private; signers reach it through base64Encode
+    private static final class Encoder extends PlainTextMessageSigner {
+
+        private static final long serialVersionUID = 1L;
+
+        String encode(byte[] b) {
+            return base64Encode(b);
+        }
+    }
+
+    @Param({ "20", "32", "1024" })
+    public int size;
+
+    private final Encoder encoder = new Encoder();
+
+    private final java.util.Base64.Encoder jdkEncoder = java.util.Base64.getEncoder();
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+    }
+
+    @Benchmark
+    public String signpost() {
+        return encoder.encode(bytes);
+    }
+
+    @Benchmark
+    public String jdk() {
+        return jdkEncoder.encodeToString(bytes);
+    }
+}
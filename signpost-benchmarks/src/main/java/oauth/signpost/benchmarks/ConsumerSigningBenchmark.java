@@ -0,0 +1,108 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.NonceGenerator;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.TimestampSource;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.exception.OAuthExpectationFailedException;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.AuthorizationHeaderSigningStrategy;
+import oauth.signpost.signature.HmacSha1MessageSigner;
+import oauth.signpost.signature.HmacSha256MessageSigner;
+import oauth.signpost.signature.PlainTextMessageSigner;
+import oauth.signpost.signature.QueryStringSigningStrategy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signs a request end to end through {@link OAuthConsumer#sign(HttpRequest)}:
+ * collecting the query, header and body parameters, building the signature
+ * base string, signing it and writing the result. Covers every signer and
+ * strategy, with a short and a long query string and with and without a form
+ * body. The nonce and timestamp are fixed, so their generation isn't measured
+ * (see {@link NonceGeneratorBenchmark} for that).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsumerSigningBenchmark {
+
+    @Param({ "HMAC-SHA1", "HMAC-SHA256", "PLAINTEXT" })
+    public String signatureMethod;
+
+    @Param({ "header", "query" })
+    public String strategy;
+
+    @Param({ "2", "20" })
+    public int queryParameters;
+
+    @Param({ "0", "4096" })
+    public int bodySize;
+
+    private AbstractOAuthConsumer consumer;
+
+    private String url;
+
+    private String body;
+
+    @Setup
+    public void setUp() {
+        consumer = new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET);
+        consumer.setTokenWithSecret(Fixtures.TOKEN, Fixtures.TOKEN_SECRET);
+        if ("HMAC-SHA1".equals(signatureMethod)) {
+            consumer.setMessageSigner(new HmacSha1MessageSigner());
+        } else if ("HMAC-SHA256".equals(signatureMethod)) {
+            consumer.setMessageSigner(new HmacSha256MessageSigner());
+        } else {
+            consumer.setMessageSigner(new PlainTextMessageSigner());
+        }
+        if ("header".equals(strategy)) {
+            consumer.setSigningStrategy(new AuthorizationHeaderSigningStrategy());
+        } else {
+            consumer.setSigningStrategy(new QueryStringSigningStrategy());
+        }
+        consumer.setNonceGenerator(new NonceGenerator() {
+
+            public String generateNonce() {
+                return Fixtures.NONCE;
+            }
+        });
+        consumer.setTimestampSource(new TimestampSource() {
+
+            public long currentTimeSeconds() {
+                return Long.parseLong(Fixtures.TIMESTAMP);
+            }
+
+            public boolean synchronize(long serverTimeMillis, long localTimeMillis) {
+                return false;
+            }
+        });
+        url = "http://photos.example.net/photos?" + Fixtures.query(queryParameters);
+        body = Fixtures.formBody(bodySize);
+    }
+
+    @Benchmark
+    public HttpRequest sign() throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        // a fresh request each time, as the query strategy rewrites the URL
+        return consumer.sign(new FormRequest(url, body));
+    }
+}
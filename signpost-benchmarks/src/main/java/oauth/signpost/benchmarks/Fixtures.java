@@ -0,0 +1,77 @@
+package oauth.signpost.benchmarks;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * Credentials and requests shared by all benchmarks. The values are those of
+ * the reference test case from the OAuth 1.0 specification, appendix A.
+ */
+final class Fixtures {
+
+    static final String CONSUMER_KEY = "dpf43f3p2l4k3l03";
+
+    static final String CONSUMER_SECRET = "kd94hf93k423kf44";
+
+    static final String TOKEN = "nnch734d00sl2jdk";
+
+    static final String TOKEN_SECRET = "pfkkdhi9sl3r4s00";
+
+    static final String TIMESTAMP = "1191242096";
+
+    static final String NONCE = "kllo9940pd9333jh";
+
+    static final String URL = "http://photos.example.net/photos?file=vacation.jpg&size=original";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the parameters a consumer would pass to its message signer when
+     *         signing {@link #URL}
+     */
+    static HttpParameters oauthParameters(String signatureMethod) {
+        HttpParameters params = new HttpParameters();
+        params.put(OAuth.OAUTH_CONSUMER_KEY, CONSUMER_KEY);
+        params.put(OAuth.OAUTH_TOKEN, TOKEN);
+        params.put(OAuth.OAUTH_SIGNATURE_METHOD, signatureMethod);
+        params.put(OAuth.OAUTH_TIMESTAMP, TIMESTAMP);
+        params.put(OAuth.OAUTH_NONCE, NONCE);
+        params.put(OAuth.OAUTH_VERSION, OAuth.VERSION_1_0);
+        params.put("file", "vacation.jpg");
+        params.put("size", "original");
+        return params;
+    }
+
+    /**
+     * @return a query string of the given number of parameters, with names and
+     *         values of a typical API call, some of which need escaping
+     */
+    static String query(int parameterCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parameterCount; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("param").append(i).append('=');
+            sb.append(i % 3 == 0 ? "caf%C3%A9+au+lait" : "value" + i);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return an x-www-form-urlencoded body of roughly the given size, made of
+     *         fields of about 64 bytes
+     */
+    static String formBody(int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        for (int i = 0; sb.length() < size; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("field").append(i).append('=');
+            sb.append("Lorem+ipsum+dolor+sit+amet%2C+consectetur+adipiscing");
+        }
+        return sb.toString();
+    }
+}
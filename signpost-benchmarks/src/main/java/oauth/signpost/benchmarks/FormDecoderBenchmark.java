@@ -0,0 +1,77 @@
+package oauth.signpost.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.FormDecoder;
+import oauth.signpost.http.HttpParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link FormDecoder} against the regex split and URLDecoder calls
+ * OAuth.decodeForm used to make, on a token response, on a query string
+ * with escapes and on a 4 KB form body. Run with -prof gc to compare
+ * allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormDecoderBenchmark {
+
+    @Param({ "tokenResponse", "query", "formBody" })
+    public String input;
+
+    private String form;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        if ("tokenResponse".equals(input)) {
+            form = "oauth_token=" + Fixtures.TOKEN + "&oauth_token_secret="
+                    + Fixtures.TOKEN_SECRET + "&oauth_callback_confirmed=true";
+        } else if ("formBody".equals(input)) {
+            form = Fixtures.formBody(4096);
+        } else {
+            form = "q=caf%C3%A9+au+lait&sort=desc&page=2&filter=a%2Cb%2Cc";
+        }
+        bytes = form.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public HttpParameters decoderFromString() {
+        return FormDecoder.decode(form);
+    }
+
+    @Benchmark
+    public HttpParameters decoderFromBytes() {
+        return FormDecoder.decode(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public HttpParameters splitAndUrlDecoder() throws UnsupportedEncodingException {
+        HttpParameters params = new HttpParameters();
+        for (String nvp : form.split("\\&")) {
+            int equals = nvp.indexOf('=');
+            params.put(URLDecoder.decode(nvp.substring(0, equals), "UTF-8"), URLDecoder.decode(
+                nvp.substring(equals + 1), "UTF-8"));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,72 @@
+package oauth.signpost.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * A request held in memory, so that signing it measures Signpost and not an
+ * HTTP library. A non-empty body is sent as x-www-form-urlencoded POST.
+ */
+final class FormRequest implements HttpRequest {
+
+    private final String method;
+
+    private String url;
+
+    private final byte[] body;
+
+    private final Map<String, String> headers = new HashMap<String, String>();
+
+    FormRequest(String url, String body) {
+        this(body.isEmpty() ? "GET" : "POST", url, body);
+    }
+
+    FormRequest(String method, String url, String body) {
+        this.method = method;
+        this.url = url;
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRequestUrl() {
+        return url;
+    }
+
+    public void setRequestUrl(String url) {
+        this.url = url;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public Map<String, String> getAllHeaders() {
+        return headers;
+    }
+
+    public InputStream getMessagePayload() throws IOException {
+        return body.length == 0 ? null : new ByteArrayInputStream(body);
+    }
+
+    public String getContentType() {
+        return body.length == 0 ? null : OAuth.FORM_ENCODED;
+    }
+
+    public Object unwrap() {
+        return this;
+    }
+}
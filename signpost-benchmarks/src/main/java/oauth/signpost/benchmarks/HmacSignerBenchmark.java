@@ -0,0 +1,96 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.HmacSha1MessageSigner;
+import oauth.signpost.signature.HmacSha256MessageSigner;
+import oauth.signpost.signature.OAuthMessageSigner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the HMAC signers against a copy of their original implementation,
+ * which looked up and keyed a new {@link javax.crypto.Mac} for every request.
+ * Requests are spread over a number of consumers with distinct token secrets,
+ * as they would be in a service that signs on behalf of many users. Run with
+ * several threads (-t) to see the effect under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HmacSignerBenchmark {
+
+    @Param({ "HMAC-SHA1", "HMAC-SHA256" })
+    public String signatureMethod;
+
+    @Param({ "1", "1000" })
+    public int secretPairs;
+
+    private OAuthMessageSigner[] signers;
+
+    private OAuthMessageSigner[] legacySigners;
+
+    private HttpRequest request;
+
+    private HttpParameters params;
+
+    @Setup
+    public void setUp() {
+        signers = new OAuthMessageSigner[secretPairs];
+        legacySigners = new OAuthMessageSigner[secretPairs];
+        for (int i = 0; i < secretPairs; i++) {
+            if ("HMAC-SHA1".equals(signatureMethod)) {
+                signers[i] = new HmacSha1MessageSigner();
+                legacySigners[i] = new LegacyHmacMessageSigner("HmacSHA1", signatureMethod);
+            } else {
+                signers[i] = new HmacSha256MessageSigner();
+                legacySigners[i] = new LegacyHmacMessageSigner("HmacSHA256", signatureMethod);
+            }
+            for (OAuthMessageSigner s : new OAuthMessageSigner[] { signers[i], legacySigners[i] }) {
+                s.setConsumerSecret(Fixtures.CONSUMER_SECRET);
+                s.setTokenSecret(Fixtures.TOKEN_SECRET + i);
+            }
+        }
+        request = new UrlStringRequestAdapter(Fixtures.URL);
+        params = Fixtures.oauthParameters(signatureMethod);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            int current = next;
+            next = current + 1 == bound ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Benchmark
+    public String cachedMac(Cursor cursor) throws OAuthMessageSignerException {
+        return signers[cursor.next(secretPairs)].sign(request, params);
+    }
+
+    @Benchmark
+    public String macPerRequest(Cursor cursor) throws OAuthMessageSignerException {
+        return legacySigners[cursor.next(secretPairs)].sign(request, params);
+    }
+}
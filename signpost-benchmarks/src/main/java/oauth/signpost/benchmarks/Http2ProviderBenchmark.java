@@ -0,0 +1,107 @@
+package oauth.signpost.benchmarks;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthFlow;
+import oauth.signpost.OAuthProvider;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthProvider;
+import oauth.signpost.java11.Java11OAuthProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs token handshakes against an {@link OAuthStubServer} that speaks
+ * HTTP/2, with one provider shared by all threads: {@link DefaultOAuthProvider}
+ * over HttpURLConnection, which only speaks HTTP/1.1, and
+ * {@link Java11OAuthProvider}, whose HttpClient multiplexes concurrent
+ * requests over HTTP/2 connections. {@code handshake} runs one blocking
+ * handshake at a time per thread; {@code concurrentHandshakes} starts
+ * {@value #IN_FLIGHT} asynchronous handshakes at once from each thread and
+ * waits for all of them, which the default provider can only serve with an
+ * executor thread per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Http2ProviderBenchmark {
+
+    static final int IN_FLIGHT = 32;
+
+    @Param({ "default", "java11" })
+    public String provider;
+
+    private OAuthStubServer server;
+
+    private OAuthProvider oauthProvider;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new OAuthStubServer(OAuthStubServer.Protocol.H2C);
+        String requestTokenUrl = server.url(OAuthStubServer.REQUEST_TOKEN_PATH);
+        String accessTokenUrl = server.url(OAuthStubServer.ACCESS_TOKEN_PATH);
+        String authorizationUrl = server.url("/authorize");
+        if ("default".equals(provider)) {
+            oauthProvider = new DefaultOAuthProvider(requestTokenUrl, accessTokenUrl,
+                    authorizationUrl);
+        } else {
+            oauthProvider = new Java11OAuthProvider(requestTokenUrl, accessTokenUrl,
+                    authorizationUrl, HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                        .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        if (server.rejected() > 0) {
+            throw new IllegalStateException(server.rejected() + " requests didn't verify");
+        }
+        if ("java11".equals(provider) && server.http2Requests() == 0) {
+            throw new IllegalStateException("HttpClient didn't switch to HTTP/2");
+        }
+    }
+
+    @Benchmark
+    public String handshake() throws Exception {
+        OAuthFlow flow = newFlow();
+        flow.retrieveRequestToken(OAuth.OUT_OF_BAND);
+        flow.retrieveAccessToken("verifier");
+        return flow.getConsumer().getToken();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void concurrentHandshakes() {
+        CompletableFuture<?>[] handshakes = new CompletableFuture<?>[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            OAuthFlow flow = newFlow();
+            handshakes[i] = flow.retrieveRequestTokenAsync(OAuth.OUT_OF_BAND).thenCompose(
+                url -> flow.retrieveAccessTokenAsync("verifier")).toCompletableFuture();
+        }
+        CompletableFuture.allOf(handshakes).join();
+    }
+
+    private OAuthFlow newFlow() {
+        return oauthProvider.newFlow(new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY,
+                Fixtures.CONSUMER_SECRET));
+    }
+}
@@ -0,0 +1,73 @@
+package oauth.signpost.benchmarks;
+
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Collects the parameters of a typical signed request and walks them in
+ * order, once with {@link HttpParameters} and once with the tree map of tree
+ * sets it used to wrap. Run with -prof gc to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpParametersBenchmark {
+
+    // in the order AbstractOAuthConsumer collects them
+    private static final String[] PAIRS = { "file", "vacation.jpg", "size", "original",
+            "oauth_consumer_key", Fixtures.CONSUMER_KEY, "oauth_token", Fixtures.TOKEN,
+            "oauth_signature_method", "HMAC-SHA1", "oauth_timestamp", Fixtures.TIMESTAMP,
+            "oauth_nonce", Fixtures.NONCE, "oauth_version", "1.0" };
+
+    @Benchmark
+    public void flatArrays(Blackhole bh) {
+        HttpParameters params = new HttpParameters();
+        for (int i = 0; i < PAIRS.length; i += 2) {
+            params.put(PAIRS[i], PAIRS[i + 1], true);
+        }
+        for (int i = 0, n = params.entryCount(); i < n; i++) {
+            bh.consume(params.keyAt(i));
+            bh.consume(params.valueAt(i));
+        }
+    }
+
+    @Benchmark
+    public void treeOfSets(Blackhole bh) {
+        TreeMap<String, SortedSet<String>> params = new TreeMap<String, SortedSet<String>>();
+        for (int i = 0; i < PAIRS.length; i += 2) {
+            String key = OAuth.percentEncode(PAIRS[i]);
+            SortedSet<String> values = params.get(key);
+            if (values == null) {
+                values = new TreeSet<String>();
+                params.put(key, values);
+            }
+            values.add(OAuth.percentEncode(PAIRS[i + 1]));
+        }
+        for (Map.Entry<String, SortedSet<String>> entry : params.entrySet()) {
+            for (String value : entry.getValue()) {
+                bh.consume(entry.getKey());
+                bh.consume(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link HttpParameters} operations a consumer performs per request, on
+ * the OAuth parameters plus a growing number of request parameters: filling
+ * the store, merging the OAuth parameters into it, looking up a value,
+ * extracting the OAuth parameters and writing a key as a query string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpParametersOperationsBenchmark {
+
+    @Param({ "2", "20", "100" })
+    public int requestParameters;
+
+    private String[] pairs;
+
+    private HttpParameters oauthParams;
+
+    private HttpParameters params;
+
+    @Setup
+    public void setUp() {
+        pairs = new String[requestParameters * 2];
+        for (int i = 0; i < requestParameters; i++) {
+            pairs[2 * i] = "param" + i;
+            pairs[2 * i + 1] = i % 3 == 0 ? "café au lait" : "value" + i;
+        }
+        oauthParams = Fixtures.oauthParameters("HMAC-SHA1").getOAuthParameters();
+        params = fill();
+        params.putAll(oauthParams, false);
+    }
+
+    private HttpParameters fill() {
+        HttpParameters params = new HttpParameters();
+        params.putAll(pairs, true);
+        return params;
+    }
+
+    @Benchmark
+    public HttpParameters putAll() {
+        return fill();
+    }
+
+    @Benchmark
+    public HttpParameters mergeOAuthParameters() {
+        HttpParameters params = fill();
+        params.putAll(oauthParams, false);
+        return params;
+    }
+
+    @Benchmark
+    public String getFirst() {
+        return params.getFirst(OAuth.OAUTH_TOKEN);
+    }
+
+    @Benchmark
+    public HttpParameters getOAuthParameters() {
+        return params.getOAuthParameters();
+    }
+
+    @Benchmark
+    public String getAsQueryString() {
+        return params.getAsQueryString(OAuth.OAUTH_NONCE);
+    }
+}
@@ -0,0 +1,96 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthFlow;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs token handshakes with one shared {@link DefaultOAuthProvider} against
+ * an {@link OAuthStubServer} that speaks HTTPS, with the connection
+ * disconnected after every request and with it kept alive. Reports
+ * handshakes per millisecond and their latency distribution, and prints how
+ * many TLS connections the server accepted per handshake after every
+ * iteration: 2 when every request opens its own, close to 0 when they are
+ * reused.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeepAliveHandshakeBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean keepAlive;
+
+    private OAuthStubServer server;
+
+    private DefaultOAuthProvider oauthProvider;
+
+    private final LongAdder handshakes = new LongAdder();
+
+    private long connectionsBefore;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new OAuthStubServer(OAuthStubServer.Protocol.HTTPS);
+        HttpsURLConnection.setDefaultSSLSocketFactory(server.sslContext().getSocketFactory());
+        oauthProvider = new DefaultOAuthProvider(server
+            .url(OAuthStubServer.REQUEST_TOKEN_PATH), server
+            .url(OAuthStubServer.ACCESS_TOKEN_PATH), server.url("/authorize"));
+        oauthProvider.setKeepAlive(keepAlive);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        handshakes.reset();
+        connectionsBefore = server.connections();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long connections = server.connections() - connectionsBefore;
+        long count = handshakes.sum();
+        System.out.printf("%d connections for %d handshakes (%.3f per handshake)%n",
+            connections, count, count == 0 ? 0.0 : (double) connections / count);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        if (server.rejected() > 0) {
+            throw new IllegalStateException(server.rejected() + " requests didn't verify");
+        }
+    }
+
+    @Benchmark
+    public String handshake() throws Exception {
+        OAuthFlow flow = oauthProvider.newFlow(new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY,
+                Fixtures.CONSUMER_SECRET));
+        flow.retrieveRequestToken(OAuth.OUT_OF_BAND);
+        flow.retrieveAccessToken("verifier");
+        handshakes.increment();
+        return flow.getConsumer().getToken();
+    }
+}
@@ -0,0 +1,61 @@
+package oauth.signpost.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.OAuthMessageSigner;
+import oauth.signpost.signature.SignatureBaseString;
+
+/**
+ * The HMAC signer as it was implemented in Signpost 2.1.1, kept as a baseline
+ * for comparisons: it builds the key, looks up a new {@link Mac} and
+ * materializes the signature base string for every request.
+ */
+@SuppressWarnings("serial")
+class LegacyHmacMessageSigner extends OAuthMessageSigner {
+
+    private final String macName;
+
+    private final String signatureMethod;
+
+    LegacyHmacMessageSigner(String macName, String signatureMethod) {
+        this.macName = macName;
+        this.signatureMethod = signatureMethod;
+    }
+
+    @Override
+    public String getSignatureMethod() {
+        return signatureMethod;
+    }
+
+    @Override
+    public String sign(HttpRequest request, HttpParameters requestParams)
+            throws OAuthMessageSignerException {
+        try {
+            String keyString = OAuth.percentEncode(getConsumerSecret()) + '&'
+                    + OAuth.percentEncode(getTokenSecret());
+            byte[] keyBytes = keyString.getBytes(OAuth.ENCODING);
+
+            SecretKey key = new SecretKeySpec(keyBytes, macName);
+            Mac mac = Mac.getInstance(macName);
+            mac.init(key);
+
+            String sbs = new SignatureBaseString(request, requestParams).generate();
+            byte[] text = sbs.getBytes(OAuth.ENCODING);
+
+            return base64Encode(mac.doFinal(text)).trim();
+        } catch (GeneralSecurityException e) {
+            throw new OAuthMessageSignerException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new OAuthMessageSignerException(e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package oauth.signpost.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.NonceGenerator;
+import oauth.signpost.basic.SecureRandomNonceGenerator;
+import oauth.signpost.basic.ThreadLocalRandomNonceGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the nonce generators against the shared {@link Random} consumers
+ * used before. All threads share one consumer's generator, so run with
+ * several threads (-t) to see the contention on the shared seed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NonceGeneratorBenchmark {
+
+    private final Random sharedRandom = new Random(System.nanoTime());
+
+    private final NonceGenerator secureRandom = new SecureRandomNonceGenerator();
+
+    private final NonceGenerator threadLocalRandom = new ThreadLocalRandomNonceGenerator();
+
+    @Benchmark
+    public String sharedRandom() {
+        return Long.toString(sharedRandom.nextLong());
+    }
+
+    @Benchmark
+    public String secureRandomBlocks() {
+        return secureRandom.generateNonce();
+    }
+
+    @Benchmark
+    public String threadLocalRandom() {
+        return threadLocalRandom.generateNonce();
+    }
+}
@@ -0,0 +1,107 @@
+package oauth.signpost.benchmarks;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.NormalizedUrlCache;
+import oauth.signpost.signature.SignatureBaseString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds signature base strings without parameters, i.e. the method and the
+ * normalized, percent encoded URL, once through the {@link NormalizedUrlCache}
+ * and once by parsing and encoding every URL, as SignatureBaseString used to. Requests cycle through a
+ * number of distinct endpoints, each with its own query string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NormalizedUrlBenchmark {
+
+    @Param({ "1", "300" })
+    public int endpoints;
+
+    private SignatureBaseString[] baseStrings;
+
+    private HttpRequest[] requests;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        baseStrings = new SignatureBaseString[endpoints];
+        requests = new HttpRequest[endpoints];
+        for (int i = 0; i < endpoints; i++) {
+            requests[i] = new UrlStringRequestAdapter("HTTP://API.Example.com:80/v1/resource" + i
+                    + "/items?page=" + i + "&size=50");
+            baseStrings[i] = new SignatureBaseString(requests[i], null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void printHitRatio() {
+        NormalizedUrlCache cache = NormalizedUrlCache.getInstance();
+        System.out.println("\nURL cache hits: " + cache.getHitCount() + ", misses: "
+                + cache.getMissCount());
+    }
+
+    @Benchmark
+    public String cached() throws OAuthMessageSignerException {
+        // without parameters, this is just the method and the encoded URL
+        return baseStrings[nextIndex()].generate();
+    }
+
+    @Benchmark
+    public String uriParsing() throws URISyntaxException {
+        HttpRequest request = requests[nextIndex()];
+        return request.getMethod() + '&'
+                + OAuth.percentEncode(normalize(request.getRequestUrl())) + '&';
+    }
+
+    private int nextIndex() {
+        int current = next;
+        next = current + 1 == endpoints ? 0 : current + 1;
+        return current;
+    }
+
+    // SignatureBaseString.normalizeRequestUrl() before the cache
+    private static String normalize(String url) throws URISyntaxException {
+        URI uri = new URI(url);
+        String scheme = uri.getScheme().toLowerCase();
+        String authority = uri.getAuthority().toLowerCase();
+        boolean dropPort = (scheme.equals("http") && uri.getPort() == 80)
+                || (scheme.equals("https") && uri.getPort() == 443);
+        if (dropPort) {
+            int index = authority.lastIndexOf(":");
+            if (index >= 0) {
+                authority = authority.substring(0, index);
+            }
+        }
+        String path = uri.getRawPath();
+        if (path == null || path.length() <= 0) {
+            path = "/";
+        }
+        return scheme + "://" + authority + path;
+    }
+}
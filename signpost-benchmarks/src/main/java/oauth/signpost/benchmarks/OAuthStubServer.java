@@ -0,0 +1,398 @@
+package oauth.signpost.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import oauth.signpost.AuthorizationHeaderParser;
+import oauth.signpost.FormDecoder;
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.signature.HmacSha1MessageSigner;
+import oauth.signpost.signature.HmacSha256MessageSigner;
+import oauth.signpost.signature.OAuthMessageSigner;
+import oauth.signpost.signature.PlainTextMessageSigner;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * An OAuth service provider on the loopback interface, for measuring whole
+ * round trips. It serves a request token, an access token and a protected
+ * resource endpoint, and checks the signature of every request against the
+ * one it computes from the method, URL, query, form body and Authorization
+ * header it received. Requests that don't verify are answered with 401 and
+ * counted. Nonces and timestamps are not checked.
+ * <p>
+ * By default it speaks HTTP/1.1 through the JDK's built-in server. With
+ * {@link Protocol#HTTPS}, the same server speaks HTTP/1.1 over TLS, with a
+ * self-signed certificate for 127.0.0.1 that {@link #sslContext()} trusts,
+ * and counts the connections it accepts. With {@link Protocol#H2C}, it runs on
+ * Jetty instead and also speaks HTTP/2 over cleartext, to clients that ask for
+ * it with an Upgrade header.
+ * <p>
+ * The server remembers no tokens: the secret of a token it issues is derived
+ * from the token itself, so that millions of handshakes don't fill the heap.
+ */
+final class OAuthStubServer {
+
+    static final String REQUEST_TOKEN_PATH = "/request_token";
+
+    static final String ACCESS_TOKEN_PATH = "/access_token";
+
+    static final String RESOURCE_PATH = "/resource";
+
+    enum Protocol {
+        HTTP, HTTPS, H2C
+    }
+
+    private static final String KEY_STORE = "stub.p12";
+
+    private static final char[] KEY_STORE_PASSWORD = "signpost".toCharArray();
+
+    private final Map<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private Server jetty;
+
+    private final String baseUrl;
+
+    private final AtomicLong issuedTokens = new AtomicLong();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder http2Requests = new LongAdder();
+
+    private final LongAdder connections = new LongAdder();
+
+    private SSLContext sslContext;
+
+    OAuthStubServer() throws Exception {
+        this(Protocol.HTTP);
+    }
+
+    OAuthStubServer(Protocol protocol) throws Exception {
+        endpoints.put(REQUEST_TOKEN_PATH, new Endpoint() {
+
+            @Override
+            String respond(HttpParameters oauthParams) {
+                String token = oauthParams.getFirst(OAuth.OAUTH_TOKEN);
+                if (token != null && !token.isEmpty()
+                        || oauthParams.getFirst(OAuth.OAUTH_CALLBACK) == null) {
+                    return null;
+                }
+                return tokenResponse("rt", true);
+            }
+        });
+        endpoints.put(ACCESS_TOKEN_PATH, new Endpoint() {
+
+            @Override
+            String respond(HttpParameters oauthParams) {
+                String token = oauthParams.getFirst(OAuth.OAUTH_TOKEN);
+                if (token == null || !token.startsWith("rt")
+                        || oauthParams.getFirst(OAuth.OAUTH_VERIFIER) == null) {
+                    return null;
+                }
+                return tokenResponse("at", false);
+            }
+        });
+        endpoints.put(RESOURCE_PATH, new Endpoint() {
+
+            @Override
+            String respond(HttpParameters oauthParams) {
+                return oauthParams.getFirst(OAuth.OAUTH_TOKEN) == null ? null : "ok";
+            }
+        });
+        int port = protocol == Protocol.H2C ? startJetty() : startHttpServer(
+            protocol == Protocol.HTTPS);
+        baseUrl = (protocol == Protocol.HTTPS ? "https" : "http") + "://127.0.0.1:" + port;
+    }
+
+    private int startHttpServer(boolean https) throws Exception {
+        // otherwise small responses wait for the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        if (https) {
+            sslContext = loadSslContext();
+            HttpsServer httpsServer = HttpsServer.create(address, 1024);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
+
+                // called once for every connection accepted
+                @Override
+                public void configure(HttpsParameters params) {
+                    connections.increment();
+                    super.configure(params);
+                }
+            });
+            server = httpsServer;
+        } else {
+            server = HttpServer.create(address, 1024);
+        }
+        server.createContext("/", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Headers headers = exchange.getRequestHeaders();
+                    Reply reply = serve(exchange.getRequestMethod(), exchange.getRequestURI()
+                        .toString(), headers.getFirst("Content-Type"), headers
+                        .getFirst(OAuth.HTTP_AUTHORIZATION_HEADER), readFully(exchange
+                        .getRequestBody()));
+                    byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                    exchange.sendResponseHeaders(reply.status, bytes.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(bytes);
+                    out.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    private int startJetty() throws Exception {
+        // keep Jetty's startup messages out of the benchmark output
+        System.setProperty("org.eclipse.jetty.LEVEL", "WARN");
+        jetty = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(jetty, new HttpConnectionFactory(config),
+                new HTTP2CServerConnectionFactory(config));
+        connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        connector.setAcceptQueueSize(1024);
+        jetty.addConnector(connector);
+        jetty.setHandler(new AbstractHandler() {
+
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                if (request.getProtocol().startsWith("HTTP/2")) {
+                    http2Requests.increment();
+                }
+                String uri = request.getRequestURI();
+                if (request.getQueryString() != null) {
+                    uri += "?" + request.getQueryString();
+                }
+                Reply reply = serve(request.getMethod(), uri, request.getContentType(), request
+                    .getHeader(OAuth.HTTP_AUTHORIZATION_HEADER), readFully(request
+                    .getInputStream()));
+                byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+                response.setStatus(reply.status);
+                response.setContentType("text/plain");
+                response.setContentLength(bytes.length);
+                response.getOutputStream().write(bytes);
+                baseRequest.setHandled(true);
+            }
+        });
+        jetty.start();
+        return connector.getLocalPort();
+    }
+
+    String url(String path) {
+        return baseUrl + path;
+    }
+
+    /**
+     * @return the number of requests that didn't verify so far
+     */
+    long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of requests received over HTTP/2 so far
+     */
+    long http2Requests() {
+        return http2Requests.sum();
+    }
+
+    /**
+     * @return the number of TLS connections accepted so far, or 0 unless the
+     *         server speaks HTTPS
+     */
+    long connections() {
+        return connections.sum();
+    }
+
+    /**
+     * @return a context whose clients trust this server's certificate, or
+     *         null unless the server speaks HTTPS
+     */
+    SSLContext sslContext() {
+        return sslContext;
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+        if (jetty != null) {
+            try {
+                jetty.stop();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // the key store holds a self-signed certificate for 127.0.0.1, which
+    // serves as both the server's key and the clients' only trusted issuer
+    private static SSLContext loadSslContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream in = OAuthStubServer.class.getResourceAsStream(KEY_STORE);
+        try {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory
+            .getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEY_STORE_PASSWORD);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory
+            .getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    static String secretFor(String token) {
+        return Fixtures.TOKEN.equals(token) ? Fixtures.TOKEN_SECRET : "secret-" + token;
+    }
+
+    private String tokenResponse(String prefix, boolean callbackConfirmed) {
+        String token = prefix + issuedTokens.incrementAndGet();
+        String response = OAuth.OAUTH_TOKEN + "=" + token + "&" + OAuth.OAUTH_TOKEN_SECRET + "="
+                + secretFor(token);
+        return callbackConfirmed ? response + "&" + OAuth.OAUTH_CALLBACK_CONFIRMED + "=true"
+                : response;
+    }
+
+    private Reply serve(String method, String uri, String contentType, String authorization,
+            byte[] body) {
+        try {
+            int q = uri.indexOf('?');
+            Endpoint endpoint = endpoints.get(q < 0 ? uri : uri.substring(0, q));
+            String response = endpoint == null ? null : verify(endpoint, method, uri,
+                contentType, authorization, body);
+            if (response == null) {
+                rejected.increment();
+                return new Reply(401, "invalid signature");
+            }
+            return new Reply(200, response);
+        } catch (Exception e) {
+            rejected.increment();
+            return new Reply(400, String.valueOf(e));
+        }
+    }
+
+    private String verify(Endpoint endpoint, String method, String uri, String contentType,
+            String authorization, byte[] body) throws Exception {
+        HttpParameters params = new HttpParameters();
+        int q = uri.indexOf('?');
+        if (q >= 0) {
+            params.putAll(FormDecoder.decode(uri.substring(q + 1)), true);
+        }
+        if (contentType != null && contentType.startsWith(OAuth.FORM_ENCODED)) {
+            params.putAll(FormDecoder.decode(body, 0, body.length), true);
+        }
+        HttpParameters oauthParams = AuthorizationHeaderParser.parse(authorization);
+        oauthParams.remove("realm");
+        params.putAll(oauthParams, false);
+        // the query string strategy sends the OAuth parameters in the URL
+        oauthParams.putAll(params.getOAuthParameters(), false);
+
+        String signature = oauthParams.getFirst(OAuth.OAUTH_SIGNATURE, true);
+        String signatureMethod = oauthParams.getFirst(OAuth.OAUTH_SIGNATURE_METHOD, true);
+        String token = oauthParams.getFirst(OAuth.OAUTH_TOKEN, true);
+        if (signature == null || signatureMethod == null
+                || !Fixtures.CONSUMER_KEY.equals(oauthParams.getFirst(OAuth.OAUTH_CONSUMER_KEY,
+                    true))) {
+            return null;
+        }
+        params.remove(OAuth.OAUTH_SIGNATURE);
+
+        OAuthMessageSigner signer;
+        if ("HMAC-SHA1".equals(signatureMethod)) {
+            signer = new HmacSha1MessageSigner();
+        } else if ("HMAC-SHA256".equals(signatureMethod)) {
+            signer = new HmacSha256MessageSigner();
+        } else {
+            signer = new PlainTextMessageSigner();
+        }
+        signer.setConsumerSecret(Fixtures.CONSUMER_SECRET);
+        signer.setTokenSecret(token == null || token.isEmpty() ? "" : secretFor(token));
+        FormRequest request = new FormRequest(method, baseUrl + uri, "");
+        if (!signature.equals(signer.sign(request, params))) {
+            return null;
+        }
+        return endpoint.respond(oauthParams);
+    }
+
+    private abstract static class Endpoint {
+
+        /**
+         * @return the response body, or null if the request doesn't belong
+         *         to this endpoint
+         */
+        abstract String respond(HttpParameters oauthParams);
+    }
+
+    private static final class Reply {
+
+        final int status;
+
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
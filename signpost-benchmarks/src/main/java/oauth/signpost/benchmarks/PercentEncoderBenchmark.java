@@ -0,0 +1,79 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.PercentEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gdata.util.common.base.PercentEscaper;
+
+/**
+ * Compares {@link PercentEncoder} against the {@link PercentEscaper} that
+ * OAuth.percentEncode used to delegate to. Run with -prof gc to compare the
+ * allocation rates as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PercentEncoderBenchmark {
+
+    private static final PercentEscaper ESCAPER = new PercentEscaper("-._~", false);
+
+    @Param({ "token", "query", "unicode" })
+    public String input;
+
+    private String value;
+
+    private final StringBuilder builder = new StringBuilder(1024);
+
+    private final byte[] bytes = new byte[1024];
+
+    @Setup
+    public void setUp() {
+        if ("token".equals(input)) {
+            // nothing to escape, like nonces, timestamps and most tokens
+            value = "nnch734d00sl2jdk";
+        } else if ("query".equals(input)) {
+            value = "http://photos.example.net/photos?file=vacation.jpg&size=original";
+        } else {
+            value = "Grüße aus Köln – 中文 😀";
+        }
+    }
+
+    @Benchmark
+    public String escaper() {
+        return ESCAPER.escape(value);
+    }
+
+    @Benchmark
+    public StringBuilder encoderIntoBuilder() {
+        builder.setLength(0);
+        PercentEncoder.encode(value, builder);
+        return builder;
+    }
+
+    @Benchmark
+    public int encoderIntoBytes() {
+        return PercentEncoder.encode(value, bytes, 0);
+    }
+
+    @Benchmark
+    public byte[] escaperIntoBytes() {
+        // what OAuth.formEncode used to do per key and value
+        return ESCAPER.escape(value).getBytes();
+    }
+}
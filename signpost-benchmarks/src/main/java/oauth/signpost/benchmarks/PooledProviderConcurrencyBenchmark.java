@@ -0,0 +1,109 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthFlow;
+import oauth.signpost.OAuthProvider;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.commonshttp.CommonsHttpOAuthProvider;
+import oauth.signpost.commonshttp.PooledHttpClientBuilder;
+import oauth.signpost.commonshttp3.CommonsHttp3OAuthProvider;
+import oauth.signpost.commonshttp3.PooledHttp3ClientBuilder;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs token handshakes from {@value #THREADS} threads at once through one
+ * Commons HttpClient provider, whose client is built by
+ * {@link PooledHttpClientBuilder} or {@link PooledHttp3ClientBuilder} with the
+ * given limit of connections per host: 2, what both connection managers allow
+ * unless told otherwise, against the builders' default of 20. With too few
+ * connections, handshakes queue for one, which shows in the latency
+ * percentiles. Reports handshakes per millisecond and their latency
+ * distribution.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(PooledProviderConcurrencyBenchmark.THREADS)
+@State(Scope.Benchmark)
+public class PooledProviderConcurrencyBenchmark {
+
+    static final int THREADS = 16;
+
+    @Param({ "commonshttp4", "commonshttp3" })
+    public String provider;
+
+    @Param({ "2", "20" })
+    public int maxConnectionsPerHost;
+
+    private OAuthStubServer server;
+
+    private OAuthProvider oauthProvider;
+
+    private CloseableHttpClient httpClient;
+
+    private MultiThreadedHttpConnectionManager connectionManager;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new OAuthStubServer();
+        String requestTokenUrl = server.url(OAuthStubServer.REQUEST_TOKEN_PATH);
+        String accessTokenUrl = server.url(OAuthStubServer.ACCESS_TOKEN_PATH);
+        String authorizationUrl = server.url("/authorize");
+        if ("commonshttp4".equals(provider)) {
+            httpClient = new PooledHttpClientBuilder().maxConnectionsPerRoute(
+                maxConnectionsPerHost).idleTimeout(30, TimeUnit.SECONDS).build();
+            oauthProvider = new CommonsHttpOAuthProvider(requestTokenUrl, accessTokenUrl,
+                    authorizationUrl, httpClient);
+        } else {
+            HttpClient client = new PooledHttp3ClientBuilder().maxConnectionsPerHost(
+                maxConnectionsPerHost).idleTimeout(30, TimeUnit.SECONDS).build();
+            connectionManager = (MultiThreadedHttpConnectionManager) client
+                .getHttpConnectionManager();
+            oauthProvider = new CommonsHttp3OAuthProvider(requestTokenUrl, accessTokenUrl,
+                    authorizationUrl, client);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+        }
+        server.stop();
+        if (server.rejected() > 0) {
+            throw new IllegalStateException(server.rejected() + " requests didn't verify");
+        }
+    }
+
+    @Benchmark
+    public String handshake() throws Exception {
+        OAuthFlow flow = oauthProvider.newFlow(new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY,
+                Fixtures.CONSUMER_SECRET));
+        flow.retrieveRequestToken(OAuth.OUT_OF_BAND);
+        flow.retrieveAccessToken("verifier");
+        return flow.getConsumer().getToken();
+    }
+}
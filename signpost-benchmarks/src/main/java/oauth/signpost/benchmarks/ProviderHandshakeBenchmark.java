@@ -0,0 +1,155 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.OAuthFlow;
+import oauth.signpost.OAuthProvider;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthProvider;
+import oauth.signpost.commonshttp.CommonsHttpOAuthProvider;
+import oauth.signpost.commonshttp.PooledHttpClientBuilder;
+import oauth.signpost.commonshttp3.CommonsHttp3OAuthProvider;
+import oauth.signpost.commonshttp3.PooledHttp3ClientBuilder;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the token handshake (a request token, then an access token) against an
+ * {@link OAuthStubServer} with each provider implementation. {@code handshake}
+ * gives every thread its own provider and consumer, as constructed by
+ * default, since a provider used directly keeps the state of a handshake.
+ * {@code flowHandshake} shares one provider, with a pooled HTTP client, among
+ * all threads and runs each handshake in its own {@link OAuthFlow};
+ * {@code asyncFlowHandshake} does the same with the asynchronous methods, so
+ * the requests are sent on the provider's executor. Reports
+ * handshakes per millisecond and their latency distribution.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProviderHandshakeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Stub {
+
+        @Param({ "default", "commonshttp4", "commonshttp3" })
+        public String provider;
+
+        OAuthStubServer server;
+
+        OAuthProvider sharedProvider;
+
+        private String requestTokenUrl, accessTokenUrl, authorizationUrl;
+
+        private CloseableHttpClient httpClient;
+
+        private MultiThreadedHttpConnectionManager connectionManager;
+
+        @Setup
+        public void setUp() throws Exception {
+            server = new OAuthStubServer();
+            requestTokenUrl = server.url(OAuthStubServer.REQUEST_TOKEN_PATH);
+            accessTokenUrl = server.url(OAuthStubServer.ACCESS_TOKEN_PATH);
+            authorizationUrl = server.url("/authorize");
+            if ("commonshttp4".equals(provider)) {
+                httpClient = new PooledHttpClientBuilder().maxConnectionsPerRoute(64).build();
+                sharedProvider = new CommonsHttpOAuthProvider(requestTokenUrl, accessTokenUrl,
+                        authorizationUrl, httpClient);
+            } else if ("commonshttp3".equals(provider)) {
+                HttpClient client = new PooledHttp3ClientBuilder().maxConnectionsPerHost(64)
+                    .build();
+                connectionManager = (MultiThreadedHttpConnectionManager) client
+                    .getHttpConnectionManager();
+                sharedProvider = new CommonsHttp3OAuthProvider(requestTokenUrl, accessTokenUrl,
+                        authorizationUrl, client);
+            } else {
+                sharedProvider = newProvider();
+            }
+        }
+
+        OAuthProvider newProvider() {
+            if ("default".equals(provider)) {
+                return new DefaultOAuthProvider(requestTokenUrl, accessTokenUrl,
+                        authorizationUrl);
+            } else if ("commonshttp4".equals(provider)) {
+                return new CommonsHttpOAuthProvider(requestTokenUrl, accessTokenUrl,
+                        authorizationUrl);
+            } else {
+                return new CommonsHttp3OAuthProvider(requestTokenUrl, accessTokenUrl,
+                        authorizationUrl);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            if (httpClient != null) {
+                httpClient.close();
+            }
+            if (connectionManager != null) {
+                connectionManager.shutdown();
+            }
+            server.stop();
+            if (server.rejected() > 0) {
+                throw new IllegalStateException(server.rejected() + " requests didn't verify");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Flow {
+
+        OAuthProvider oauthProvider;
+
+        OAuthConsumer consumer;
+
+        @Setup
+        public void setUp(Stub stub) {
+            oauthProvider = stub.newProvider();
+            consumer = new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET);
+        }
+    }
+
+    @Benchmark
+    public String handshake(Flow flow) throws Exception {
+        flow.consumer.setTokenWithSecret(null, null);
+        flow.oauthProvider.retrieveRequestToken(flow.consumer, OAuth.OUT_OF_BAND);
+        flow.oauthProvider.retrieveAccessToken(flow.consumer, "verifier");
+        return flow.consumer.getToken();
+    }
+
+    @Benchmark
+    public String flowHandshake(Stub stub) throws Exception {
+        OAuthFlow flow = stub.sharedProvider.newFlow(new DefaultOAuthConsumer(
+                Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET));
+        flow.retrieveRequestToken(OAuth.OUT_OF_BAND);
+        flow.retrieveAccessToken("verifier");
+        return flow.getConsumer().getToken();
+    }
+
+    @Benchmark
+    public String asyncFlowHandshake(Stub stub) throws Exception {
+        OAuthFlow flow = stub.sharedProvider.newFlow(new DefaultOAuthConsumer(
+                Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET));
+        return flow.retrieveRequestTokenAsync(OAuth.OUT_OF_BAND)
+            .thenCompose(url -> flow.retrieveAccessTokenAsync("verifier"))
+            .thenApply(ignored -> flow.getConsumer().getToken()).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,65 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.RequestTemplate;
+import oauth.signpost.SigningResult;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.http.HttpParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signs the same GET request over and over, once the regular way and once
+ * through a {@link RequestTemplate} for its endpoint. The nonce is fixed so
+ * that the random number generator doesn't dominate. Run with -prof gc to
+ * compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestTemplateBenchmark {
+
+    private static final String ENDPOINT = "http://photos.example.net/photos?size=original";
+
+    private AbstractOAuthConsumer consumer;
+
+    private RequestTemplate template;
+
+    private HttpParameters params;
+
+    @Setup
+    public void setUp() throws Exception {
+        consumer = new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET);
+        consumer.setTokenWithSecret(Fixtures.TOKEN, Fixtures.TOKEN_SECRET);
+        consumer.setNonceGenerator(() -> Fixtures.NONCE);
+        template = consumer.createRequestTemplate("GET", ENDPOINT);
+        params = new HttpParameters();
+        params.put("file", "vacation.jpg");
+    }
+
+    @Benchmark
+    public SigningResult signForResult() throws Exception {
+        return consumer.signForResult(new UrlStringRequestAdapter(Fixtures.URL));
+    }
+
+    @Benchmark
+    public SigningResult template() throws Exception {
+        return template.sign(new UrlStringRequestAdapter(ENDPOINT + "&file=vacation.jpg"),
+            params);
+    }
+}
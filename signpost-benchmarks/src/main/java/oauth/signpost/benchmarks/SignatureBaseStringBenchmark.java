@@ -0,0 +1,80 @@
+package oauth.signpost.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.signature.SignatureBaseString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the signature base string of a request with the OAuth parameters and
+ * a growing number of query parameters, once as a string with
+ * {@link SignatureBaseString#generate()} (as the PLAINTEXT and custom signers
+ * see it) and once streamed into a MAC with
+ * {@link SignatureBaseString#writeTo(Mac)} (as the HMAC signers do).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SignatureBaseStringBenchmark {
+
+    @Param({ "2", "20", "100" })
+    public int queryParameters;
+
+    private SignatureBaseString baseString;
+
+    private Mac mac;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        String query = Fixtures.query(queryParameters);
+        // collected the way the consumer does it
+        HttpParameters params = new HttpParameters();
+        params.putAll(OAuth.decodeForm(query), true);
+        params.putAll(Fixtures.oauthParameters("HMAC-SHA1").getOAuthParameters(), false);
+        baseString = new SignatureBaseString(new UrlStringRequestAdapter(
+                "http://photos.example.net/photos?" + query), params);
+
+        mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec((Fixtures.CONSUMER_SECRET + '&' + Fixtures.TOKEN_SECRET)
+                .getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+    }
+
+    @Benchmark
+    public String generate() throws OAuthMessageSignerException {
+        return baseString.generate();
+    }
+
+    @Benchmark
+    public byte[] generateAndMac() throws OAuthMessageSignerException {
+        return mac.doFinal(baseString.generate().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] writeToMac() throws OAuthMessageSignerException {
+        baseString.writeTo(mac);
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,57 @@
+package oauth.signpost.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.HistogramSigningMetrics;
+import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.exception.OAuthExpectationFailedException;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signs the same request with and without {@link HistogramSigningMetrics},
+ * to show what recording the stages costs. Run with several threads (-t) to
+ * see whether the histograms contend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SigningMetricsBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean metrics;
+
+    private AbstractOAuthConsumer consumer;
+
+    @Setup
+    public void setUp() {
+        consumer = new DefaultOAuthConsumer(Fixtures.CONSUMER_KEY, Fixtures.CONSUMER_SECRET);
+        consumer.setTokenWithSecret(Fixtures.TOKEN, Fixtures.TOKEN_SECRET);
+        if (metrics) {
+            consumer.setSigningMetrics(new HistogramSigningMetrics());
+        }
+    }
+
+    @Benchmark
+    public HttpRequest sign() throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        return consumer.sign(new FormRequest(Fixtures.URL, ""));
+    }
+}
@@ -14,7 +14,9 @@ package oauth.signpost.commonshttp3;
 import oauth.signpost.AbstractOAuthProvider;
 import oauth.signpost.http.HttpRequest;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.PostMethod;
 
 
@@ -24,6 +26,13 @@ import org.apache.commons.httpclient.methods.PostMethod;
  * should use this provider implementation in favor of the default one, since
  * the latter is known to cause problems with Android's Apache Harmony
  * underpinnings.
+ * <p>
+ * Unless given a client, the provider builds one with a
+ * {@link PooledHttp3ClientBuilder} with its default settings, so it can run
+ * handshakes from many threads at once, and sends as many asynchronous
+ * handshakes at once as the pool has connections per host. Use the builder to
+ * tune the pool and timeouts.
+ * </p>
  * 
  * @author Matthias Kaeppler
  */
@@ -36,7 +45,7 @@ public class CommonsHttp3OAuthProvider extends AbstractOAuthProvider {
     public CommonsHttp3OAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
             String authorizationWebsiteUrl) {
         super(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl);
-        this.httpClient = new HttpClient();
+        this.httpClient = new PooledHttp3ClientBuilder().build();
     }
 
     public CommonsHttp3OAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
@@ -49,6 +58,17 @@ public class CommonsHttp3OAuthProvider extends AbstractOAuthProvider {
         this.httpClient = httpClient;
     }
 
+    @Override
+    protected int getMaxConcurrentRequests() {
+        HttpConnectionManager manager = httpClient == null ? null : httpClient
+            .getHttpConnectionManager();
+        if (manager instanceof MultiThreadedHttpConnectionManager) {
+            // more threads than connections would only wait for one
+            return manager.getParams().getDefaultMaxConnectionsPerHost();
+        }
+        return super.getMaxConcurrentRequests();
+    }
+
     @Override
     protected HttpRequest createRequest(String endpointUrl) throws Exception {
         PostMethod method = new PostMethod(endpointUrl);
@@ -59,7 +59,8 @@ public class Http3RequestAdapter implements oauth.signpost.http.HttpRequest {
 
     public String getContentType() {
 		String type = null;
-		if(httpMethod instanceof PostMethod){
+		if(httpMethod instanceof PostMethod
+		        && ((PostMethod) httpMethod).getRequestEntity() != null){
             PostMethod postMethod = (PostMethod) httpMethod;			
 			type = postMethod.getRequestEntity().getContentType();
 		}else{
@@ -73,6 +74,10 @@ public class Http3RequestAdapter implements oauth.signpost.http.HttpRequest {
 		InputStream body = null;
 		if(httpMethod instanceof PostMethod){
             PostMethod postMethod = (PostMethod) httpMethod;			
+            if (postMethod.getRequestEntity() == null) {
+                // token requests are posted without a body
+                return null;
+            }
 			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			postMethod.getRequestEntity().writeRequest(out);
 			body = new ByteArrayInputStream(out.toByteArray());
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import oauth.signpost.http.HttpResponse;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
 
 public class Http3ResponseAdapter implements HttpResponse {
@@ -27,6 +28,11 @@ public class Http3ResponseAdapter implements HttpResponse {
         return httpMethod.getStatusLine().getReasonPhrase();
     }
 
+    public String getHeader(String name) {
+        Header header = httpMethod.getResponseHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
     public Object unwrap() {
         return httpMethod;
     }
@@ -0,0 +1,192 @@
+package oauth.signpost.commonshttp3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+/**
+ * <p>
+ * Builds an {@link HttpClient} backed by a
+ * {@link MultiThreadedHttpConnectionManager}, which is safe to share among
+ * threads and keeps connections open between requests. Pass it to
+ * {@link CommonsHttp3OAuthProvider#CommonsHttp3OAuthProvider(String, String, String, HttpClient)}
+ * to let many handshakes run at once through one provider:
+ * </p>
+ *
+ * <pre>
+ * HttpClient client = new PooledHttp3ClientBuilder().maxConnectionsPerHost(50)
+ *     .idleTimeout(30, TimeUnit.SECONDS).connectionTimeout(5, TimeUnit.SECONDS).build();
+ * OAuthProvider provider = new CommonsHttp3OAuthProvider(requestTokenUrl, accessTokenUrl,
+ *         authorizationUrl, client);
+ * </pre>
+ * <p>
+ * Token requests usually all go to one host, so the limit per host is the one
+ * that bounds how many run at once; further requests wait for a free
+ * connection. Timeouts that aren't set are left to HttpClient, which by
+ * default waits indefinitely. Idle connections are closed by the requests
+ * themselves, so the client starts no thread of its own. Shut its connection
+ * manager down when it's no longer needed.
+ * </p>
+ */
+public class PooledHttp3ClientBuilder {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+
+    private long idleTimeoutMillis;
+
+    private int connectionTimeoutMillis = -1;
+
+    private int socketTimeoutMillis = -1;
+
+    private long connectionManagerTimeoutMillis = -1;
+
+    /**
+     * @param max
+     *        how many connections may be open to one host at once; defaults
+     *        to {@value #DEFAULT_MAX_CONNECTIONS_PER_HOST}
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder maxConnectionsPerHost(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive: " + max);
+        }
+        this.maxConnectionsPerHost = max;
+        return this;
+    }
+
+    /**
+     * @param max
+     *        how many connections may be open at once in total; defaults to
+     *        {@value #DEFAULT_MAX_CONNECTIONS_TOTAL}
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder maxConnectionsTotal(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive: " + max);
+        }
+        this.maxConnectionsTotal = max;
+        return this;
+    }
+
+    /**
+     * Closes pooled connections that have been idle for longer than the given
+     * time. The pool is checked when a request asks for a connection, at most
+     * twice per timeout. By default, idle connections are kept until the pool
+     * finds them stale when they are next used.
+     *
+     * @param duration
+     *        the idle time after which a connection is closed; 0 disables
+     *        eviction
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder idleTimeout(long duration, TimeUnit unit) {
+        this.idleTimeoutMillis = toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long to wait for a connection to be established
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder connectionTimeout(long duration, TimeUnit unit) {
+        this.connectionTimeoutMillis = (int) toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long to wait for data from the server
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder socketTimeout(long duration, TimeUnit unit) {
+        this.socketTimeoutMillis = (int) toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long a request waits for a free connection when the pool is
+     *        exhausted
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttp3ClientBuilder connectionManagerTimeout(long duration, TimeUnit unit) {
+        this.connectionManagerTimeoutMillis = toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @return a new client with its own connection pool
+     */
+    public HttpClient build() {
+        MultiThreadedHttpConnectionManager connectionManager = idleTimeoutMillis > 0
+                ? new EvictingConnectionManager(idleTimeoutMillis)
+                : new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        params.setMaxTotalConnections(Math.max(maxConnectionsTotal, maxConnectionsPerHost));
+        if (connectionTimeoutMillis >= 0) {
+            params.setConnectionTimeout(connectionTimeoutMillis);
+        }
+        if (socketTimeoutMillis >= 0) {
+            params.setSoTimeout(socketTimeoutMillis);
+        }
+        HttpClient client = new HttpClient(connectionManager);
+        if (connectionManagerTimeoutMillis >= 0) {
+            client.getParams().setConnectionManagerTimeout(connectionManagerTimeoutMillis);
+        }
+        return client;
+    }
+
+    private static long toMillis(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative: " + duration);
+        }
+        return Math.min(unit.toMillis(duration), Integer.MAX_VALUE);
+    }
+
+    private static final class EvictingConnectionManager extends
+            MultiThreadedHttpConnectionManager {
+
+        private final long idleTimeoutMillis;
+
+        private final AtomicLong nextEviction = new AtomicLong();
+
+        EvictingConnectionManager(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+        }
+
+        @Override
+        public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration,
+                long timeout) throws ConnectionPoolTimeoutException {
+            long now = System.currentTimeMillis();
+            long next = nextEviction.get();
+            // one caller per interval closes the idle connections
+            if (now >= next
+                    && nextEviction.compareAndSet(next, now + Math.max(1, idleTimeoutMillis / 2))) {
+                closeIdleConnections(idleTimeoutMillis);
+            }
+            return super.getConnectionWithTimeout(hostConfiguration, timeout);
+        }
+    }
+}
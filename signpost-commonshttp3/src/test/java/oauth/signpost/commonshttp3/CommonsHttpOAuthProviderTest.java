@@ -1,10 +1,15 @@
 package oauth.signpost.commonshttp3;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
 import oauth.signpost.commonshttp3.CommonsHttp3OAuthProvider;
 import oauth.signpost.OAuth;
 import oauth.signpost.OAuthProvider;
 import oauth.signpost.OAuthProviderTest;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnit44Runner;
 
@@ -23,4 +28,13 @@ public class CommonsHttpOAuthProviderTest extends OAuthProviderTest {
         }
         return new CommonsHttp3OAuthProvider(requestTokenUrl, accessTokenUrl, websiteUrl);
     }
+
+    @Test
+    public void shouldSendAsManyAsynchronousRequestsAsPoolHasConnections() throws Exception {
+        CommonsHttp3OAuthProvider provider = new CommonsHttp3OAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL, new PooledHttp3ClientBuilder()
+                    .maxConnectionsPerHost(7).build());
+
+        assertEquals(7, ((ThreadPoolExecutor) provider.getExecutor()).getMaximumPoolSize());
+    }
 }
@@ -1,11 +1,13 @@
 package oauth.signpost.commonshttp3;
 
+import static org.junit.Assert.assertNull;
 import oauth.signpost.commonshttp3.Http3RequestAdapter;
 import oauth.signpost.basic.HttpRequestAdapterTestBase;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnit44Runner;
 
@@ -20,4 +22,11 @@ public class HttpRequestAdapterTest extends HttpRequestAdapterTestBase {
         method.setRequestEntity(body);
         request = new Http3RequestAdapter(method);
     }
+
+    @Test
+    public void shouldAllowPostWithoutBody() throws Exception {
+        Http3RequestAdapter adapter = new Http3RequestAdapter(new PostMethod(URL));
+        assertNull(adapter.getContentType());
+        assertNull(adapter.getMessagePayload());
+    }
 }
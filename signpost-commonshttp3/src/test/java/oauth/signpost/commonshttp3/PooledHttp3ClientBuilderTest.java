@@ -0,0 +1,82 @@
+package oauth.signpost.commonshttp3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.junit.Test;
+
+public class PooledHttp3ClientBuilderTest {
+
+    @Test
+    public void shouldUseDefaultsWhenNotTuned() throws Exception {
+        HttpClient client = new PooledHttp3ClientBuilder().build();
+
+        MultiThreadedHttpConnectionManager connectionManager =
+                (MultiThreadedHttpConnectionManager) client.getHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        assertEquals(PooledHttp3ClientBuilder.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+            params.getDefaultMaxConnectionsPerHost());
+        assertEquals(PooledHttp3ClientBuilder.DEFAULT_MAX_CONNECTIONS_TOTAL,
+            params.getMaxTotalConnections());
+        assertEquals(0, params.getSoTimeout());
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void shouldApplySettings() throws Exception {
+        HttpClient client = new PooledHttp3ClientBuilder().maxConnectionsPerHost(50)
+            .maxConnectionsTotal(10).connectionTimeout(2, TimeUnit.SECONDS).socketTimeout(3,
+                TimeUnit.SECONDS).connectionManagerTimeout(500, TimeUnit.MILLISECONDS).build();
+
+        MultiThreadedHttpConnectionManager connectionManager =
+                (MultiThreadedHttpConnectionManager) client.getHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        assertEquals(50, params.getDefaultMaxConnectionsPerHost());
+        // the total never limits a single host more than its own limit
+        assertEquals(50, params.getMaxTotalConnections());
+        assertEquals(2000, params.getConnectionTimeout());
+        assertEquals(3000, params.getSoTimeout());
+        assertEquals(500, client.getParams().getConnectionManagerTimeout());
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void shouldCloseIdleConnectionsWhenLeasing() throws Exception {
+        HttpClient client = new PooledHttp3ClientBuilder().idleTimeout(1, TimeUnit.MILLISECONDS)
+            .build();
+        MultiThreadedHttpConnectionManager connectionManager =
+                (MultiThreadedHttpConnectionManager) client.getHttpConnectionManager();
+        // connections to it are completed by the backlog without accepting them
+        ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        try {
+            HostConfiguration host = new HostConfiguration();
+            host.setHost("127.0.0.1", server.getLocalPort());
+            HttpConnection connection = connectionManager.getConnection(host);
+            connection.open();
+            connection.releaseConnection();
+
+            Thread.sleep(10);
+            connection = connectionManager.getConnection(host);
+
+            assertFalse(connection.isOpen());
+            connection.releaseConnection();
+        } finally {
+            server.close();
+            connectionManager.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveLimit() {
+        new PooledHttp3ClientBuilder().maxConnectionsPerHost(0);
+    }
+}
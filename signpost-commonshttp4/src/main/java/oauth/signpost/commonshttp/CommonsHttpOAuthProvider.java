@@ -20,7 +20,6 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.DefaultHttpClient;
 
 /**
  * This implementation uses the Apache Commons {@link HttpClient} 4.x HTTP
@@ -28,6 +27,13 @@ import org.apache.http.impl.client.DefaultHttpClient;
  * should use this provider implementation in favor of the default one, since
  * the latter is known to cause problems with Android's Apache Harmony
  * underpinnings.
+ * <p>
+ * Unless given a client, the provider builds one with a
+ * {@link PooledHttpClientBuilder} with its default settings, so it can run
+ * handshakes from many threads at once, and sends as many asynchronous
+ * handshakes at once as the pool has connections per route. Use the builder to
+ * tune the pool and timeouts.
+ * </p>
  * 
  * @author Matthias Kaeppler
  */
@@ -37,10 +43,15 @@ public class CommonsHttpOAuthProvider extends AbstractOAuthProvider {
 
     private transient HttpClient httpClient;
 
+    // the size of the connection pool per route, if the provider built the
+    // client itself; unknown otherwise
+    private transient int maxConnectionsPerRoute;
+
     public CommonsHttpOAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
             String authorizationWebsiteUrl) {
         super(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl);
-        this.httpClient = new DefaultHttpClient();
+        this.httpClient = new PooledHttpClientBuilder().build();
+        this.maxConnectionsPerRoute = PooledHttpClientBuilder.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
     }
 
     public CommonsHttpOAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
@@ -51,6 +62,14 @@ public class CommonsHttpOAuthProvider extends AbstractOAuthProvider {
 
     public void setHttpClient(HttpClient httpClient) {
         this.httpClient = httpClient;
+        this.maxConnectionsPerRoute = 0;
+    }
+
+    @Override
+    protected int getMaxConcurrentRequests() {
+        // more threads than connections would only wait for one
+        return maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : super
+            .getMaxConcurrentRequests();
     }
 
     @Override
@@ -3,6 +3,7 @@ package oauth.signpost.commonshttp;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.http.Header;
 
 public class HttpResponseAdapter implements oauth.signpost.http.HttpResponse {
 
@@ -24,6 +25,11 @@ public class HttpResponseAdapter implements oauth.signpost.http.HttpResponse {
         return response.getStatusLine().getReasonPhrase();
     }
 
+    public String getHeader(String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
     public Object unwrap() {
         return response;
     }
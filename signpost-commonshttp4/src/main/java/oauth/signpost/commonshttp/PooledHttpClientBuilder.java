@@ -0,0 +1,167 @@
+package oauth.signpost.commonshttp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * <p>
+ * Builds an {@link org.apache.http.client.HttpClient} backed by a
+ * {@link PoolingHttpClientConnectionManager}, which is safe to share among
+ * threads and keeps connections open between requests. Pass it to
+ * {@link CommonsHttpOAuthProvider#CommonsHttpOAuthProvider(String, String, String, org.apache.http.client.HttpClient)}
+ * to let many handshakes run at once through one provider:
+ * </p>
+ *
+ * <pre>
+ * CloseableHttpClient client = new PooledHttpClientBuilder().maxConnectionsPerRoute(50)
+ *     .idleTimeout(30, TimeUnit.SECONDS).connectTimeout(5, TimeUnit.SECONDS).build();
+ * OAuthProvider provider = new CommonsHttpOAuthProvider(requestTokenUrl, accessTokenUrl,
+ *         authorizationUrl, client);
+ * </pre>
+ * <p>
+ * Token requests usually all go to one host, so the limit per route is the
+ * one that bounds how many run at once; further requests wait for a free
+ * connection. Timeouts that aren't set are left to HttpClient, which by
+ * default waits indefinitely. Close the client when it's no longer needed,
+ * which also stops the thread that evicts idle connections, if there is one.
+ * </p>
+ */
+public class PooledHttpClientBuilder {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+
+    private long idleTimeoutMillis;
+
+    private int connectTimeoutMillis = -1;
+
+    private int socketTimeoutMillis = -1;
+
+    private int connectionRequestTimeoutMillis = -1;
+
+    /**
+     * @param max
+     *        how many connections may be open to one host at once; defaults
+     *        to {@value #DEFAULT_MAX_CONNECTIONS_PER_ROUTE}
+     * @return this builder
+     */
+    public PooledHttpClientBuilder maxConnectionsPerRoute(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive: " + max);
+        }
+        this.maxConnectionsPerRoute = max;
+        return this;
+    }
+
+    /**
+     * @param max
+     *        how many connections may be open at once in total; defaults to
+     *        {@value #DEFAULT_MAX_CONNECTIONS_TOTAL}
+     * @return this builder
+     */
+    public PooledHttpClientBuilder maxConnectionsTotal(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive: " + max);
+        }
+        this.maxConnectionsTotal = max;
+        return this;
+    }
+
+    /**
+     * Closes pooled connections that have been idle for longer than the given
+     * time, and those the server's keep-alive header says have expired, from a
+     * background thread. By default, idle connections are kept until the pool
+     * finds them stale when they are next leased.
+     *
+     * @param duration
+     *        the idle time after which a connection is closed; 0 disables
+     *        eviction
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttpClientBuilder idleTimeout(long duration, TimeUnit unit) {
+        this.idleTimeoutMillis = toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long to wait for a connection to be established
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttpClientBuilder connectTimeout(long duration, TimeUnit unit) {
+        this.connectTimeoutMillis = (int) toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long to wait for data from the server
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttpClientBuilder socketTimeout(long duration, TimeUnit unit) {
+        this.socketTimeoutMillis = (int) toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param duration
+     *        how long a request waits for a free connection when the pool is
+     *        exhausted
+     * @param unit
+     *        the unit of the duration
+     * @return this builder
+     */
+    public PooledHttpClientBuilder connectionRequestTimeout(long duration, TimeUnit unit) {
+        this.connectionRequestTimeoutMillis = (int) toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @return a new client with its own connection pool
+     */
+    public CloseableHttpClient build() {
+        HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(connectionManager()).setDefaultRequestConfig(requestConfig());
+        if (idleTimeoutMillis > 0) {
+            builder.evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            builder.evictExpiredConnections();
+        }
+        return builder.build();
+    }
+
+    PoolingHttpClientConnectionManager connectionManager() {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(Math.max(maxConnectionsTotal, maxConnectionsPerRoute));
+        return connectionManager;
+    }
+
+    RequestConfig requestConfig() {
+        return RequestConfig.custom().setConnectTimeout(connectTimeoutMillis)
+            .setSocketTimeout(socketTimeoutMillis)
+            .setConnectionRequestTimeout(connectionRequestTimeoutMillis).build();
+    }
+
+    private static long toMillis(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative: " + duration);
+        }
+        return Math.min(unit.toMillis(duration), Integer.MAX_VALUE);
+    }
+}
@@ -1,9 +1,14 @@
 package oauth.signpost.commonshttp;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
 import oauth.signpost.OAuth;
 import oauth.signpost.OAuthProvider;
 import oauth.signpost.OAuthProviderTest;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnit44Runner;
 
@@ -22,4 +27,13 @@ public class CommonsHttpOAuthProviderTest extends OAuthProviderTest {
         }
         return new CommonsHttpOAuthProvider(requestTokenUrl, accessTokenUrl, websiteUrl);
     }
+
+    @Test
+    public void shouldSendAsManyAsynchronousRequestsAsPoolHasConnections() throws Exception {
+        CommonsHttpOAuthProvider provider = new CommonsHttpOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+
+        assertEquals(PooledHttpClientBuilder.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+            ((ThreadPoolExecutor) provider.getExecutor()).getMaximumPoolSize());
+    }
 }
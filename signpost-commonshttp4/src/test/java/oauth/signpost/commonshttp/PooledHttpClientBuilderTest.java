@@ -0,0 +1,63 @@
+package oauth.signpost.commonshttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Test;
+
+public class PooledHttpClientBuilderTest {
+
+    @Test
+    public void shouldUseDefaultsWhenNotTuned() throws Exception {
+        PooledHttpClientBuilder builder = new PooledHttpClientBuilder();
+
+        PoolingHttpClientConnectionManager connectionManager = builder.connectionManager();
+        assertEquals(PooledHttpClientBuilder.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+            connectionManager.getDefaultMaxPerRoute());
+        assertEquals(PooledHttpClientBuilder.DEFAULT_MAX_CONNECTIONS_TOTAL,
+            connectionManager.getMaxTotal());
+        RequestConfig requestConfig = builder.requestConfig();
+        assertEquals(-1, requestConfig.getConnectTimeout());
+        assertEquals(-1, requestConfig.getSocketTimeout());
+        assertEquals(-1, requestConfig.getConnectionRequestTimeout());
+    }
+
+    @Test
+    public void shouldApplySettings() throws Exception {
+        PooledHttpClientBuilder builder = new PooledHttpClientBuilder().maxConnectionsPerRoute(
+            50).maxConnectionsTotal(10).connectTimeout(2, TimeUnit.SECONDS).socketTimeout(3,
+            TimeUnit.SECONDS).connectionRequestTimeout(500, TimeUnit.MILLISECONDS);
+
+        PoolingHttpClientConnectionManager connectionManager = builder.connectionManager();
+        assertEquals(50, connectionManager.getDefaultMaxPerRoute());
+        // the total never limits a single route more than its own limit
+        assertEquals(50, connectionManager.getMaxTotal());
+        RequestConfig requestConfig = builder.requestConfig();
+        assertEquals(2000, requestConfig.getConnectTimeout());
+        assertEquals(3000, requestConfig.getSocketTimeout());
+        assertEquals(500, requestConfig.getConnectionRequestTimeout());
+    }
+
+    @Test
+    public void shouldBuildClientThatEvictsIdleConnections() throws Exception {
+        CloseableHttpClient client = new PooledHttpClientBuilder().idleTimeout(30,
+            TimeUnit.SECONDS).build();
+        assertNotNull(client);
+        client.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveLimit() {
+        new PooledHttpClientBuilder().maxConnectionsPerRoute(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeTimeout() {
+        new PooledHttpClientBuilder().socketTimeout(-1, TimeUnit.SECONDS);
+    }
+}
@@ -14,10 +14,14 @@
  */
 package oauth.signpost;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Random;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
+import oauth.signpost.basic.SecureRandomNonceGenerator;
+import oauth.signpost.basic.SkewCompensatingTimestampSource;
 import oauth.signpost.basic.UrlStringRequestAdapter;
 import oauth.signpost.exception.OAuthCommunicationException;
 import oauth.signpost.exception.OAuthExpectationFailedException;
@@ -31,8 +35,22 @@ import oauth.signpost.signature.QueryStringSigningStrategy;
 import oauth.signpost.signature.SigningStrategy;
 
 /**
+ * <p>
  * ABC for consumer implementations. If you're developing a custom consumer you
  * will probably inherit from this class to save you a lot of work.
+ * </p>
+ * <p>
+ * Signing does not lock the consumer: all state belonging to a single request
+ * lives on the stack of the signing thread, so one consumer instance can sign
+ * requests from many threads at once. Changing the consumer's configuration
+ * (e.g. the message signer) while requests are being signed is safe, but a
+ * request that is already being signed may still see the old values. Each
+ * setting is read on its own, though: {@link #setTokenWithSecret} sets the
+ * token and then the message signer's token secret, so a request signed at
+ * the same time may pair the new token with the old secret and be rejected by
+ * the service provider. Don't change the token while other threads sign
+ * requests with the consumer; use a consumer per token instead.
+ * </p>
  *
  * @author Matthias Kaeppler
  */
@@ -42,22 +60,34 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
 
     private String consumerKey, consumerSecret;
 
-    private String token;
+    // used by sign(String), which always writes to the query string
+    private static final SigningStrategy URL_SIGNING_STRATEGY = new QueryStringSigningStrategy();
 
-    private OAuthMessageSigner messageSigner;
+    // how many requests signAll(Iterable, ...) reads ahead of the signing threads
+    private static final int BATCH_CHUNK_SIZE = 1024;
 
-    private SigningStrategy signingStrategy;
+    private volatile String token;
+
+    private volatile OAuthMessageSigner messageSigner;
+
+    private volatile SigningStrategy signingStrategy;
 
     // these are params that may be passed to the consumer directly (i.e.
     // without going through the request object)
-    private HttpParameters additionalParameters;
+    private volatile HttpParameters additionalParameters;
+
+    // these are the params which were passed to the message signer during the
+    // last call to sign()
+    private volatile HttpParameters requestParameters;
+
+    private volatile boolean sendEmptyTokens;
+
+    private volatile NonceGenerator nonceGenerator = new SecureRandomNonceGenerator();
 
-    // these are the params which will be passed to the message signer
-    private HttpParameters requestParameters;
-    
-    private boolean sendEmptyTokens;
-    
-    final private Random random = new Random(System.nanoTime());
+    private volatile TimestampSource timestampSource = new SkewCompensatingTimestampSource();
+
+    // runtime statistics aren't part of the consumer's state
+    private transient volatile SigningMetrics signingMetrics;
 
     public AbstractOAuthConsumer(String consumerKey, String consumerSecret) {
         this.consumerKey = consumerKey;
@@ -67,73 +97,373 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
     }
 
     public void setMessageSigner(OAuthMessageSigner messageSigner) {
-        this.messageSigner = messageSigner;
+        // configure the signer before publishing it to signing threads
         messageSigner.setConsumerSecret(consumerSecret);
+        this.messageSigner = messageSigner;
     }
 
     public void setSigningStrategy(SigningStrategy signingStrategy) {
         this.signingStrategy = signingStrategy;
     }
 
+    /**
+     * Defines where the consumer takes its oauth_nonce values from. The default
+     * is a {@link SecureRandomNonceGenerator}.
+     * 
+     * @param nonceGenerator
+     *        the generator, which must be safe to call from many threads
+     */
+    public void setNonceGenerator(NonceGenerator nonceGenerator) {
+        this.nonceGenerator = nonceGenerator;
+    }
+
+    public NonceGenerator getNonceGenerator() {
+        return nonceGenerator;
+    }
+
+    /**
+     * Defines where the consumer takes its oauth_timestamp values from. The
+     * default is a {@link SkewCompensatingTimestampSource}, which
+     * {@link AbstractOAuthProvider}s keep in sync with the service provider's
+     * clock.
+     * 
+     * @param timestampSource
+     *        the source, which must be safe to call from many threads
+     */
+    public void setTimestampSource(TimestampSource timestampSource) {
+        this.timestampSource = timestampSource;
+    }
+
+    public TimestampSource getTimestampSource() {
+        return timestampSource;
+    }
+
+    /**
+     * Reports how long each stage of signing takes to the given metrics.
+     * There are none by default, which costs nothing.
+     * 
+     * @param signingMetrics
+     *        the metrics, which must be safe to call from many threads, or
+     *        null to stop reporting
+     * @see oauth.signpost.basic.HistogramSigningMetrics
+     */
+    public void setSigningMetrics(SigningMetrics signingMetrics) {
+        this.signingMetrics = signingMetrics;
+    }
+
+    public SigningMetrics getSigningMetrics() {
+        return signingMetrics;
+    }
+
+    /**
+     * {@inheritDoc} The consumer keeps a copy of the parameters, so changing
+     * them afterwards has no effect unless they are set again.
+     */
     public void setAdditionalParameters(HttpParameters additionalParameters) {
-        this.additionalParameters = additionalParameters;
+        HttpParameters copy = null;
+        if (additionalParameters != null) {
+            // the copy is never modified, so signing threads can share it
+            copy = new HttpParameters();
+            copy.putAll(additionalParameters, false);
+        }
+        this.additionalParameters = copy;
+    }
+
+    public HttpRequest sign(HttpRequest request) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        SigningResult result = signForResult(request, signingStrategy);
+        requestParameters = result.requestParameters();
+        return request;
     }
 
-    public synchronized HttpRequest sign(HttpRequest request) throws OAuthMessageSignerException,
+    public HttpRequest sign(Object request) throws OAuthMessageSignerException,
             OAuthExpectationFailedException, OAuthCommunicationException {
+        return sign(wrap(request));
+    }
+
+    public String sign(String url) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        // always use URL signing, regardless of the configured strategy
+        SigningResult result = signForResult(new UrlStringRequestAdapter(url),
+            URL_SIGNING_STRATEGY);
+        requestParameters = result.requestParameters();
+        return result.getRequest().getRequestUrl();
+    }
+
+    /**
+     * Signs the given HTTP request like {@link #sign(HttpRequest)}, but returns
+     * everything that went into the signature as an immutable
+     * {@link SigningResult} instead of keeping it in the consumer. Unlike
+     * {@link #sign(HttpRequest)}, this does not affect what
+     * {@link #getRequestParameters()} returns.
+     * 
+     * @param request
+     *        the request to sign
+     * @return the outcome of signing the request
+     */
+    public SigningResult signForResult(HttpRequest request) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        return signForResult(request, signingStrategy);
+    }
+
+    /**
+     * Like {@link #signForResult(HttpRequest)}, but accepts HTTP library
+     * specific request objects, cf. {@link #sign(Object)}.
+     * 
+     * @param request
+     *        the request to sign
+     * @return the outcome of signing the request
+     */
+    public SigningResult signForResult(Object request) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        return signForResult(wrap(request));
+    }
+
+    /**
+     * Like {@link #sign(String)}, but returns an immutable
+     * {@link SigningResult}. The signed URL is available through
+     * {@link SigningResult#getWrittenValue()}.
+     * 
+     * @param url
+     *        the input URL. May have query parameters.
+     * @return the outcome of signing the URL
+     */
+    public SigningResult signForResult(String url) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        return signForResult(new UrlStringRequestAdapter(url), URL_SIGNING_STRATEGY);
+    }
+
+    /**
+     * Signs all given requests like {@link #signForResult(HttpRequest)}, using
+     * the common fork-join pool.
+     * 
+     * @see #signAll(Collection, ForkJoinPool)
+     */
+    public BatchSigningResult signAll(Collection<? extends HttpRequest> requests)
+            throws OAuthExpectationFailedException {
+        return signAll(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * <p>
+     * Signs all given requests like {@link #signForResult(HttpRequest)}, spread
+     * over the threads of the given pool. Each request gets its own result; a
+     * request that cannot be signed is recorded as a failure and does not
+     * affect the others.
+     * </p>
+     * <p>
+     * The nonces of a batch are guaranteed to be distinct: they share a prefix
+     * from the {@link NonceGenerator}, followed by the position of the request
+     * in the batch. Requests that already carry an oauth_nonce keep it.
+     * </p>
+     * 
+     * @param requests
+     *        the requests to sign
+     * @param pool
+     *        the pool to sign in; the calling thread waits for the batch
+     * @return the outcome for each request, in the order of the collection
+     * @throws OAuthExpectationFailedException
+     *         if the consumer key or secret is not set
+     */
+    public BatchSigningResult signAll(Collection<? extends HttpRequest> requests,
+            ForkJoinPool pool) throws OAuthExpectationFailedException {
+        long started = System.nanoTime();
+        HttpRequest[] batch = requests.toArray(new HttpRequest[requests.size()]);
+        BatchSigningResult result = new BatchSigningResult(batch.length);
+        signBatch(batch, batch.length, 0, generateNonce(), pool, result.listener());
+        result.setDurationNanos(System.nanoTime() - started);
+        return result;
+    }
+
+    /**
+     * Like {@link #signAll(Collection, ForkJoinPool)}, but hands each outcome
+     * to the given listener instead of collecting them, and reads the requests
+     * in chunks, so batches of any size can be signed in constant memory.
+     * Returns once all requests have been signed.
+     * 
+     * @param requests
+     *        the requests to sign
+     * @param pool
+     *        the pool to sign in
+     * @param listener
+     *        receives the outcome for each request
+     * @throws OAuthExpectationFailedException
+     *         if the consumer key or secret is not set
+     */
+    public void signAll(Iterable<? extends HttpRequest> requests, ForkJoinPool pool,
+            SigningListener listener) throws OAuthExpectationFailedException {
+        String noncePrefix = generateNonce();
+        HttpRequest[] chunk = new HttpRequest[BATCH_CHUNK_SIZE];
+        int count = 0;
+        long firstIndex = 0;
+        for (HttpRequest request : requests) {
+            chunk[count++] = request;
+            if (count == chunk.length) {
+                signBatch(chunk, count, firstIndex, noncePrefix, pool, listener);
+                firstIndex += count;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            signBatch(chunk, count, firstIndex, noncePrefix, pool, listener);
+        }
+    }
+
+    private void signBatch(HttpRequest[] requests, int count, long firstIndex,
+            String noncePrefix, ForkJoinPool pool, SigningListener listener)
+            throws OAuthExpectationFailedException {
+        // fail the batch rather than every single request
         if (consumerKey == null) {
             throw new OAuthExpectationFailedException("consumer key not set");
         }
         if (consumerSecret == null) {
             throw new OAuthExpectationFailedException("consumer secret not set");
         }
+        pool.invoke(new BatchSigningTask(this, signingStrategy, requests, 0, count,
+            firstIndex, noncePrefix, listener));
+    }
 
-        requestParameters = new HttpParameters();
-        try {
-            if (additionalParameters != null) {
-                requestParameters.putAll(additionalParameters, false);
-            }
-            collectHeaderParameters(request, requestParameters);
-            collectQueryParameters(request, requestParameters);
-            collectBodyParameters(request, requestParameters);
-
-            // add any OAuth params that haven't already been set
-            completeOAuthParameters(requestParameters);
+    /**
+     * Creates a {@link RequestTemplate} for signing many requests with the
+     * same method and URL. Everything these requests have in common, including
+     * the parameters set through {@link #setAdditionalParameters(HttpParameters)},
+     * is prepared once, so signing each request takes less work than
+     * {@link #sign(HttpRequest)}.
+     * 
+     * @param method
+     *        the HTTP method, e.g. GET
+     * @param requestUrl
+     *        the request URL. May have query parameters, which become part of
+     *        the template.
+     * @return the template
+     */
+    public RequestTemplate createRequestTemplate(String method, String requestUrl)
+            throws OAuthMessageSignerException, OAuthExpectationFailedException {
+        if (consumerKey == null) {
+            throw new OAuthExpectationFailedException("consumer key not set");
+        }
+        if (consumerSecret == null) {
+            throw new OAuthExpectationFailedException("consumer secret not set");
+        }
+        return new RequestTemplate(this, method, requestUrl, additionalParameters);
+    }
 
-            requestParameters.remove(OAuth.OAUTH_SIGNATURE);
+    /**
+     * Signs the given request and writes the signature using the given
+     * strategy. This method never touches the consumer's fields other than to
+     * read its configuration, which is what makes concurrent signing safe.
+     *
+     * @param request
+     *        the request to sign
+     * @param signingStrategy
+     *        where to write the signature to
+     * @return the outcome of signing the request
+     */
+    protected SigningResult signForResult(HttpRequest request, SigningStrategy signingStrategy)
+            throws OAuthMessageSignerException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
+        return signForResult(request, signingStrategy, null);
+    }
 
-        } catch (IOException e) {
-            throw new OAuthCommunicationException(e);
+    // uses the given nonce unless the request already has one
+    SigningResult signForResult(HttpRequest request, SigningStrategy signingStrategy,
+            String nonce) throws OAuthMessageSignerException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
+        if (consumerKey == null) {
+            throw new OAuthExpectationFailedException("consumer key not set");
+        }
+        if (consumerSecret == null) {
+            throw new OAuthExpectationFailedException("consumer secret not set");
         }
 
-        String signature = messageSigner.sign(request, requestParameters);
-        OAuth.debugOut("signature", signature);
+        long started = System.nanoTime();
+
+        // the clock is read between stages only if someone is listening
+        SigningMetrics metrics = signingMetrics;
+        SigningMetrics.Stage stage = SigningMetrics.Stage.COLLECT_PARAMETERS;
+        long mark = started;
+        try {
+            HttpParameters requestParameters = new HttpParameters();
+            try {
+                HttpParameters additionalParameters = this.additionalParameters;
+                if (additionalParameters != null) {
+                    requestParameters.putAll(additionalParameters, false);
+                }
+                collectHeaderParameters(request, requestParameters);
+                collectQueryParameters(request, requestParameters);
+                mark = stageCompleted(metrics, stage, mark);
+
+                stage = SigningMetrics.Stage.READ_BODY;
+                collectBodyParameters(request, requestParameters);
+                mark = stageCompleted(metrics, stage, mark);
+
+                stage = SigningMetrics.Stage.COMPLETE_PARAMETERS;
+                if (nonce != null && !requestParameters.containsKey(OAuth.OAUTH_NONCE)) {
+                    requestParameters.put(OAuth.OAUTH_NONCE, nonce, true);
+                }
+
+                // add any OAuth params that haven't already been set
+                completeOAuthParameters(requestParameters);
+
+                requestParameters.remove(OAuth.OAUTH_SIGNATURE);
+                mark = stageCompleted(metrics, stage, mark);
+
+            } catch (IOException e) {
+                throw new OAuthCommunicationException(e);
+            }
+
+            stage = SigningMetrics.Stage.SIGN;
+            String signature = messageSigner.sign(request, requestParameters);
+            OAuth.debugOut("signature", signature);
+            mark = stageCompleted(metrics, stage, mark);
 
-        signingStrategy.writeSignature(signature, request, requestParameters);
-        OAuth.debugOut("Request URL", request.getRequestUrl());
+            stage = SigningMetrics.Stage.WRITE_SIGNATURE;
+            String written = signingStrategy.writeSignature(signature, request, requestParameters);
+            OAuth.debugOut("Request URL", request.getRequestUrl());
 
-        return request;
+            long finished = System.nanoTime();
+            long duration = finished - started;
+            if (metrics != null) {
+                metrics.stageCompleted(stage, finished - mark);
+                metrics.requestSigned(duration);
+            }
+            return new SigningResult(request, requestParameters, signature, written, duration);
+        } catch (Exception e) {
+            if (metrics != null) {
+                metrics.signingFailed(stage, e);
+            }
+            throw e;
+        }
     }
 
-    public synchronized HttpRequest sign(Object request) throws OAuthMessageSignerException,
-            OAuthExpectationFailedException, OAuthCommunicationException {
-        return sign(wrap(request));
+    /**
+     * Reports a completed stage to the given metrics, if any.
+     *
+     * @return the time the next stage starts at, or 0 if there are no metrics
+     */
+    static long stageCompleted(SigningMetrics metrics, SigningMetrics.Stage stage, long since) {
+        if (metrics == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        metrics.stageCompleted(stage, now - since);
+        return now;
     }
 
-    public synchronized String sign(String url) throws OAuthMessageSignerException,
-            OAuthExpectationFailedException, OAuthCommunicationException {
-        HttpRequest request = new UrlStringRequestAdapter(url);
-
-        // switch to URL signing
-        SigningStrategy oldStrategy = this.signingStrategy;
-        this.signingStrategy = new QueryStringSigningStrategy();
+    OAuthMessageSigner messageSigner() {
+        return messageSigner;
+    }
 
-        sign(request);
+    SigningStrategy signingStrategy() {
+        return signingStrategy;
+    }
 
-        // revert to old strategy
-        this.signingStrategy = oldStrategy;
+    SigningMetrics signingMetrics() {
+        return signingMetrics;
+    }
 
-        return request.getRequestUrl();
+    boolean sendsEmptyTokens() {
+        return sendEmptyTokens;
     }
 
     /**
@@ -176,8 +506,9 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
      * </p>
      * <p>
      * It's probably not a very good idea to override this method. If you want
-     * to generate different nonces or timestamps, override
-     * {@link #generateNonce()} or {@link #generateTimestamp()} instead.
+     * to generate different nonces or timestamps, set a
+     * {@link NonceGenerator} or {@link TimestampSource}, or override {@link #generateNonce()} or
+     * {@link #generateTimestamp()} instead.
      * </p>
      *
      * @param out
@@ -206,6 +537,12 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
         }
     }
 
+    /**
+     * Returns the parameters that were used to sign the last request. If
+     * several threads sign requests at once, that may be another thread's
+     * request; use {@link #signForResult(HttpRequest)} to get the parameters
+     * of a particular request.
+     */
     public HttpParameters getRequestParameters() {
         return requestParameters;
     }
@@ -219,8 +556,8 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
      * section 9.1.1
      */
     protected void collectHeaderParameters(HttpRequest request, HttpParameters out) {
-        HttpParameters headerParams = OAuth.oauthHeaderToParamsMap(request.getHeader(OAuth.HTTP_AUTHORIZATION_HEADER));
-        out.putAll(headerParams, false);
+        // the header is usually missing, unless a request is signed again
+        AuthorizationHeaderParser.parse(request.getHeader(OAuth.HTTP_AUTHORIZATION_HEADER), out);
     }
 
     /**
@@ -234,7 +571,14 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
         String contentType = request.getContentType();
         if (contentType != null && contentType.startsWith(OAuth.FORM_ENCODED)) {
             InputStream payload = request.getMessagePayload();
-            out.putAll(OAuth.decodeForm(payload), true);
+            SigningMetrics metrics = signingMetrics;
+            if (metrics == null || payload == null) {
+                out.putAll(FormDecoder.decode(payload, Integer.MAX_VALUE), true);
+            } else {
+                CountingInputStream counting = new CountingInputStream(payload);
+                out.putAll(FormDecoder.decode(counting, Integer.MAX_VALUE), true);
+                metrics.bodyRead(counting.count);
+            }
         }
     }
 
@@ -248,15 +592,50 @@ public abstract class AbstractOAuthConsumer implements OAuthConsumer {
         int q = url.indexOf('?');
         if (q >= 0) {
             // Combine the URL query string with the other parameters:
-            out.putAll(OAuth.decodeForm(url.substring(q + 1)), true);
+            out.putAll(FormDecoder.decode(url.substring(q + 1)), true);
         }
     }
 
     protected String generateTimestamp() {
-        return Long.toString(System.currentTimeMillis() / 1000L);
+        return Long.toString(timestampSource.currentTimeSeconds());
     }
 
     protected String generateNonce() {
-        return Long.toString(random.nextLong());
+        return nonceGenerator.generateNonce();
+    }
+
+    // counts the bytes of a body for the signing metrics
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
     }
 }
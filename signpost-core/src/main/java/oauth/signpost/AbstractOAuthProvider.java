@@ -10,10 +10,28 @@
  */
 package oauth.signpost;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import oauth.signpost.exception.OAuthCommunicationException;
 import oauth.signpost.exception.OAuthExpectationFailedException;
@@ -34,19 +52,39 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The number of threads the default executor sends requests on at most,
+     * unless {@link #getMaxConcurrentRequests()} is overridden.
+     */
+    public static final int DEFAULT_EXECUTOR_THREADS = 4;
+
+    /**
+     * The number of requests that wait for a thread of the default executor
+     * at most; further requests fail right away.
+     */
+    public static final int DEFAULT_EXECUTOR_QUEUE_SIZE = 256;
+
     private String requestTokenEndpointUrl;
 
     private String accessTokenEndpointUrl;
 
     private String authorizationWebsiteUrl;
 
-    private HttpParameters responseParameters;
+    private volatile HttpParameters responseParameters;
 
+    // read by every request, even while another thread adds a header
     private Map<String, String> defaultHeaders;
 
-    private boolean isOAuth10a;
+    private volatile boolean isOAuth10a;
+
+    private transient volatile OAuthProviderListener listener;
+
+    // runtime statistics aren't part of the provider's state
+    private transient volatile ProviderMetrics providerMetrics;
 
-    private transient OAuthProviderListener listener;
+    private transient volatile Executor executor;
+
+    private transient volatile Executor defaultExecutor;
 
     public AbstractOAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
             String authorizationWebsiteUrl) {
@@ -54,29 +92,123 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
         this.accessTokenEndpointUrl = accessTokenEndpointUrl;
         this.authorizationWebsiteUrl = authorizationWebsiteUrl;
         this.responseParameters = new HttpParameters();
-        this.defaultHeaders = new HashMap<String, String>();
+        this.defaultHeaders = new ConcurrentHashMap<String, String>();
+    }
+
+    // the handshake state of these lives in a flow, and is handed to this
+    // provider when the token has been retrieved
+
+    public String retrieveRequestToken(OAuthConsumer consumer, String callbackUrl,
+            String... customOAuthParams) throws OAuthMessageSignerException,
+            OAuthNotAuthorizedException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
+        OAuthFlow flow = newFlow(consumer);
+        String url = retrieveRequestToken(flow, callbackUrl, customOAuthParams);
+        this.responseParameters = flow.getResponseParameters();
+        this.isOAuth10a = flow.isOAuth10a();
+        return url;
     }
 
-    public synchronized String retrieveRequestToken(OAuthConsumer consumer, String callbackUrl,
+    public void retrieveAccessToken(OAuthConsumer consumer, String oauthVerifier,
             String... customOAuthParams) throws OAuthMessageSignerException,
             OAuthNotAuthorizedException, OAuthExpectationFailedException,
             OAuthCommunicationException {
+        OAuthFlow flow = newFlow(consumer);
+        flow.setOAuth10a(isOAuth10a);
+        retrieveAccessToken(flow, oauthVerifier, customOAuthParams);
+        this.responseParameters = flow.getResponseParameters();
+    }
+
+    public CompletionStage<String> retrieveRequestTokenAsync(OAuthConsumer consumer,
+            String callbackUrl, String... customOAuthParams) {
+        OAuthFlow flow = newFlow(consumer);
+        return retrieveRequestTokenAsync(flow, callbackUrl, customOAuthParams).thenApply(url -> {
+            this.responseParameters = flow.getResponseParameters();
+            this.isOAuth10a = flow.isOAuth10a();
+            return url;
+        });
+    }
+
+    public CompletionStage<Void> retrieveAccessTokenAsync(OAuthConsumer consumer,
+            String oauthVerifier, String... customOAuthParams) {
+        OAuthFlow flow = newFlow(consumer);
+        flow.setOAuth10a(isOAuth10a);
+        return retrieveAccessTokenAsync(flow, oauthVerifier, customOAuthParams).thenRun(() -> {
+            this.responseParameters = flow.getResponseParameters();
+        });
+    }
+
+    public OAuthFlow newFlow(OAuthConsumer consumer) {
+        return new OAuthFlow(this, consumer);
+    }
+
+    String retrieveRequestToken(OAuthFlow flow, String callbackUrl, String... customOAuthParams)
+            throws OAuthMessageSignerException, OAuthNotAuthorizedException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        OAuthConsumer consumer = flow.getConsumer();
+        consumer.setTokenWithSecret(null, null);
+
+        retrieveToken(flow, requestTokenEndpointUrl, requestTokenParameters(callbackUrl,
+            customOAuthParams));
+
+        boolean isOAuth10a = removeCallbackConfirmed(flow.getResponseParameters());
+        flow.setOAuth10a(isOAuth10a);
+
+        return authorizationUrl(consumer, callbackUrl, isOAuth10a);
+    }
+
+    void retrieveAccessToken(OAuthFlow flow, String oauthVerifier, String... customOAuthParams)
+            throws OAuthMessageSignerException, OAuthNotAuthorizedException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        OAuthConsumer consumer = flow.getConsumer();
+        retrieveToken(flow, accessTokenEndpointUrl, accessTokenParameters(consumer,
+            oauthVerifier, flow.isOAuth10a(), customOAuthParams));
+    }
 
-        // invalidate current credentials, if any
+    CompletionStage<String> retrieveRequestTokenAsync(OAuthFlow flow, String callbackUrl,
+            String... customOAuthParams) {
+        OAuthConsumer consumer = flow.getConsumer();
         consumer.setTokenWithSecret(null, null);
 
+        return retrieveTokenAsync(flow, requestTokenEndpointUrl, requestTokenParameters(
+            callbackUrl, customOAuthParams)).thenApply(ignored -> {
+            boolean isOAuth10a = removeCallbackConfirmed(flow.getResponseParameters());
+            flow.setOAuth10a(isOAuth10a);
+            return authorizationUrl(consumer, callbackUrl, isOAuth10a);
+        });
+    }
+
+    CompletionStage<Void> retrieveAccessTokenAsync(OAuthFlow flow, String oauthVerifier,
+            String... customOAuthParams) {
+        OAuthConsumer consumer = flow.getConsumer();
+        HttpParameters params;
+        try {
+            params = accessTokenParameters(consumer, oauthVerifier, flow.isOAuth10a(),
+                customOAuthParams);
+        } catch (OAuthExpectationFailedException e) {
+            return failed(e);
+        }
+        return retrieveTokenAsync(flow, accessTokenEndpointUrl, params);
+    }
+
+    private static HttpParameters requestTokenParameters(String callbackUrl,
+            String... customOAuthParams) {
         // 1.0a expects the callback to be sent while getting the request token.
         // 1.0 service providers would simply ignore this parameter.
         HttpParameters params = new HttpParameters();
         params.putAll(customOAuthParams, true);
         params.put(OAuth.OAUTH_CALLBACK, callbackUrl, true);
+        return params;
+    }
 
-        retrieveToken(consumer, requestTokenEndpointUrl, params);
-
+    private static boolean removeCallbackConfirmed(HttpParameters responseParameters) {
         String callbackConfirmed = responseParameters.getFirst(OAuth.OAUTH_CALLBACK_CONFIRMED);
         responseParameters.remove(OAuth.OAUTH_CALLBACK_CONFIRMED);
-        isOAuth10a = Boolean.TRUE.toString().equals(callbackConfirmed);
+        return Boolean.TRUE.toString().equals(callbackConfirmed);
+    }
 
+    private String authorizationUrl(OAuthConsumer consumer, String callbackUrl,
+            boolean isOAuth10a) {
         // 1.0 service providers expect the callback as part of the auth URL,
         // Do not send when 1.0a.
         if (isOAuth10a) {
@@ -88,11 +220,9 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
         }
     }
 
-    public synchronized void retrieveAccessToken(OAuthConsumer consumer, String oauthVerifier,
-            String... customOAuthParams) throws OAuthMessageSignerException,
-            OAuthNotAuthorizedException, OAuthExpectationFailedException,
-            OAuthCommunicationException {
-
+    private static HttpParameters accessTokenParameters(OAuthConsumer consumer,
+            String oauthVerifier, boolean isOAuth10a, String... customOAuthParams)
+            throws OAuthExpectationFailedException {
         if (consumer.getToken() == null || consumer.getTokenSecret() == null) {
             throw new OAuthExpectationFailedException(
                     "Authorized request token or token secret not set. "
@@ -105,31 +235,40 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
         if (isOAuth10a && oauthVerifier != null) {
             params.put(OAuth.OAUTH_VERIFIER, oauthVerifier, true);
         }
-        retrieveToken(consumer, accessTokenEndpointUrl, params);
+        return params;
     }
 
     /**
      * <p>
-     * Implemented by subclasses. The responsibility of this method is to
-     * contact the service provider at the given endpoint URL and fetch a
+     * Contacts the service provider at the given endpoint URL and fetches a
      * request or access token. What kind of token is retrieved solely depends
-     * on the URL being used.
+     * on the URL being used. Every blocking handshake goes through this
+     * method, including those of an {@link OAuthFlow}, which may run on many
+     * threads at once; subclasses may override it to fetch tokens their own
+     * way.
      * </p>
      * <p>
      * Correct implementations of this method must guarantee the following
      * post-conditions:
      * <ul>
-     * <li>the {@link OAuthConsumer} passed to this method must have a valid
+     * <li>the flow's {@link OAuthConsumer} must have a valid
      * {@link OAuth#OAUTH_TOKEN} and {@link OAuth#OAUTH_TOKEN_SECRET} set by
      * calling {@link OAuthConsumer#setTokenWithSecret(String, String)}</li>
-     * <li>{@link #getResponseParameters()} must return the set of query
-     * parameters served by the service provider in the token response, with all
-     * OAuth specific parameters being removed</li>
+     * <li>the flow's {@link OAuthFlow#getResponseParameters()} must return the
+     * set of query parameters served by the service provider in the token
+     * response, with all OAuth specific parameters being removed</li>
      * </ul>
      * </p>
+     * <p>
+     * Asynchronous handshakes call
+     * {@link #retrieveTokenAsync(OAuthFlow, String, HttpParameters)} instead,
+     * so a subclass that overrides this method should override that one too,
+     * e.g. to call this method on the {@link #getExecutor() executor}.
+     * </p>
      * 
-     * @param consumer
-     *        the {@link OAuthConsumer} that should be used to sign the request
+     * @param flow
+     *        the handshake, whose consumer should be used to sign the request
+     *        and which receives the response parameters
      * @param endpointUrl
      *        the URL at which the service provider serves the OAuth token that
      *        is to be fetched
@@ -147,103 +286,418 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
      *         if an expectation has failed, e.g. because the server didn't
      *         reply in the expected format
      */
-    protected void retrieveToken(OAuthConsumer consumer, String endpointUrl,
+    protected void retrieveToken(OAuthFlow flow, String endpointUrl,
             HttpParameters customOAuthParams) throws OAuthMessageSignerException,
             OAuthCommunicationException, OAuthNotAuthorizedException,
             OAuthExpectationFailedException {
-        Map<String, String> defaultHeaders = getRequestHeaders();
+        OAuthConsumer consumer = flow.getConsumer();
+        OAuthProviderListener listener = this.listener;
 
         if (consumer.getConsumerKey() == null || consumer.getConsumerSecret() == null) {
             throw new OAuthExpectationFailedException("Consumer key or secret not set");
         }
 
+        ProviderMetrics metrics = providerMetrics;
+        long started = metrics == null ? 0L : System.nanoTime();
+
         HttpRequest request = null;
         HttpResponse response = null;
         try {
-            request = createRequest(endpointUrl);
-            for (String header : defaultHeaders.keySet()) {
-                request.setHeader(header, defaultHeaders.get(header));
+            for (int attempt = 1;; attempt++) {
+                request = prepareRequest(consumer, endpointUrl, customOAuthParams, listener);
+                response = sendRequest(request);
+                HttpParameters responseParams = readTokenResponse(consumer, request, response,
+                    attempt, listener, metrics);
+                if (responseParams == RETRY) {
+                    closeConnection(request, response);
+                    request = null;
+                    response = null;
+                    continue;
+                }
+                if (responseParams != null) {
+                    storeToken(flow, responseParams);
+                }
+                break;
             }
-            if (customOAuthParams != null && !customOAuthParams.isEmpty()) {
-                consumer.setAdditionalParameters(customOAuthParams);
+
+            if (metrics != null) {
+                metrics.tokenRetrieved(System.nanoTime() - started);
             }
-            
-            if (this.listener != null) {
-                this.listener.prepareRequest(request);
+        } catch (OAuthNotAuthorizedException e) {
+            throw retrievalFailed(metrics, e, started);
+        } catch (OAuthExpectationFailedException e) {
+            throw retrievalFailed(metrics, e, started);
+        } catch (Exception e) {
+            throw retrievalFailed(metrics, new OAuthCommunicationException(e), started);
+        } finally {
+            try {
+                closeConnection(request, response);
+            } catch (Exception e) {
+                throw new OAuthCommunicationException(e);
             }
+        }
+    }
 
-            consumer.sign(request);
-            
-            if (this.listener != null) {
-                this.listener.prepareSubmission(request);
+    /**
+     * Fetches a token for a new flow of the given consumer, and keeps the
+     * response parameters in this provider.
+     * 
+     * @deprecated the provider no longer calls this method, so overriding it
+     *             has no effect; override
+     *             {@link #retrieveToken(OAuthFlow, String, HttpParameters)}
+     *             instead
+     */
+    @Deprecated
+    protected void retrieveToken(OAuthConsumer consumer, String endpointUrl,
+            HttpParameters customOAuthParams) throws OAuthMessageSignerException,
+            OAuthCommunicationException, OAuthNotAuthorizedException,
+            OAuthExpectationFailedException {
+        OAuthFlow flow = new OAuthFlow(this, consumer);
+        try {
+            retrieveToken(flow, endpointUrl, customOAuthParams);
+        } finally {
+            setResponseParameters(flow.getResponseParameters());
+        }
+    }
+
+    /**
+     * Like {@link #retrieveToken(OAuthFlow, String, HttpParameters)}, but
+     * sends the request with {@link #sendRequestAsync(HttpRequest)} and
+     * doesn't wait for the response. The request is prepared and signed on
+     * the calling thread; the response is handled on the thread that
+     * completes the response. Every asynchronous handshake goes through this
+     * method.
+     * 
+     * @param flow
+     *        the handshake, whose consumer should be used to sign the request
+     *        and which receives the response parameters
+     * @param endpointUrl
+     *        the URL at which the service provider serves the OAuth token that
+     *        is to be fetched
+     * @param customOAuthParams
+     *        custom OAuth parameters which will go directly into the signer
+     * @return a stage that completes when the consumer has received the
+     *         token, or completes exceptionally with the
+     *         {@link oauth.signpost.exception.OAuthException} the blocking
+     *         method would have thrown
+     */
+    protected CompletionStage<Void> retrieveTokenAsync(OAuthFlow flow, String endpointUrl,
+            HttpParameters customOAuthParams) {
+        OAuthConsumer consumer = flow.getConsumer();
+        if (consumer.getConsumerKey() == null || consumer.getConsumerSecret() == null) {
+            return failed(new OAuthExpectationFailedException("Consumer key or secret not set"));
+        }
+
+        ProviderMetrics metrics = providerMetrics;
+        long started = metrics == null ? 0L : System.nanoTime();
+
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        retrieveTokenAsync(consumer, endpointUrl, customOAuthParams, flow, this.listener,
+            metrics, 1).whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                if (metrics != null) {
+                    metrics.tokenRetrieved(System.nanoTime() - started);
+                }
+                result.complete(null);
+            } else {
+                result.completeExceptionally(retrievalFailed(metrics, toOAuthException(failure),
+                    started));
             }
+        });
+        return result;
+    }
 
-            response = sendRequest(request);
-            int statusCode = response.getStatusCode();
+    private CompletableFuture<Void> retrieveTokenAsync(OAuthConsumer consumer,
+            String endpointUrl, HttpParameters customOAuthParams, OAuthFlow flow,
+            OAuthProviderListener listener, ProviderMetrics metrics, int attempt) {
+        HttpRequest request;
+        CompletionStage<HttpResponse> sent;
+        try {
+            request = prepareRequest(consumer, endpointUrl, customOAuthParams, listener);
+            sent = sendRequestAsync(request);
+        } catch (Exception e) {
+            return failed(e);
+        }
 
-            boolean requestHandled = false;
-            if (this.listener != null) {
-                requestHandled = this.listener.onResponseReceived(request, response);
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        sent.whenComplete((response, failure) -> {
+            Throwable error = failure;
+            HttpParameters responseParams = null;
+            if (error == null) {
+                try {
+                    responseParams = readTokenResponse(consumer, request, response, attempt,
+                        listener, metrics);
+                    if (responseParams != null && responseParams != RETRY) {
+                        storeToken(flow, responseParams);
+                    }
+                } catch (Exception e) {
+                    error = e;
+                }
             }
-            if (requestHandled) {
-                return;
+            try {
+                closeConnection(request, response);
+            } catch (Exception e) {
+                if (error == null) {
+                    error = e;
+                }
             }
 
-            if (statusCode >= 300) {
-                handleUnexpectedResponse(statusCode, response);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (responseParams == RETRY) {
+                retrieveTokenAsync(consumer, endpointUrl, customOAuthParams, flow, listener,
+                    metrics, attempt + 1).whenComplete((ignored, retryFailure) -> {
+                    if (retryFailure == null) {
+                        result.complete(null);
+                    } else {
+                        result.completeExceptionally(retryFailure);
+                    }
+                });
+            } else {
+                result.complete(null);
             }
+        });
+        return result;
+    }
 
-            HttpParameters responseParams = OAuth.decodeForm(response.getContent());
+    private HttpRequest prepareRequest(OAuthConsumer consumer, String endpointUrl,
+            HttpParameters customOAuthParams, OAuthProviderListener listener) throws Exception {
+        Map<String, String> defaultHeaders = getRequestHeaders();
 
-            String token = responseParams.getFirst(OAuth.OAUTH_TOKEN);
-            String secret = responseParams.getFirst(OAuth.OAUTH_TOKEN_SECRET);
-            responseParams.remove(OAuth.OAUTH_TOKEN);
-            responseParams.remove(OAuth.OAUTH_TOKEN_SECRET);
+        HttpRequest request = createRequest(endpointUrl);
+        for (String header : defaultHeaders.keySet()) {
+            request.setHeader(header, defaultHeaders.get(header));
+        }
+        if (customOAuthParams != null && !customOAuthParams.isEmpty()) {
+            consumer.setAdditionalParameters(customOAuthParams);
+        }
 
-            setResponseParameters(responseParams);
+        if (listener != null) {
+            listener.prepareRequest(request);
+        }
 
-            if (token == null || secret == null) {
-                throw new OAuthExpectationFailedException(
-                        "Request token or token secret not set in server reply. "
-                                + "The service provider you use is probably buggy.");
-            }
+        consumer.sign(request);
 
-            consumer.setTokenWithSecret(token, secret);
+        if (listener != null) {
+            listener.prepareSubmission(request);
+        }
+        return request;
+    }
 
-        } catch (OAuthNotAuthorizedException e) {
-            throw e;
-        } catch (OAuthExpectationFailedException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new OAuthCommunicationException(e);
-        } finally {
-            try {
-                closeConnection(request, response);
-            } catch (Exception e) {
-                throw new OAuthCommunicationException(e);
+    // returned by readTokenResponse if the request must be sent again
+    private static final HttpParameters RETRY = new HttpParameters();
+
+    // service providers commonly accept timestamps up to five minutes off
+    // their clock
+    private static final long MAX_TIMESTAMP_SKEW_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * Handles the service provider's response to a token request.
+     * 
+     * @return the parameters of the token response, {@link #RETRY} if the
+     *         request must be sent again, or null if the listener handled the
+     *         response
+     */
+    private HttpParameters readTokenResponse(OAuthConsumer consumer, HttpRequest request,
+            HttpResponse response, int attempt, OAuthProviderListener listener,
+            ProviderMetrics metrics) throws Exception {
+        int statusCode = response.getStatusCode();
+        if (metrics != null) {
+            metrics.responseReceived(statusCode);
+        }
+        long skewMillis = synchronizeClock(consumer, response);
+
+        if (listener != null && listener.onResponseReceived(request, response)) {
+            return null;
+        }
+
+        if (statusCode == 401 && attempt == 1) {
+            // if the request was refused because our clock is off, the
+            // consumer now knows better, and a single retry succeeds; a skew
+            // providers accept doesn't explain the refusal, though
+            byte[] body = readBody(response);
+            if (synchronizeClock(consumer, response, decodeBody(response, body))
+                    || skewMillis > MAX_TIMESTAMP_SKEW_MILLIS) {
+                return RETRY;
             }
+            response = new ConsumedResponse(response, body);
+        }
+        if (statusCode >= 300) {
+            handleUnexpectedResponse(statusCode, response);
         }
+
+        return FormDecoder.decode(response.getContent(), FormDecoder.DEFAULT_MAX_SIZE);
+    }
+
+    private void storeToken(OAuthFlow flow, HttpParameters responseParams)
+            throws OAuthExpectationFailedException {
+        String token = responseParams.getFirst(OAuth.OAUTH_TOKEN);
+        String secret = responseParams.getFirst(OAuth.OAUTH_TOKEN_SECRET);
+        responseParams.remove(OAuth.OAUTH_TOKEN);
+        responseParams.remove(OAuth.OAUTH_TOKEN_SECRET);
+
+        flow.setResponseParameters(responseParams);
+
+        if (token == null || secret == null) {
+            throw new OAuthExpectationFailedException(
+                    "Request token or token secret not set in server reply. "
+                            + "The service provider you use is probably buggy.");
+        }
+
+        flow.getConsumer().setTokenWithSecret(token, secret);
+    }
+
+    private static <E extends Throwable> E retrievalFailed(ProviderMetrics metrics, E failure,
+            long started) {
+        if (metrics != null && failure instanceof Exception) {
+            metrics.retrievalFailed((Exception) failure, System.nanoTime() - started);
+        }
+        return failure;
+    }
+
+    // what the blocking retrieveToken would have thrown instead
+    private static Throwable toOAuthException(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof OAuthNotAuthorizedException
+                || failure instanceof OAuthExpectationFailedException
+                || !(failure instanceof Exception)) {
+            return failure;
+        }
+        return new OAuthCommunicationException((Exception) failure);
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable failure) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(failure);
+        return future;
     }
 
     protected void handleUnexpectedResponse(int statusCode, HttpResponse response) throws Exception {
         if (response == null) {
             return;
         }
-        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getContent()));
-        StringBuilder responseBody = new StringBuilder();
-
-        String line = reader.readLine();
-        while (line != null) {
-            responseBody.append(line);
-            line = reader.readLine();
-        }
+        String responseBody = decodeBody(response, readBody(response));
 
         switch (statusCode) {
         case 401:
-            throw new OAuthNotAuthorizedException(responseBody.toString());
+            throw new OAuthNotAuthorizedException(responseBody);
         default:
             throw new OAuthCommunicationException("Service provider responded in error: "
-                    + statusCode + " (" + response.getReasonPhrase() + ")", responseBody.toString());
+                    + statusCode + " (" + response.getReasonPhrase() + ")", responseBody);
+        }
+    }
+
+    private static byte[] readBody(HttpResponse response) throws IOException {
+        InputStream content = response.getContent();
+        if (content == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = content.read(buffer)) != -1) {
+            body.write(buffer, 0, n);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Decodes a response body with the charset named in the response's
+     * Content-Type header, or UTF-8 if it names none or one we don't know.
+     */
+    private static String decodeBody(HttpResponse response, byte[] body) {
+        return new String(body, charsetOf(response.getHeader("Content-Type")));
+    }
+
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = param.substring(8).trim();
+                    if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+                        name = name.substring(1, name.length() - 1);
+                    }
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    // only consumers derived from AbstractOAuthConsumer have one
+    private static TimestampSource timestampSourceOf(OAuthConsumer consumer) {
+        return consumer instanceof AbstractOAuthConsumer ? ((AbstractOAuthConsumer) consumer)
+            .getTimestampSource() : null;
+    }
+
+    /**
+     * Passes the time from the response's Date header, if any, to the
+     * consumer's {@link TimestampSource}.
+     * 
+     * @return how far the timestamps the source produced until now were off
+     *         the provider's clock, in milliseconds, if the source has
+     *         changed them; 0 otherwise
+     */
+    private long synchronizeClock(OAuthConsumer consumer, HttpResponse response) {
+        TimestampSource timestampSource = timestampSourceOf(consumer);
+        String date = response.getHeader("Date");
+        if (timestampSource == null || date == null) {
+            return 0;
+        }
+        long serverTime;
+        try {
+            serverTime = ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+        long skewMillis = Math.abs(serverTime - timestampSource.currentTimeSeconds() * 1000L);
+        return timestampSource.synchronize(serverTime, System.currentTimeMillis()) ? skewMillis
+                : 0;
+    }
+
+    /**
+     * Looks for a timestamp_refused problem report (OAuth Problem Reporting
+     * extension) in the body or WWW-Authenticate header of a 401 response, and
+     * passes the middle of the acceptable range to the consumer's
+     * {@link TimestampSource}.
+     */
+    private boolean synchronizeClock(OAuthConsumer consumer, HttpResponse response, String body) {
+        TimestampSource timestampSource = timestampSourceOf(consumer);
+        if (timestampSource == null) {
+            return false;
+        }
+        HttpParameters problem;
+        try {
+            problem = FormDecoder.decode(body);
+            if (!problem.containsKey(OAuth.OAUTH_PROBLEM)) {
+                problem = OAuth.oauthHeaderToParamsMap(response.getHeader("WWW-Authenticate"));
+            }
+        } catch (RuntimeException e) {
+            // neither is well-formed, so there's nothing to learn from them
+            return false;
+        }
+        String acceptable = OAuth.percentDecode(problem
+            .getFirst(OAuth.OAUTH_ACCEPTABLE_TIMESTAMPS));
+        if (!OAuth.TIMESTAMP_REFUSED.equals(problem.getFirst(OAuth.OAUTH_PROBLEM))
+                || acceptable.indexOf('-') < 0) {
+            return false;
+        }
+        try {
+            int dash = acceptable.indexOf('-');
+            long from = Long.parseLong(acceptable.substring(0, dash).trim());
+            long to = Long.parseLong(acceptable.substring(dash + 1).trim());
+            return timestampSource.synchronize((from + to) / 2 * 1000L,
+                System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            return false;
         }
     }
 
@@ -271,6 +725,41 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
      */
     protected abstract HttpResponse sendRequest(HttpRequest request) throws Exception;
 
+    /**
+     * <p>
+     * Sends the given request without waiting for the response; the
+     * asynchronous token methods use this instead of
+     * {@link #sendRequest(HttpRequest)}. The returned stage should complete
+     * on a thread that may block, since the response is read, and the
+     * connection closed, on the thread that completes it.
+     * </p>
+     * <p>
+     * By default, this calls {@link #sendRequest(HttpRequest)} on the
+     * {@link #setExecutor(Executor) executor}. That frees the calling thread,
+     * but ties up an executor thread for every request in flight; override it
+     * if your HTTP library can send requests asynchronously.
+     * </p>
+     * 
+     * @param request
+     *        the request to send
+     * @return the response to the request
+     */
+    protected CompletionStage<HttpResponse> sendRequestAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> response = new CompletableFuture<HttpResponse>();
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    response.complete(sendRequest(request));
+                } catch (Exception e) {
+                    response.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
     /**
      * Called when the connection is being finalized after receiving the
      * response. Use this to do any cleanup / resource freeing.
@@ -300,7 +789,7 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
      * @return the parameter value
      */
     protected String getResponseParameter(String key) {
-        return responseParameters.getFirst(key);
+        return getResponseParameters().getFirst(key);
     }
 
     public void setResponseParameters(HttpParameters parameters) {
@@ -328,7 +817,11 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
     }
 
     public void setRequestHeader(String header, String value) {
-        defaultHeaders.put(header, value);
+        if (value == null) {
+            defaultHeaders.remove(header);
+        } else {
+            defaultHeaders.put(header, value);
+        }
     }
 
     public Map<String, String> getRequestHeaders() {
@@ -342,4 +835,127 @@ public abstract class AbstractOAuthProvider implements OAuthProvider {
     public void removeListener(OAuthProviderListener listener) {
         this.listener = null;
     }
+
+    /**
+     * Sets the executor on which {@link #sendRequestAsync(HttpRequest)} sends
+     * requests, unless a subclass sends them asynchronously by other means.
+     * By default, every provider has a pool of its own, with as many daemon
+     * threads as {@link #getMaxConcurrentRequests()}, which end when they have
+     * been idle for a minute. Up to {@value #DEFAULT_EXECUTOR_QUEUE_SIZE}
+     * further requests wait in line; beyond that, asynchronous handshakes fail
+     * with an {@link OAuthCommunicationException} rather than piling up. To
+     * control the threads' lifecycle, pass an executor of your own.
+     * 
+     * @param executor
+     *        the executor, or null for the default
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        Executor executor = this.executor;
+        if (executor == null) {
+            executor = defaultExecutor;
+        }
+        return executor == null ? createDefaultExecutor() : executor;
+    }
+
+    /**
+     * Returns how many requests the default executor sends at once. Providers
+     * whose HTTP client pools its connections should return the number of
+     * connections per host, since more threads would only wait for a
+     * connection. The default executor asks once, when it is created.
+     * 
+     * @return {@value #DEFAULT_EXECUTOR_THREADS} by default
+     */
+    protected int getMaxConcurrentRequests() {
+        return DEFAULT_EXECUTOR_THREADS;
+    }
+
+    // created on first use, so that providers that never send asynchronously
+    // don't start a pool
+    private synchronized Executor createDefaultExecutor() {
+        if (defaultExecutor == null) {
+            int threads = Math.max(1, getMaxConcurrentRequests());
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L,
+                    TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                            DEFAULT_EXECUTOR_QUEUE_SIZE), DAEMON_THREADS);
+            // nothing shuts this pool down, so it mustn't keep idle threads
+            executor.allowCoreThreadTimeOut(true);
+            defaultExecutor = executor;
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Reports every token request and its outcome to the given metrics. There
+     * are none by default.
+     * 
+     * @param providerMetrics
+     *        the metrics, which must be thread safe, or null to stop reporting
+     * @see oauth.signpost.jmx.ProviderStatistics
+     */
+    public void setProviderMetrics(ProviderMetrics providerMetrics) {
+        this.providerMetrics = providerMetrics;
+    }
+
+    public ProviderMetrics getProviderMetrics() {
+        return providerMetrics;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // providers serialized by earlier versions kept their headers in a
+        // HashMap
+        if (!(defaultHeaders instanceof ConcurrentHashMap)) {
+            defaultHeaders = new ConcurrentHashMap<String, String>(defaultHeaders);
+        }
+    }
+
+    // shared by the default executors, whose threads are numbered across all
+    // providers
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "signpost-provider-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    // a response whose body has already been read
+    private static final class ConsumedResponse implements HttpResponse {
+
+        private final HttpResponse response;
+
+        private final byte[] body;
+
+        ConsumedResponse(HttpResponse response, byte[] body) {
+            this.response = response;
+            this.body = body;
+        }
+
+        public int getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        public String getReasonPhrase() throws Exception {
+            return response.getReasonPhrase();
+        }
+
+        public InputStream getContent() throws IOException {
+            return new ByteArrayInputStream(body);
+        }
+
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        public Object unwrap() {
+            return response.unwrap();
+        }
+    }
 }
@@ -0,0 +1,152 @@
+package oauth.signpost;
+
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * <p>
+ * Reads the parameters of an OAuth Authorization (or WWW-Authenticate) header
+ * in a single pass, e.g.
+ * </p>
+ *
+ * <pre>
+ * OAuth realm="http://example.com/", oauth_token="abc", oauth_nonce="x%2Cy"
+ * </pre>
+ * <p>
+ * Values may be quoted strings, which can contain commas, equals signs and
+ * backslash escapes, or plain tokens. Whitespace around names, values and
+ * separators is ignored, and so is the case of the "OAuth" scheme. Values are
+ * stored as they appear in the header, i.e. still percent encoded; decode
+ * them when reading, e.g. with {@link HttpParameters#getFirst(Object, boolean)}.
+ * </p>
+ * <p>
+ * The parser is lenient: elements without a name or value are skipped, and an
+ * unterminated quoted string runs to the end of the header.
+ * </p>
+ */
+public final class AuthorizationHeaderParser {
+
+    private static final String SCHEME = "OAuth";
+
+    private AuthorizationHeaderParser() {
+    }
+
+    /**
+     * @param header
+     *        the header value, may be null
+     * @return the header's parameters, which are empty if this isn't an OAuth
+     *         header
+     */
+    public static HttpParameters parse(String header) {
+        HttpParameters params = new HttpParameters();
+        parse(header, params);
+        return params;
+    }
+
+    /**
+     * Adds the parameters of the given header to the given parameters.
+     *
+     * @param header
+     *        the header value, may be null
+     * @param out
+     *        where to add the parameters to
+     * @return false if this isn't an OAuth header, in which case nothing was
+     *         added
+     */
+    public static boolean parse(String header, HttpParameters out) {
+        if (header == null) {
+            return false;
+        }
+        int length = header.length();
+        int i = skipWhitespace(header, 0);
+        if (!header.regionMatches(true, i, SCHEME, 0, SCHEME.length())) {
+            return false;
+        }
+        i += SCHEME.length();
+        if (i < length && !isWhitespace(header.charAt(i))) {
+            // some other scheme that starts with OAuth
+            return false;
+        }
+
+        while (i < length) {
+            char c = header.charAt(i);
+            if (c == ',' || isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < length && (c = header.charAt(i)) != '=' && c != ',' && !isWhitespace(c)) {
+                i++;
+            }
+            int nameEnd = i;
+            i = skipWhitespace(header, i);
+            if (i == length || header.charAt(i) != '=' || nameEnd == nameStart) {
+                i = skipElement(header, i);
+                continue;
+            }
+            i = skipWhitespace(header, i + 1);
+
+            String value;
+            if (i < length && header.charAt(i) == '"') {
+                int valueStart = ++i;
+                boolean escaped = false;
+                while (i < length && (c = header.charAt(i)) != '"') {
+                    if (c == '\\') {
+                        escaped = true;
+                        i++;
+                    }
+                    i++;
+                }
+                int valueEnd = Math.min(i, length);
+                value = escaped ? unescape(header, valueStart, valueEnd) : header.substring(
+                    valueStart, valueEnd);
+                // anything between the closing quote and the next comma is junk
+                i = skipElement(header, i + 1);
+            } else {
+                int valueStart = i;
+                while (i < length && header.charAt(i) != ',') {
+                    i++;
+                }
+                int valueEnd = i;
+                while (valueEnd > valueStart && isWhitespace(header.charAt(valueEnd - 1))) {
+                    valueEnd--;
+                }
+                value = header.substring(valueStart, valueEnd);
+            }
+            out.put(header.substring(nameStart, nameEnd), value);
+        }
+        return true;
+    }
+
+    private static String unescape(String s, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                c = s.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static int skipElement(String s, int i) {
+        int length = s.length();
+        while (i < length && s.charAt(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        int length = s.length();
+        while (i < length && isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+}
@@ -0,0 +1,99 @@
+package oauth.signpost;
+
+import java.util.Collection;
+
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * <p>
+ * The outcome of signing a batch of requests with
+ * {@link AbstractOAuthConsumer#signAll(Collection)}. For every request in the
+ * batch, by position, there is either a {@link SigningResult} or the exception that
+ * kept the request from being signed.
+ * </p>
+ * <p>
+ * Batch results are filled in by the signing threads and must not be read
+ * before signAll returns; after that they are effectively immutable.
+ * </p>
+ */
+public final class BatchSigningResult {
+
+    private final SigningResult[] results;
+
+    private final Exception[] failures;
+
+    private long durationNanos;
+
+    BatchSigningResult(int size) {
+        this.results = new SigningResult[size];
+        this.failures = new Exception[size];
+    }
+
+    /**
+     * @return the number of requests in the batch
+     */
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * @param index
+     *        the position of the request in the batch
+     * @return the outcome of signing the request, or null if it failed
+     */
+    public SigningResult getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * @param index
+     *        the position of the request in the batch
+     * @return why the request could not be signed, or null if it was signed
+     */
+    public Exception getFailure(int index) {
+        return failures[index];
+    }
+
+    /**
+     * @return the number of requests that could not be signed
+     */
+    public int getFailureCount() {
+        int failureCount = 0;
+        for (Exception failure : failures) {
+            if (failure != null) {
+                failureCount++;
+            }
+        }
+        return failureCount;
+    }
+
+    /**
+     * @return true if every request in the batch was signed
+     */
+    public boolean isComplete() {
+        return getFailureCount() == 0;
+    }
+
+    /**
+     * @return how long it took to sign the whole batch, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    SigningListener listener() {
+        return new SigningListener() {
+            public void onSigned(long index, SigningResult result) {
+                results[(int) index] = result;
+            }
+
+            public void onFailed(long index, HttpRequest request, Exception failure) {
+                failures[(int) index] = failure;
+            }
+        };
+    }
+
+    void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+}
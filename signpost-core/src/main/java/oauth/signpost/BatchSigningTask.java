@@ -0,0 +1,75 @@
+package oauth.signpost;
+
+import java.util.concurrent.RecursiveAction;
+
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.SigningStrategy;
+
+/**
+ * Signs a slice of a batch, splitting it in halves until the slices are small
+ * enough to be signed in a loop.
+ */
+@SuppressWarnings("serial")
+final class BatchSigningTask extends RecursiveAction {
+
+    // signing takes a few microseconds, so smaller slices aren't worth a task
+    private static final int THRESHOLD = 32;
+
+    private final AbstractOAuthConsumer consumer;
+
+    private final SigningStrategy signingStrategy;
+
+    private final HttpRequest[] requests;
+
+    private final int from;
+
+    private final int to;
+
+    // the batch position of requests[0]
+    private final long firstIndex;
+
+    private final String noncePrefix;
+
+    private final SigningListener listener;
+
+    BatchSigningTask(AbstractOAuthConsumer consumer, SigningStrategy signingStrategy,
+            HttpRequest[] requests, int from, int to, long firstIndex, String noncePrefix,
+            SigningListener listener) {
+        this.consumer = consumer;
+        this.signingStrategy = signingStrategy;
+        this.requests = requests;
+        this.from = from;
+        this.to = to;
+        this.firstIndex = firstIndex;
+        this.noncePrefix = noncePrefix;
+        this.listener = listener;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                sign(i);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchSigningTask(consumer, signingStrategy, requests, from, middle,
+            firstIndex, noncePrefix, listener), new BatchSigningTask(consumer, signingStrategy,
+            requests, middle, to, firstIndex, noncePrefix, listener));
+    }
+
+    private void sign(int i) {
+        long index = firstIndex + i;
+        SigningResult result;
+        try {
+            // the prefix is random per batch and the suffix unique within it
+            result = consumer.signForResult(requests[i], signingStrategy, noncePrefix + '-'
+                    + Long.toString(index, Character.MAX_RADIX));
+        } catch (Exception e) {
+            listener.onFailed(index, requests[i], e);
+            return;
+        }
+        listener.onSigned(index, result);
+    }
+}
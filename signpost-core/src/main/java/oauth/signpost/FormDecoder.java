@@ -0,0 +1,297 @@
+package oauth.signpost;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * <p>
+ * Decodes application/x-www-form-urlencoded documents in a single pass, e.g.
+ * query strings, form bodies and token responses. "+" decodes to a space and
+ * "%XY" escapes are collected into UTF-8 byte sequences, as with
+ * {@link java.net.URLDecoder}. Names and values that contain no escapes are
+ * taken from the input as they are, without a decoding buffer.
+ * </p>
+ * <p>
+ * A name without "=" is added without a value, and empty pairs are kept as
+ * the empty name, except at the end of the document. Malformed escapes cause
+ * an {@link IllegalArgumentException}.
+ * </p>
+ */
+public final class FormDecoder {
+
+    /**
+     * A limit for documents from sources that aren't trusted to be small, such
+     * as service provider responses.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private FormDecoder() {
+    }
+
+    /**
+     * Decodes the given document.
+     *
+     * @param form
+     *        the document, may be null
+     * @return the decoded parameters
+     */
+    public static HttpParameters decode(String form) {
+        if (form == null) {
+            return new HttpParameters();
+        }
+        Pairs params = new Pairs();
+        int length = form.length();
+        int start = 0;
+        boolean pendingEmpty = false;
+        while (start <= length) {
+            int end = form.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end == start) {
+                // only kept if something follows
+                pendingEmpty = true;
+            } else {
+                if (pendingEmpty) {
+                    params.put("", null);
+                    pendingEmpty = false;
+                }
+                int equals = indexOf(form, '=', start, end);
+                if (equals < 0) {
+                    params.put(decode(form, start, end), null);
+                } else {
+                    params.put(decode(form, start, equals), decode(form, equals + 1, end));
+                }
+            }
+            start = end + 1;
+        }
+        return params.toParameters();
+    }
+
+    // unlike String.indexOf, doesn't scan past the end of the pair, so that
+    // pairs without '=' don't make decoding quadratic
+    private static int indexOf(String s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the given stream up to its end and decodes it. The stream is not
+     * closed.
+     *
+     * @param content
+     *        the document, UTF-8 encoded; may be null
+     * @param maxSize
+     *        the most bytes to read
+     * @return the decoded parameters
+     * @throws IOException
+     *         if reading fails, or the document is longer than maxSize
+     */
+    public static HttpParameters decode(InputStream content, int maxSize) throws IOException {
+        if (content == null) {
+            return new HttpParameters();
+        }
+        // one more than allowed, to tell a full document from an oversized one
+        long limit = Math.min((long) maxSize + 1, MAX_ARRAY_SIZE);
+        byte[] buffer = new byte[(int) Math.min(READ_BUFFER_SIZE, limit)];
+        int count = 0;
+        while (true) {
+            if (count == buffer.length) {
+                if (count > maxSize) {
+                    throw new IOException("Form document exceeds " + maxSize + " bytes");
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(count * 2L, limit));
+            }
+            int read = content.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        if (count > maxSize) {
+            throw new IOException("Form document exceeds " + maxSize + " bytes");
+        }
+        return decode(buffer, 0, count);
+    }
+
+    /**
+     * Decodes the remaining bytes of the given buffer, and advances its
+     * position to the limit.
+     *
+     * @param content
+     *        the document, UTF-8 encoded
+     * @return the decoded parameters
+     */
+    public static HttpParameters decode(ByteBuffer content) {
+        int length = content.remaining();
+        HttpParameters params;
+        if (content.hasArray()) {
+            params = decode(content.array(), content.arrayOffset() + content.position(), length);
+        } else {
+            byte[] bytes = new byte[length];
+            content.duplicate().get(bytes);
+            params = decode(bytes, 0, length);
+        }
+        content.position(content.limit());
+        return params;
+    }
+
+    /**
+     * Decodes length bytes of the given array, starting at offset.
+     *
+     * @param content
+     *        the document, UTF-8 encoded
+     * @return the decoded parameters
+     */
+    public static HttpParameters decode(byte[] content, int offset, int length) {
+        Pairs params = new Pairs();
+        int limit = offset + length;
+        int start = offset;
+        boolean pendingEmpty = false;
+        byte[] scratch = null;
+        while (start <= limit) {
+            int end = start;
+            int equals = -1;
+            boolean plain = true;
+            for (; end < limit; end++) {
+                byte b = content[end];
+                if (b == '&') {
+                    break;
+                } else if (b == '=' && equals < 0) {
+                    equals = end;
+                } else if (b == '%' || b == '+' || b < 0) {
+                    plain = false;
+                }
+            }
+            if (end == start) {
+                // only kept if something follows
+                pendingEmpty = true;
+            } else {
+                if (pendingEmpty) {
+                    params.put("", null);
+                    pendingEmpty = false;
+                }
+                if (!plain && scratch == null) {
+                    // decoding never makes anything longer
+                    scratch = new byte[length];
+                }
+                if (equals < 0) {
+                    params.put(decode(content, start, end, plain, scratch), null);
+                } else {
+                    params.put(decode(content, start, equals, plain, scratch), decode(content,
+                        equals + 1, end, plain, scratch));
+                }
+            }
+            start = end + 1;
+        }
+        return params.toParameters();
+    }
+
+    private static String decode(String s, int start, int end) {
+        int i = start;
+        while (i < end && s.charAt(i) != '%' && s.charAt(i) != '+') {
+            i++;
+        }
+        if (i == end) {
+            return s.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(s, start, i);
+        byte[] bytes = null;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '+') {
+                sb.append(' ');
+                i++;
+            } else if (c == '%') {
+                // a run of escapes is one UTF-8 sequence
+                if (bytes == null) {
+                    bytes = new byte[(end - i) / 3];
+                }
+                int count = 0;
+                while (i < end && s.charAt(i) == '%') {
+                    if (i + 2 >= end) {
+                        throw new IllegalArgumentException("Incomplete escape at index " + i);
+                    }
+                    bytes[count++] = (byte) ((hexValue(s.charAt(i + 1)) << 4)
+                            | hexValue(s.charAt(i + 2)));
+                    i += 3;
+                }
+                sb.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String decode(byte[] content, int start, int end, boolean plain,
+            byte[] scratch) {
+        if (plain) {
+            // ASCII without escapes
+            return new String(content, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            byte b = content[i];
+            if (b == '+') {
+                scratch[count++] = ' ';
+            } else if (b == '%') {
+                if (i + 2 >= end) {
+                    throw new IllegalArgumentException("Incomplete escape at index " + i);
+                }
+                scratch[count++] = (byte) ((hexValue((char) content[i + 1]) << 4)
+                        | hexValue((char) content[i + 2]));
+                i += 2;
+            } else {
+                scratch[count++] = b;
+            }
+        }
+        return new String(scratch, 0, count, StandardCharsets.UTF_8);
+    }
+
+    private static int hexValue(char c) {
+        int value = Character.digit(c, 16);
+        if (value < 0) {
+            throw new IllegalArgumentException("Illegal hex character in escape: " + c);
+        }
+        return value;
+    }
+
+    // collects the pairs in document order, so that the parameters sort them
+    // all at once rather than one by one
+    private static final class Pairs {
+
+        private String[] pairs = new String[16];
+
+        private int size;
+
+        void put(String name, String value) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = name;
+            pairs[size++] = value;
+        }
+
+        HttpParameters toParameters() {
+            HttpParameters params = new HttpParameters();
+            params.putAll(size == pairs.length ? pairs : Arrays.copyOf(pairs, size), false);
+            return params;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package oauth.signpost;
+
+import java.io.Serializable;
+
+import oauth.signpost.basic.SecureRandomNonceGenerator;
+import oauth.signpost.basic.ThreadLocalRandomNonceGenerator;
+
+/**
+ * <p>
+ * Supplies the oauth_nonce values for the requests a consumer signs. A nonce
+ * must be unique among all requests that carry the same timestamp, so that
+ * the service provider can detect replayed requests.
+ * </p>
+ * <p>
+ * Consumers call their generator from every signing thread at once, so
+ * implementations must be thread safe and should avoid contention.
+ * </p>
+ * 
+ * @see SecureRandomNonceGenerator
+ * @see ThreadLocalRandomNonceGenerator
+ */
+public interface NonceGenerator extends Serializable {
+
+    /**
+     * @return a new nonce; it should only consist of unreserved characters
+     *         (ALPHA, DIGIT, "-", ".", "_", "~") so that it needs no encoding
+     */
+    String generateNonce();
+}
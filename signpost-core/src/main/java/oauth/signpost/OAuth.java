@@ -14,11 +14,9 @@
  */
 package oauth.signpost;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URLDecoder;
 import java.util.Collection;
@@ -27,8 +25,6 @@ import java.util.Map;
 
 import oauth.signpost.http.HttpParameters;
 
-import com.google.gdata.util.common.base.PercentEscaper;
-
 public class OAuth {
 
     public static final String VERSION_1_0 = "1.0";
@@ -61,6 +57,23 @@ public class OAuth {
 
     public static final String OAUTH_VERIFIER = "oauth_verifier";
 
+    /**
+     * The parameter in which providers following the OAuth Problem Reporting
+     * extension explain why they refused a request.
+     */
+    public static final String OAUTH_PROBLEM = "oauth_problem";
+
+    /**
+     * The oauth_problem value for requests whose timestamp was too far off.
+     */
+    public static final String TIMESTAMP_REFUSED = "timestamp_refused";
+
+    /**
+     * Sent along with {@link #TIMESTAMP_REFUSED}: the range of timestamps the
+     * provider would have accepted, e.g. 1191242000-1191242600.
+     */
+    public static final String OAUTH_ACCEPTABLE_TIMESTAMPS = "oauth_acceptable_timestamps";
+
     /**
      * Pass this value as the callback "url" upon retrieving a request token if
      * your application cannot receive callbacks (e.g. because it's a desktop
@@ -73,14 +86,18 @@ public class OAuth {
      */
     public static final String OUT_OF_BAND = "oob";
 
-    private static final PercentEscaper percentEncoder = new PercentEscaper(
-            "-._~", false);
+    private static final int FORM_ENCODE_BUFFER_SIZE = 512;
 
     public static String percentEncode(String s) {
         if (s == null) {
             return "";
         }
-        return percentEncoder.escape(s);
+        if (!PercentEncoder.needsEncoding(s)) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        PercentEncoder.encode(s, sb);
+        return sb.toString();
     }
 
     public static String percentDecode(String s) {
@@ -103,6 +120,7 @@ public class OAuth {
     public static <T extends Map.Entry<String, String>> void formEncode(Collection<T> parameters,
             OutputStream into) throws IOException {
         if (parameters != null) {
+            byte[] buffer = new byte[FORM_ENCODE_BUFFER_SIZE];
             boolean first = true;
             for (Map.Entry<String, String> entry : parameters) {
                 if (first) {
@@ -110,13 +128,27 @@ public class OAuth {
                 } else {
                     into.write('&');
                 }
-                into.write(percentEncode(safeToString(entry.getKey())).getBytes());
+                writeEncoded(safeToString(entry.getKey()), buffer, into);
                 into.write('=');
-                into.write(percentEncode(safeToString(entry.getValue())).getBytes());
+                writeEncoded(safeToString(entry.getValue()), buffer, into);
             }
         }
     }
 
+    private static void writeEncoded(String s, byte[] buffer, OutputStream into)
+            throws IOException {
+        if (s == null) {
+            return;
+        }
+        int length = s.length();
+        int start = 0;
+        while (start < length) {
+            int end = PercentEncoder.chunkEnd(s, start, buffer.length);
+            into.write(buffer, 0, PercentEncoder.encode(s, start, end, buffer, 0));
+            start = end;
+        }
+    }
+
     /**
      * Construct a x-www-form-urlencoded document containing the given sequence
      * of name/value pairs. Use OAuth percent encoding (not exactly the encoding
@@ -126,44 +158,26 @@ public class OAuth {
             throws IOException {
         ByteArrayOutputStream b = new ByteArrayOutputStream();
         formEncode(parameters, b);
-        return new String(b.toByteArray());
+        // percent encoded documents are plain ASCII
+        return new String(b.toByteArray(), "US-ASCII");
     }
 
-    /** Parse a form-urlencoded document. */
+    /**
+     * Decodes an application/x-www-form-urlencoded document.
+     * 
+     * @see FormDecoder#decode(String)
+     */
     public static HttpParameters decodeForm(String form) {
-        HttpParameters params = new HttpParameters();
-        if (isEmpty(form)) {
-            return params;
-        }
-        for (String nvp : form.split("\\&")) {
-            int equals = nvp.indexOf('=');
-            String name;
-            String value;
-            if (equals < 0) {
-                name = percentDecode(nvp);
-                value = null;
-            } else {
-                name = percentDecode(nvp.substring(0, equals));
-                value = percentDecode(nvp.substring(equals + 1));
-            }
-
-            params.put(name, value);
-        }
-        return params;
+        return FormDecoder.decode(form);
     }
 
+    /**
+     * Reads and decodes an application/x-www-form-urlencoded document of any
+     * size. Use {@link FormDecoder#decode(InputStream, int)} to limit it.
+     */
     public static HttpParameters decodeForm(InputStream content)
             throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-                content));
-        StringBuilder sb = new StringBuilder();
-        String line = reader.readLine();
-        while (line != null) {
-            sb.append(line);
-            line = reader.readLine();
-        }
-
-        return decodeForm(sb.toString());
+        return FormDecoder.decode(content, Integer.MAX_VALUE);
     }
 
     /**
@@ -221,7 +235,9 @@ public class OAuth {
             if (i > 0) {
                 sb.append("&");
             }
-            sb.append(OAuth.percentEncode(kvPairs[i])).append("=").append(OAuth.percentEncode(kvPairs[i + 1]));
+            PercentEncoder.encode(kvPairs[i], sb);
+            sb.append("=");
+            PercentEncoder.encode(kvPairs[i + 1], sb);
         }
         return sb.toString();
     }
@@ -271,24 +287,26 @@ public class OAuth {
             }
             boolean isOAuthElem = kvPairs[i].startsWith("oauth_")
                     || kvPairs[i].startsWith("x_oauth_");
-            String value = isOAuthElem ? OAuth.percentEncode(kvPairs[i + 1]) : kvPairs[i + 1];
-            sb.append(OAuth.percentEncode(kvPairs[i])).append("=\"").append(value).append("\"");
+            PercentEncoder.encode(kvPairs[i], sb);
+            sb.append("=\"");
+            if (isOAuthElem) {
+                PercentEncoder.encode(kvPairs[i + 1], sb);
+            } else {
+                sb.append(kvPairs[i + 1]);
+            }
+            sb.append("\"");
         }
         return sb.toString();
     }
 
+    /**
+     * Reads the parameters of an OAuth Authorization header. Values are left
+     * percent encoded.
+     * 
+     * @see AuthorizationHeaderParser
+     */
     public static HttpParameters oauthHeaderToParamsMap(String oauthHeader) {
-        HttpParameters params = new HttpParameters();
-        if (oauthHeader == null || !oauthHeader.startsWith("OAuth ")) {
-            return params;
-        }
-        oauthHeader = oauthHeader.substring("OAuth ".length());
-        String[] elements = oauthHeader.split(",");
-        for (String keyValuePair : elements) {
-            String[] keyValue = keyValuePair.split("=");
-            params.put(keyValue[0].trim(), keyValue[1].replace("\"", "").trim());
-        }
-        return params;
+        return AuthorizationHeaderParser.parse(oauthHeader);
     }
 
     /**
@@ -297,18 +315,32 @@ public class OAuth {
      * joining them.
      * 
      * @param name
-     *        the OAuth parameter name, e.g. oauth_token
+     *        the OAuth parameter name, e.g. oauth_token; null is treated as
+     *        the empty string
      * @param value
      *        the OAuth parameter value, e.g. 'hello oauth'
      * @return a name/value pair, e.g. oauth_token="hello%20oauth"
      */
     public static String toHeaderElement(String name, String value) {
-        return OAuth.percentEncode(name) + "=\"" + OAuth.percentEncode(value) + "\"";
+        StringBuilder sb = new StringBuilder((name == null ? 0 : name.length()) + 3
+                + (value == null ? 0 : value.length()));
+        PercentEncoder.encode(name, sb);
+        sb.append("=\"");
+        PercentEncoder.encode(value, sb);
+        return sb.append('"').toString();
     }
 
     public static void debugOut(String key, String value) {
-        if (System.getProperty("debug") != null) {
+        if (isDebugEnabled()) {
             System.out.println("[SIGNPOST] " + key + ": " + value);
         }
     }
+
+    /**
+     * @return true if debug output was requested by setting the "debug" system
+     *         property; use this to skip building expensive debug messages
+     */
+    public static boolean isDebugEnabled() {
+        return System.getProperty("debug") != null;
+    }
 }
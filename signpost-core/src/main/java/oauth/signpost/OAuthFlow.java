@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2009 Matthias Kaeppler Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package oauth.signpost;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletionStage;
+
+import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.exception.OAuthExpectationFailedException;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.exception.OAuthNotAuthorizedException;
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * <p>
+ * One token handshake with a service provider, for one user. A flow carries
+ * everything the handshake learns along the way (the consumer's tokens, the
+ * extra response parameters and whether the service provider speaks OAuth
+ * 1.0a), so an {@link AbstractOAuthProvider} that created it keeps no state
+ * of its own and takes no lock: a single provider, and its HTTP client, can
+ * run the handshakes of all users at once. Other providers are asked for the
+ * tokens through their {@link OAuthProvider} methods, whose results the flow
+ * copies.
+ * </p>
+ * 
+ * <pre>
+ * OAuthFlow flow = provider.newFlow(new DefaultOAuthConsumer(key, secret));
+ * String url = flow.retrieveRequestToken(&quot;http://www.example.com/callback&quot;);
+ * // send the user to url, keep the flow in the user's session
+ * flow.retrieveAccessToken(verifier);
+ * OAuthConsumer consumer = flow.getConsumer();
+ * </pre>
+ * <p>
+ * A flow itself belongs to one user and must not be used by two threads at
+ * once. It is serializable, along with its provider and consumer, so it can
+ * be kept in a session while the user authorizes the request token.
+ * </p>
+ * 
+ * @see OAuthProvider#newFlow(OAuthConsumer)
+ */
+public class OAuthFlow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OAuthProvider provider;
+
+    private final OAuthConsumer consumer;
+
+    private HttpParameters responseParameters = new HttpParameters();
+
+    private boolean isOAuth10a;
+
+    /**
+     * Usually, flows are created by {@link OAuthProvider#newFlow(OAuthConsumer)}.
+     * 
+     * @param provider
+     *        the provider to retrieve the tokens from
+     * @param consumer
+     *        the consumer to sign the token requests with; it receives the
+     *        tokens
+     */
+    public OAuthFlow(OAuthProvider provider, OAuthConsumer consumer) {
+        this.provider = provider;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Queries the service provider for a request token, like
+     * {@link OAuthProvider#retrieveRequestToken(OAuthConsumer, String, String...)}
+     * does for this flow's consumer.
+     * 
+     * @param callbackUrl
+     *        the callback URL, {@link OAuth#OUT_OF_BAND}, or null
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @return the URL to which the user must be sent in order to authorize the
+     *         consumer
+     * @throws OAuthMessageSignerException
+     *         if signing the request failed
+     * @throws OAuthNotAuthorizedException
+     *         if the service provider rejected the consumer
+     * @throws OAuthExpectationFailedException
+     *         if required parameters were not correctly set by the consumer or
+     *         service provider
+     * @throws OAuthCommunicationException
+     *         if server communication failed
+     */
+    public String retrieveRequestToken(String callbackUrl, String... customOAuthParams)
+            throws OAuthMessageSignerException, OAuthNotAuthorizedException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        if (provider instanceof AbstractOAuthProvider) {
+            return ((AbstractOAuthProvider) provider).retrieveRequestToken(this, callbackUrl,
+                customOAuthParams);
+        }
+        String url = provider.retrieveRequestToken(consumer, callbackUrl, customOAuthParams);
+        copyProviderState();
+        return url;
+    }
+
+    /**
+     * Exchanges the authorized request token for an access token, like
+     * {@link OAuthProvider#retrieveAccessToken(OAuthConsumer, String, String...)}
+     * does for this flow's consumer.
+     * 
+     * @param oauthVerifier
+     *        the verifier the service provider issued, or null for OAuth 1.0
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @throws OAuthMessageSignerException
+     *         if signing the request failed
+     * @throws OAuthNotAuthorizedException
+     *         if the service provider rejected the consumer
+     * @throws OAuthExpectationFailedException
+     *         if required parameters were not correctly set by the consumer or
+     *         service provider
+     * @throws OAuthCommunicationException
+     *         if server communication failed
+     */
+    public void retrieveAccessToken(String oauthVerifier, String... customOAuthParams)
+            throws OAuthMessageSignerException, OAuthNotAuthorizedException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        if (provider instanceof AbstractOAuthProvider) {
+            ((AbstractOAuthProvider) provider).retrieveAccessToken(this, oauthVerifier,
+                customOAuthParams);
+            return;
+        }
+        provider.setOAuth10a(isOAuth10a);
+        provider.retrieveAccessToken(consumer, oauthVerifier, customOAuthParams);
+        copyProviderState();
+    }
+
+    /**
+     * Like {@link #retrieveRequestToken(String, String...)}, but doesn't block
+     * the calling thread while waiting for the service provider.
+     * 
+     * @param callbackUrl
+     *        the callback URL, {@link OAuth#OUT_OF_BAND}, or null
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @return a stage that completes with the URL to which the user must be
+     *         sent, or exceptionally with the exception the blocking method
+     *         would have thrown
+     * @see OAuthProvider#retrieveRequestTokenAsync(OAuthConsumer, String,
+     *      String...)
+     */
+    public CompletionStage<String> retrieveRequestTokenAsync(String callbackUrl,
+            String... customOAuthParams) {
+        if (provider instanceof AbstractOAuthProvider) {
+            return ((AbstractOAuthProvider) provider).retrieveRequestTokenAsync(this,
+                callbackUrl, customOAuthParams);
+        }
+        return provider.retrieveRequestTokenAsync(consumer, callbackUrl, customOAuthParams)
+            .thenApply(url -> {
+                copyProviderState();
+                return url;
+            });
+    }
+
+    /**
+     * Like {@link #retrieveAccessToken(String, String...)}, but doesn't block
+     * the calling thread while waiting for the service provider.
+     * 
+     * @param oauthVerifier
+     *        the verifier the service provider issued, or null for OAuth 1.0
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @return a stage that completes when the consumer has received the
+     *         access token, or exceptionally with the exception the blocking
+     *         method would have thrown
+     */
+    public CompletionStage<Void> retrieveAccessTokenAsync(String oauthVerifier,
+            String... customOAuthParams) {
+        if (provider instanceof AbstractOAuthProvider) {
+            return ((AbstractOAuthProvider) provider).retrieveAccessTokenAsync(this,
+                oauthVerifier, customOAuthParams);
+        }
+        provider.setOAuth10a(isOAuth10a);
+        return provider.retrieveAccessTokenAsync(consumer, oauthVerifier, customOAuthParams)
+            .thenRun(this::copyProviderState);
+    }
+
+    // for providers that keep the handshake state themselves
+    private void copyProviderState() {
+        responseParameters = provider.getResponseParameters();
+        isOAuth10a = provider.isOAuth10a();
+    }
+
+    /**
+     * @return the consumer, which holds the tokens retrieved so far
+     */
+    public OAuthConsumer getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * @return the non-OAuth parameters the service provider sent along with
+     *         the last token
+     */
+    public HttpParameters getResponseParameters() {
+        return responseParameters;
+    }
+
+    /**
+     * @return the provider the tokens are retrieved from
+     */
+    public OAuthProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Providers use this to keep the non-OAuth parameters of a token
+     * response, with all OAuth parameters removed.
+     * 
+     * @param responseParameters
+     *        the parameters served by the service provider
+     */
+    public void setResponseParameters(HttpParameters responseParameters) {
+        this.responseParameters = responseParameters;
+    }
+
+    /**
+     * @return true if the service provider confirmed the callback when issuing
+     *         the request token, which means it speaks OAuth 1.0a
+     */
+    public boolean isOAuth10a() {
+        return isOAuth10a;
+    }
+
+    /**
+     * Use this to resume a flow of which only the request token has been kept.
+     * 
+     * @param isOAuth10aProvider
+     *        whether the service provider speaks OAuth 1.0a
+     */
+    public void setOAuth10a(boolean isOAuth10aProvider) {
+        this.isOAuth10a = isOAuth10aProvider;
+    }
+}
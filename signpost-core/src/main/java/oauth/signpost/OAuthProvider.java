@@ -12,10 +12,13 @@ package oauth.signpost;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import oauth.signpost.basic.DefaultOAuthConsumer;
 import oauth.signpost.basic.DefaultOAuthProvider;
 import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.exception.OAuthException;
 import oauth.signpost.exception.OAuthExpectationFailedException;
 import oauth.signpost.exception.OAuthMessageSignerException;
 import oauth.signpost.exception.OAuthNotAuthorizedException;
@@ -77,6 +80,11 @@ import oauth.signpost.http.HttpParameters;
  * <p>
  * The consumer used during token handshakes is now ready for signing.
  * </p>
+ * <p>
+ * A provider used like this remembers the state of the handshake, so it can
+ * run only one at a time. To serve many users at once, share one provider and
+ * give each user a flow instead, see {@link #newFlow(OAuthConsumer)}.
+ * </p>
  * 
  * @see DefaultOAuthProvider
  * @see DefaultOAuthConsumer
@@ -174,6 +182,84 @@ public interface OAuthProvider extends Serializable {
             OAuthNotAuthorizedException, OAuthExpectationFailedException,
             OAuthCommunicationException;
 
+    /**
+     * Like {@link #retrieveRequestToken(OAuthConsumer, String, String...)},
+     * but doesn't block the calling thread while waiting for the service
+     * provider. The request is signed on the calling thread. By default, this
+     * calls the blocking method and returns a stage that has completed
+     * already; {@link AbstractOAuthProvider} sends the request without
+     * blocking.
+     * 
+     * @param consumer
+     *        the {@link OAuthConsumer} that should be used to sign the request
+     * @param callbackUrl
+     *        the callback URL, {@link OAuth#OUT_OF_BAND}, or null
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @return a stage that completes with the URL to which the user must be
+     *         sent in order to authorize the consumer, or exceptionally with
+     *         the exception the blocking method would have thrown
+     */
+    public default CompletionStage<String> retrieveRequestTokenAsync(OAuthConsumer consumer,
+            String callbackUrl, String... customOAuthParams) {
+        CompletableFuture<String> result = new CompletableFuture<String>();
+        try {
+            result.complete(retrieveRequestToken(consumer, callbackUrl, customOAuthParams));
+        } catch (OAuthException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #retrieveAccessToken(OAuthConsumer, String, String...)},
+     * but doesn't block the calling thread while waiting for the service
+     * provider. The request is signed on the calling thread. By default, this
+     * calls the blocking method and returns a stage that has completed
+     * already; {@link AbstractOAuthProvider} sends the request without
+     * blocking.
+     * 
+     * @param consumer
+     *        the {@link OAuthConsumer} that should be used to sign the request
+     * @param oauthVerifier
+     *        the verifier the service provider issued, or null for OAuth 1.0
+     * @param customOAuthParams
+     *        custom OAuth parameters, in key/value order
+     * @return a stage that completes when the consumer has received the
+     *         access token, or exceptionally with the exception the blocking
+     *         method would have thrown
+     */
+    public default CompletionStage<Void> retrieveAccessTokenAsync(OAuthConsumer consumer,
+            String oauthVerifier, String... customOAuthParams) {
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        try {
+            retrieveAccessToken(consumer, oauthVerifier, customOAuthParams);
+            result.complete(null);
+        } catch (OAuthException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a token handshake whose state is kept in the returned flow. For
+     * an {@link AbstractOAuthProvider}, flows created by the same provider
+     * don't share any state or lock, so they can run concurrently; use them to
+     * serve the handshakes of many users with a single provider.
+     * {@link #getResponseParameters()} and {@link #isOAuth10a()} are not
+     * updated by such flows. By default, a flow goes through this provider's
+     * own methods and copies their results, so flows of other providers must
+     * not run at the same time.
+     * 
+     * @param consumer
+     *        the consumer to sign the token requests with; it receives the
+     *        tokens and must not be shared with another flow
+     * @return the flow
+     */
+    public default OAuthFlow newFlow(OAuthConsumer consumer) {
+        return new OAuthFlow(this, consumer);
+    }
+
     /**
      * Any additional non-OAuth parameters returned in the response body of a
      * token request can be obtained through this method. These parameters will
@@ -0,0 +1,298 @@
+package oauth.signpost;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * OAuth percent encoding (RFC 5849, section 3.6) that writes straight into a
+ * buffer supplied by the caller. Characters are UTF-8 encoded, and every byte
+ * other than an unreserved character (ALPHA, DIGIT, "-", ".", "_", "~") is
+ * written as "%XY" with uppercase hex digits. The result is the same as that
+ * of {@link OAuth#percentEncode(String)}, but no intermediate strings or byte
+ * arrays are created.
+ * </p>
+ * <p>
+ * A null input is treated like the empty string. Unpaired surrogates cannot
+ * be UTF-8 encoded and cause an {@link IllegalArgumentException}.
+ * </p>
+ */
+public final class PercentEncoder {
+
+    /**
+     * The most bytes a single char can be encoded to: three UTF-8 bytes, each
+     * escaped as "%XY". (A surrogate pair takes twelve bytes for two chars.)
+     */
+    public static final int MAX_BYTES_PER_CHAR = 9;
+
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    private static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private PercentEncoder() {
+    }
+
+    /**
+     * @return true if the given character is written as is
+     */
+    public static boolean isUnreserved(char c) {
+        return c < 128 && UNRESERVED[c];
+    }
+
+    /**
+     * @return true if encoding the given string would change it
+     */
+    public static boolean needsEncoding(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+        for (int i = 0, length = s.length(); i < length; i++) {
+            if (!isUnreserved(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the exact number of bytes (or chars) the encoded form of the
+     *         given string takes
+     */
+    public static int encodedLength(CharSequence s) {
+        if (s == null) {
+            return 0;
+        }
+        int length = s.length();
+        int encodedLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                encodedLength += UNRESERVED[c] ? 1 : 3;
+            } else if (c < 0x800) {
+                encodedLength += 6;
+            } else if (!Character.isSurrogate(c)) {
+                encodedLength += 9;
+            } else {
+                codePointAt(s, i, length);
+                encodedLength += 12;
+                i++;
+            }
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Returns the end of the longest range of the given string, starting at
+     * the given index, whose encoded form is guaranteed to fit into the given
+     * number of bytes. The range never ends between the two halves of a
+     * surrogate pair. Use this to encode a long string into a fixed size
+     * buffer piece by piece.
+     *
+     * @return the (exclusive) end index, which is equal to start if not even a
+     *         single character is guaranteed to fit
+     */
+    public static int chunkEnd(CharSequence s, int start, int capacity) {
+        int length = s.length();
+        int end = start + capacity / MAX_BYTES_PER_CHAR;
+        if (end >= length) {
+            return length;
+        }
+        if (end > start && Character.isHighSurrogate(s.charAt(end - 1))) {
+            // a pair takes 12 bytes, 3 more than budgeted for its first half
+            if (capacity - (end - start) * MAX_BYTES_PER_CHAR >= 3) {
+                end++;
+            } else {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Appends the encoded form of the given string to the given builder.
+     */
+    public static void encode(CharSequence s, StringBuilder into) {
+        if (s == null) {
+            return;
+        }
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (UNRESERVED[c]) {
+                    // copy runs of unreserved characters in one go
+                    int runStart = i;
+                    while (i + 1 < length && isUnreserved(s.charAt(i + 1))) {
+                        i++;
+                    }
+                    into.append(s, runStart, i + 1);
+                } else {
+                    appendEscaped(c, into);
+                }
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >>> 6), into);
+                appendEscaped(0x80 | (c & 0x3F), into);
+            } else if (!Character.isSurrogate(c)) {
+                appendEscaped(0xE0 | (c >>> 12), into);
+                appendEscaped(0x80 | ((c >>> 6) & 0x3F), into);
+                appendEscaped(0x80 | (c & 0x3F), into);
+            } else {
+                int cp = codePointAt(s, i++, length);
+                appendEscaped(0xF0 | (cp >>> 18), into);
+                appendEscaped(0x80 | ((cp >>> 12) & 0x3F), into);
+                appendEscaped(0x80 | ((cp >>> 6) & 0x3F), into);
+                appendEscaped(0x80 | (cp & 0x3F), into);
+            }
+        }
+    }
+
+    /**
+     * Writes the encoded form of the given string into the given array.
+     *
+     * @return the index in dest following the last byte written
+     * @throws ArrayIndexOutOfBoundsException
+     *         if dest is too small; see {@link #encodedLength(CharSequence)}
+     */
+    public static int encode(CharSequence s, byte[] dest, int offset) {
+        if (s == null) {
+            return offset;
+        }
+        return encode(s, 0, s.length(), dest, offset);
+    }
+
+    /**
+     * Writes the encoded form of the chars from start (inclusive) to end
+     * (exclusive) of the given string into the given array. The range must
+     * not split a surrogate pair.
+     *
+     * @return the index in dest following the last byte written
+     * @throws ArrayIndexOutOfBoundsException
+     *         if dest is too small; see {@link #chunkEnd(CharSequence, int, int)}
+     */
+    public static int encode(CharSequence s, int start, int end, byte[] dest, int offset) {
+        int pos = offset;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (UNRESERVED[c]) {
+                    dest[pos++] = (byte) c;
+                } else {
+                    pos = writeEscaped(c, dest, pos);
+                }
+            } else if (c < 0x800) {
+                pos = writeEscaped(0xC0 | (c >>> 6), dest, pos);
+                pos = writeEscaped(0x80 | (c & 0x3F), dest, pos);
+            } else if (!Character.isSurrogate(c)) {
+                pos = writeEscaped(0xE0 | (c >>> 12), dest, pos);
+                pos = writeEscaped(0x80 | ((c >>> 6) & 0x3F), dest, pos);
+                pos = writeEscaped(0x80 | (c & 0x3F), dest, pos);
+            } else {
+                int cp = codePointAt(s, i++, end);
+                pos = writeEscaped(0xF0 | (cp >>> 18), dest, pos);
+                pos = writeEscaped(0x80 | ((cp >>> 12) & 0x3F), dest, pos);
+                pos = writeEscaped(0x80 | ((cp >>> 6) & 0x3F), dest, pos);
+                pos = writeEscaped(0x80 | (cp & 0x3F), dest, pos);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Writes the encoded form of the given string into the given buffer,
+     * starting at its current position.
+     *
+     * @throws BufferOverflowException
+     *         if the remaining space is too small, in which case the position
+     *         of the buffer is left unchanged
+     */
+    public static void encode(CharSequence s, ByteBuffer dest) {
+        if (s == null) {
+            return;
+        }
+        if (dest.hasArray()) {
+            int needed = encodedLength(s);
+            if (needed > dest.remaining()) {
+                throw new BufferOverflowException();
+            }
+            int start = dest.arrayOffset() + dest.position();
+            int end = encode(s, dest.array(), start);
+            dest.position(dest.position() + end - start);
+            return;
+        }
+        int mark = dest.position();
+        try {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 128) {
+                    if (UNRESERVED[c]) {
+                        dest.put((byte) c);
+                    } else {
+                        putEscaped(c, dest);
+                    }
+                } else if (c < 0x800) {
+                    putEscaped(0xC0 | (c >>> 6), dest);
+                    putEscaped(0x80 | (c & 0x3F), dest);
+                } else if (!Character.isSurrogate(c)) {
+                    putEscaped(0xE0 | (c >>> 12), dest);
+                    putEscaped(0x80 | ((c >>> 6) & 0x3F), dest);
+                    putEscaped(0x80 | (c & 0x3F), dest);
+                } else {
+                    int cp = codePointAt(s, i++, length);
+                    putEscaped(0xF0 | (cp >>> 18), dest);
+                    putEscaped(0x80 | ((cp >>> 12) & 0x3F), dest);
+                    putEscaped(0x80 | ((cp >>> 6) & 0x3F), dest);
+                    putEscaped(0x80 | (cp & 0x3F), dest);
+                }
+            }
+        } catch (BufferOverflowException e) {
+            dest.position(mark);
+            throw e;
+        }
+    }
+
+    private static int codePointAt(CharSequence s, int index, int end) {
+        char high = s.charAt(index);
+        if (Character.isHighSurrogate(high) && index + 1 < end) {
+            char low = s.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        throw new IllegalArgumentException("Unpaired surrogate at index " + index);
+    }
+
+    private static void appendEscaped(int b, StringBuilder into) {
+        into.append('%').append(UPPER_HEX_DIGITS[(b >>> 4) & 0xF]).append(
+            UPPER_HEX_DIGITS[b & 0xF]);
+    }
+
+    private static int writeEscaped(int b, byte[] dest, int pos) {
+        dest[pos] = '%';
+        dest[pos + 1] = (byte) UPPER_HEX_DIGITS[(b >>> 4) & 0xF];
+        dest[pos + 2] = (byte) UPPER_HEX_DIGITS[b & 0xF];
+        return pos + 3;
+    }
+
+    private static void putEscaped(int b, ByteBuffer dest) {
+        dest.put((byte) '%');
+        dest.put((byte) UPPER_HEX_DIGITS[(b >>> 4) & 0xF]);
+        dest.put((byte) UPPER_HEX_DIGITS[b & 0xF]);
+    }
+}
@@ -0,0 +1,41 @@
+package oauth.signpost;
+
+/**
+ * Receives the outcome of every token request an {@link AbstractOAuthProvider}
+ * makes. Set one with {@link AbstractOAuthProvider#setProviderMetrics(ProviderMetrics)};
+ * without one, the provider doesn't read the clock. Methods may be called from
+ * many threads at once, so implementations must be thread safe and should
+ * return quickly.
+ *
+ * @see oauth.signpost.jmx.ProviderStatistics
+ */
+public interface ProviderMetrics {
+
+    /**
+     * Called for every response from the service provider, including those
+     * that are retried.
+     *
+     * @param statusCode
+     *        the HTTP status code of the response
+     */
+    void responseReceived(int statusCode);
+
+    /**
+     * Called when a request or access token has been retrieved.
+     *
+     * @param nanos
+     *        how long retrieving it took, including retries
+     */
+    void tokenRetrieved(long nanos);
+
+    /**
+     * Called when retrieving a token failed.
+     *
+     * @param failure
+     *        the exception the provider is about to throw, e.g. an
+     *        {@link oauth.signpost.exception.OAuthNotAuthorizedException}
+     * @param nanos
+     *        how long the attempt took
+     */
+    void retrievalFailed(Exception failure, long nanos);
+}
@@ -0,0 +1,222 @@
+package oauth.signpost;
+
+import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.exception.OAuthExpectationFailedException;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.OAuthMessageSigner;
+import oauth.signpost.signature.SignatureBaseStringTemplate;
+
+/**
+ * <p>
+ * Signs requests to a single endpoint, i.e. requests that share the method,
+ * the URL (including any query string the template was created with) and the
+ * consumer's additional parameters. Everything these requests have in common
+ * is collected, encoded and sorted once, when the template is created through
+ * {@link AbstractOAuthConsumer#createRequestTemplate(String, String)}. Signing
+ * a request then only adds the nonce, the timestamp, the token and whatever
+ * parameters the caller passes along.
+ * </p>
+ * <p>
+ * Unlike {@link OAuthConsumer#sign(HttpRequest)}, a template does not look at
+ * the request's query string, body or Authorization header. Parameters a
+ * request carries beyond those of the template must be passed to
+ * {@link #sign(HttpRequest, HttpParameters)}, or the signature will not
+ * verify.
+ * </p>
+ * <p>
+ * The consumer key, the signature method and the additional parameters are
+ * fixed when the template is created; the token, the message signer's secrets
+ * and the signing strategy are read from the consumer whenever a request is
+ * signed. Templates are immutable and can be used from many threads at once.
+ * </p>
+ */
+public final class RequestTemplate {
+
+    private final AbstractOAuthConsumer consumer;
+
+    private final String method;
+
+    private final String requestUrl;
+
+    private final String signatureMethod;
+
+    // percent encoded, without oauth_signature
+    private final HttpParameters staticParameters;
+
+    private final SignatureBaseStringTemplate baseString;
+
+    RequestTemplate(AbstractOAuthConsumer consumer, String method, String requestUrl,
+            HttpParameters additionalParameters) throws OAuthMessageSignerException {
+        this.consumer = consumer;
+        this.method = method;
+        this.requestUrl = requestUrl;
+        this.signatureMethod = consumer.messageSigner().getSignatureMethod();
+
+        HttpParameters params = new HttpParameters();
+        if (additionalParameters != null) {
+            params.putAll(additionalParameters, false);
+        }
+        int q = requestUrl.indexOf('?');
+        if (q >= 0) {
+            params.putAll(FormDecoder.decode(requestUrl.substring(q + 1)), true);
+        }
+        if (!params.containsKey(OAuth.OAUTH_CONSUMER_KEY)) {
+            params.put(OAuth.OAUTH_CONSUMER_KEY, consumer.getConsumerKey(), true);
+        }
+        if (!params.containsKey(OAuth.OAUTH_SIGNATURE_METHOD)) {
+            params.put(OAuth.OAUTH_SIGNATURE_METHOD, signatureMethod, true);
+        }
+        if (!params.containsKey(OAuth.OAUTH_VERSION)) {
+            params.put(OAuth.OAUTH_VERSION, OAuth.VERSION_1_0, true);
+        }
+        params.remove(OAuth.OAUTH_SIGNATURE);
+        this.staticParameters = params;
+        this.baseString = new SignatureBaseStringTemplate(method, requestUrl, params);
+    }
+
+    /**
+     * @return the HTTP method of the requests this template signs
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the URL this template was created for
+     */
+    public String getRequestUrl() {
+        return requestUrl;
+    }
+
+    /**
+     * Signs a request that carries no parameters beyond those of the template.
+     *
+     * @see #sign(HttpRequest, HttpParameters)
+     */
+    public SigningResult sign(HttpRequest request) throws OAuthMessageSignerException,
+            OAuthExpectationFailedException, OAuthCommunicationException {
+        return sign(request, null);
+    }
+
+    /**
+     * Like {@link #sign(HttpRequest, HttpParameters)}, but accepts HTTP library
+     * specific request objects, cf. {@link OAuthConsumer#sign(Object)}.
+     */
+    public SigningResult sign(Object request, HttpParameters parameters)
+            throws OAuthMessageSignerException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
+        return sign(consumer.wrap(request), parameters);
+    }
+
+    /**
+     * Signs the given request and writes the signature using the consumer's
+     * signing strategy.
+     *
+     * @param request
+     *        the request to sign; its method must be that of the template, and
+     *        its URL must be the template's URL, optionally followed by more
+     *        query parameters
+     * @param parameters
+     *        the parameters (already percent encoded) the request carries in
+     *        addition to those of the template, i.e. additional query
+     *        parameters or form encoded body parameters; may be null
+     * @return the outcome of signing the request
+     * @throws OAuthExpectationFailedException
+     *         if the request does not match the template, or if the
+     *         consumer's signature method has changed since the template was
+     *         created
+     */
+    public SigningResult sign(HttpRequest request, HttpParameters parameters)
+            throws OAuthMessageSignerException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
+        long started = System.nanoTime();
+
+        if (!method.equals(request.getMethod()) || !matchesUrl(request.getRequestUrl())) {
+            throw new OAuthExpectationFailedException("Request " + request.getMethod() + " "
+                    + request.getRequestUrl() + " does not match template " + method + " "
+                    + requestUrl);
+        }
+        OAuthMessageSigner messageSigner = consumer.messageSigner();
+        if (!signatureMethod.equals(messageSigner.getSignatureMethod())) {
+            throw new OAuthExpectationFailedException("Template was created for "
+                    + signatureMethod + ", but the consumer now uses "
+                    + messageSigner.getSignatureMethod());
+        }
+
+        // there's nothing to collect: the template holds the static parameters
+        SigningMetrics metrics = consumer.signingMetrics();
+        SigningMetrics.Stage stage = SigningMetrics.Stage.COMPLETE_PARAMETERS;
+        long mark = started;
+        try {
+            HttpParameters dynamicParameters = new HttpParameters();
+            if (parameters != null) {
+                copy(parameters, dynamicParameters);
+                dynamicParameters.remove(OAuth.OAUTH_SIGNATURE);
+            }
+            if (!containsKey(OAuth.OAUTH_TIMESTAMP, dynamicParameters)) {
+                dynamicParameters.put(OAuth.OAUTH_TIMESTAMP, consumer.generateTimestamp(), true);
+            }
+            if (!containsKey(OAuth.OAUTH_NONCE, dynamicParameters)) {
+                dynamicParameters.put(OAuth.OAUTH_NONCE, consumer.generateNonce(), true);
+            }
+            if (!containsKey(OAuth.OAUTH_TOKEN, dynamicParameters)) {
+                String token = consumer.getToken();
+                if (token != null && !token.equals("") || consumer.sendsEmptyTokens()) {
+                    dynamicParameters.put(OAuth.OAUTH_TOKEN, token, true);
+                }
+            }
+
+            HttpParameters requestParameters = new HttpParameters();
+            copy(staticParameters, requestParameters);
+            copy(dynamicParameters, requestParameters);
+            mark = AbstractOAuthConsumer.stageCompleted(metrics, stage, mark);
+
+            stage = SigningMetrics.Stage.SIGN;
+            String signature = messageSigner.sign(baseString.bind(request, requestParameters,
+                dynamicParameters));
+            OAuth.debugOut("signature", signature);
+            mark = AbstractOAuthConsumer.stageCompleted(metrics, stage, mark);
+
+            stage = SigningMetrics.Stage.WRITE_SIGNATURE;
+            String written = consumer.signingStrategy().writeSignature(signature, request,
+                requestParameters);
+            OAuth.debugOut("Request URL", request.getRequestUrl());
+
+            long finished = System.nanoTime();
+            long duration = finished - started;
+            if (metrics != null) {
+                metrics.stageCompleted(stage, finished - mark);
+                metrics.requestSigned(duration);
+            }
+            return new SigningResult(request, requestParameters, signature, written, duration);
+        } catch (Exception e) {
+            if (metrics != null) {
+                metrics.signingFailed(stage, e);
+            }
+            throw e;
+        }
+    }
+
+    private boolean matchesUrl(String url) {
+        if (!url.startsWith(requestUrl)) {
+            return false;
+        }
+        if (url.length() == requestUrl.length()) {
+            return true;
+        }
+        char next = url.charAt(requestUrl.length());
+        return next == (requestUrl.indexOf('?') >= 0 ? '&' : '?');
+    }
+
+    private boolean containsKey(String key, HttpParameters dynamicParameters) {
+        return staticParameters.containsKey(key) || dynamicParameters.containsKey(key);
+    }
+
+    private static void copy(HttpParameters from, HttpParameters to) {
+        for (int i = 0, n = from.entryCount(); i < n; i++) {
+            to.put(from.keyAt(i), from.valueAt(i));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package oauth.signpost;
+
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * Receives the outcome of each request signed by
+ * {@link AbstractOAuthConsumer#signAll(Iterable, java.util.concurrent.ForkJoinPool,
+ * SigningListener)} as soon as it is available. Methods are called from the threads of the
+ * fork-join pool, concurrently and in no particular order, so implementations
+ * must be thread safe.
+ */
+public interface SigningListener {
+
+    /**
+     * Called when a request has been signed.
+     *
+     * @param index
+     *        the position of the request in the batch
+     * @param result
+     *        the outcome of signing the request
+     */
+    void onSigned(long index, SigningResult result);
+
+    /**
+     * Called when signing a request failed. The rest of the batch is signed
+     * regardless.
+     *
+     * @param index
+     *        the position of the request in the batch
+     * @param request
+     *        the request that could not be signed
+     * @param failure
+     *        the reason; usually an {@link oauth.signpost.exception.OAuthException}
+     */
+    void onFailed(long index, HttpRequest request, Exception failure);
+}
@@ -0,0 +1,88 @@
+package oauth.signpost;
+
+/**
+ * Receives how long each stage of signing a request took, so that slow
+ * signing can be traced to its cause. Set one with
+ * {@link AbstractOAuthConsumer#setSigningMetrics(SigningMetrics)}; without
+ * one, the consumer doesn't even read the clock between stages. Methods are called
+ * from the signing threads, concurrently, so implementations must be thread
+ * safe and should return quickly.
+ *
+ * @see oauth.signpost.basic.HistogramSigningMetrics
+ */
+public interface SigningMetrics {
+
+    /**
+     * The stages of signing a request, in the order they run.
+     */
+    enum Stage {
+
+        /**
+         * Collecting the additional, Authorization header and query string
+         * parameters.
+         */
+        COLLECT_PARAMETERS,
+
+        /**
+         * Reading and decoding an x-www-form-urlencoded body, if there is
+         * one.
+         */
+        READ_BODY,
+
+        /**
+         * Adding the OAuth parameters the request doesn't carry yet, such as
+         * the nonce and timestamp.
+         */
+        COMPLETE_PARAMETERS,
+
+        /**
+         * Building the signature base string and computing the signature.
+         * The HMAC signers stream the base string into the MAC, so the two
+         * can't be told apart.
+         */
+        SIGN,
+
+        /**
+         * Writing the signature to the request.
+         */
+        WRITE_SIGNATURE
+    }
+
+    /**
+     * Called when a stage has completed.
+     *
+     * @param stage
+     *        the stage
+     * @param nanos
+     *        how long it took
+     */
+    void stageCompleted(Stage stage, long nanos);
+
+    /**
+     * Called when an x-www-form-urlencoded body has been read, during
+     * {@link Stage#READ_BODY}.
+     *
+     * @param bytes
+     *        the size of the body
+     */
+    void bodyRead(long bytes);
+
+    /**
+     * Called when a request has been signed, after the last stage.
+     *
+     * @param nanos
+     *        how long signing took in total
+     */
+    void requestSigned(long nanos);
+
+    /**
+     * Called when signing a request failed.
+     *
+     * @param stage
+     *        the stage that failed
+     * @param failure
+     *        the reason; usually an
+     *        {@link oauth.signpost.exception.OAuthException}
+     */
+    void signingFailed(Stage stage, Exception failure);
+}
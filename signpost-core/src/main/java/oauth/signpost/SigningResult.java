@@ -0,0 +1,107 @@
+package oauth.signpost;
+
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * <p>
+ * The outcome of signing a single request, as returned by
+ * {@link AbstractOAuthConsumer#signForResult(HttpRequest)} and its overloads. A
+ * result is immutable and not tied to the consumer that produced it, so it becomes
+ * garbage as soon as the caller drops it.
+ * </p>
+ * <p>
+ * Accessors that return parameters hand out fresh copies; modifying them has no
+ * effect on the result.
+ * </p>
+ */
+public final class SigningResult {
+
+    private final HttpRequest request;
+
+    private final HttpParameters requestParameters;
+
+    private final String signature;
+
+    private final String writtenValue;
+
+    private final long durationNanos;
+
+    SigningResult(HttpRequest request, HttpParameters requestParameters, String signature,
+            String writtenValue, long durationNanos) {
+        this.request = request;
+        this.requestParameters = requestParameters;
+        this.signature = signature;
+        this.writtenValue = writtenValue;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return the request that was signed
+     */
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the signature as computed by the message signer, i.e. not percent
+     *         encoded
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Returns all oauth_* and x_oauth_* parameters that were written to the
+     * request, including oauth_signature. Keys and values are percent encoded.
+     *
+     * @return a copy of the OAuth parameters
+     */
+    public HttpParameters getOAuthParameters() {
+        HttpParameters oauthParams = new HttpParameters();
+        for (int i = 0, n = requestParameters.entryCount(); i < n; i++) {
+            String key = requestParameters.keyAt(i);
+            if (key.startsWith("oauth_") || key.startsWith("x_oauth_")) {
+                oauthParams.put(key, requestParameters.valueAt(i));
+            }
+        }
+        oauthParams.put(OAuth.OAUTH_SIGNATURE, signature, true);
+        return oauthParams;
+    }
+
+    /**
+     * Returns the exact set of parameters the signature was computed from, as
+     * described for {@link OAuthConsumer#getRequestParameters()}.
+     *
+     * @return a copy of the request parameters
+     */
+    public HttpParameters getRequestParameters() {
+        HttpParameters copy = new HttpParameters();
+        for (int i = 0, n = requestParameters.entryCount(); i < n; i++) {
+            copy.put(requestParameters.keyAt(i), requestParameters.valueAt(i));
+        }
+        return copy;
+    }
+
+    /**
+     * @return whatever the {@link oauth.signpost.signature.SigningStrategy}
+     *         wrote to the request, i.e. the Authorization header value or the
+     *         signed URL
+     */
+    public String getWrittenValue() {
+        return writtenValue;
+    }
+
+    /**
+     * @return how long it took to collect the parameters, compute the signature
+     *         and write it to the request, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    // not copied: only for consumers that keep the parameters around themselves
+    HttpParameters requestParameters() {
+        return requestParameters;
+    }
+}
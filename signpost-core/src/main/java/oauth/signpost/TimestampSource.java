@@ -0,0 +1,43 @@
+package oauth.signpost;
+
+import java.io.Serializable;
+
+import oauth.signpost.basic.SkewCompensatingTimestampSource;
+
+/**
+ * <p>
+ * Supplies the oauth_timestamp values for the requests a consumer signs.
+ * Service providers refuse requests whose timestamp is too far off their own
+ * clock, so a source may learn the provider's time from its responses and
+ * compensate for the difference.
+ * </p>
+ * <p>
+ * Consumers call their source from every signing thread at once, so
+ * implementations must be thread safe.
+ * </p>
+ * 
+ * @see SkewCompensatingTimestampSource
+ */
+public interface TimestampSource extends Serializable {
+
+    /**
+     * @return the current time in seconds since the epoch, as the service
+     *         provider is expected to see it
+     */
+    long currentTimeSeconds();
+
+    /**
+     * Tells the source what time the service provider reported, e.g. in the
+     * Date header of a response. Sources that don't compensate for clock skew
+     * simply ignore this.
+     * 
+     * @param serverTimeMillis
+     *        the provider's time, in milliseconds since the epoch
+     * @param localTimeMillis
+     *        the local time at which the provider's time was observed
+     * @return true if the source now produces different timestamps than
+     *         before, i.e. if retrying a request that failed because of its
+     *         timestamp could succeed
+     */
+    boolean synchronize(long serverTimeMillis, long localTimeMillis);
+}
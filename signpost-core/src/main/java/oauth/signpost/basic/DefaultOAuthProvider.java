@@ -11,6 +11,7 @@
 package oauth.signpost.basic;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -22,6 +23,12 @@ import oauth.signpost.http.HttpResponse;
 /**
  * This default implementation uses {@link java.net.HttpURLConnection} type GET
  * requests to receive tokens from a service provider.
+ * <p>
+ * By default, the connection is disconnected after every token request, which
+ * closes its socket. With {@link #setKeepAlive(boolean)}, the response is read
+ * to its end instead, so that the JDK can hand the connection to the next
+ * request to the same host, which then needs no new TCP or TLS handshake.
+ * </p>
  * 
  * @author Matthias Kaeppler
  */
@@ -29,6 +36,8 @@ public class DefaultOAuthProvider extends AbstractOAuthProvider {
 
     private static final long serialVersionUID = 1L;
 
+    private boolean keepAlive;
+
     public DefaultOAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
             String authorizationWebsiteUrl) {
         super(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl);
@@ -49,11 +58,62 @@ public class DefaultOAuthProvider extends AbstractOAuthProvider {
         return new HttpURLConnectionResponseAdapter(connection);
     }
 
+    /**
+     * Whether connections are returned to the JDK's keep-alive cache after a
+     * token request, rather than disconnected. Keep-alive must not have been
+     * disabled through the {@code http.keepAlive} system property for this to
+     * take effect.
+     * 
+     * @param keepAlive
+     *        true to drain and close the response instead of disconnecting
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return whether connections are returned to the keep-alive cache
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
     @Override
     protected void closeConnection(HttpRequest request, HttpResponse response) {
-        HttpURLConnection connection = (HttpURLConnection) request.unwrap();
-        if (connection != null) {
+        HttpURLConnection connection = request == null ? null
+                : (HttpURLConnection) request.unwrap();
+        if (connection == null) {
+            return;
+        }
+        if (!keepAlive || response == null || !drain(connection)) {
             connection.disconnect();
         }
     }
+
+    // the JDK only caches a connection whose response has been read to its
+    // end and closed; error responses are read from the error stream
+    private static boolean drain(HttpURLConnection connection) {
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            in = connection.getErrorStream();
+        }
+        if (in == null) {
+            return false;
+        }
+        try {
+            try {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            } finally {
+                in.close();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,129 @@
+package oauth.signpost.basic;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import oauth.signpost.SigningMetrics;
+
+/**
+ * The default {@link SigningMetrics}: a {@link LatencyHistogram} per stage
+ * and one for whole requests, a failure count per stage, and the number and
+ * size of the form bodies read. Recording never locks, so one instance can be
+ * shared by all consumers of an application.
+ */
+public class HistogramSigningMetrics implements SigningMetrics {
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGES.length];
+
+    private final LongAdder[] failures = new LongAdder[STAGES.length];
+
+    private final LatencyHistogram requests = new LatencyHistogram();
+
+    private final LongAdder bodies = new LongAdder();
+
+    private final LongAdder bodyBytes = new LongAdder();
+
+    public HistogramSigningMetrics() {
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    public void stageCompleted(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    public void bodyRead(long bytes) {
+        bodies.increment();
+        bodyBytes.add(bytes);
+    }
+
+    public void requestSigned(long nanos) {
+        requests.record(nanos);
+    }
+
+    public void signingFailed(Stage stage, Exception failure) {
+        failures[stage.ordinal()].increment();
+    }
+
+    /**
+     * @return the durations of the given stage
+     */
+    public LatencyHistogram getStageHistogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @return the durations of all requests signed
+     */
+    public LatencyHistogram getRequestHistogram() {
+        return requests;
+    }
+
+    /**
+     * @return how many requests have been signed
+     */
+    public long getSignedCount() {
+        return requests.getCount();
+    }
+
+    /**
+     * @return how many requests failed in the given stage
+     */
+    public long getFailureCount(Stage stage) {
+        return failures[stage.ordinal()].sum();
+    }
+
+    /**
+     * @return how many requests failed in any stage
+     */
+    public long getFailureCount() {
+        long sum = 0;
+        for (LongAdder adder : failures) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return how many form bodies have been read
+     */
+    public long getBodyCount() {
+        return bodies.sum();
+    }
+
+    /**
+     * @return the total size of the form bodies read
+     */
+    public long getBodyBytes() {
+        return bodyBytes.sum();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i].reset();
+            failures[i].reset();
+        }
+        requests.reset();
+        bodies.reset();
+        bodyBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("requests: ").append(requests);
+        sb.append("\nbodies: count=").append(getBodyCount()).append(", bytes=").append(
+            getBodyBytes());
+        for (Stage stage : STAGES) {
+            sb.append('\n').append(stage).append(": ").append(getStageHistogram(stage));
+            sb.append(", failures=").append(getFailureCount(stage));
+        }
+        return sb.toString();
+    }
+}
@@ -30,6 +30,10 @@ public class HttpURLConnectionResponseAdapter implements HttpResponse {
         return connection.getResponseMessage();
     }
 
+    public String getHeader(String name) {
+        return connection.getHeaderField(name);
+    }
+
     public Object unwrap() {
         return connection;
     }
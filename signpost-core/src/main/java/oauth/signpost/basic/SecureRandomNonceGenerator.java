@@ -0,0 +1,79 @@
+package oauth.signpost.basic;
+
+import java.security.SecureRandom;
+
+import oauth.signpost.NonceGenerator;
+
+/**
+ * <p>
+ * The default {@link NonceGenerator}. Every nonce carries 128 bits from a
+ * {@link SecureRandom}, written as 22 characters of URL-safe Base64 (which
+ * needs no percent encoding).
+ * </p>
+ * <p>
+ * Asking a {@link SecureRandom} for a few bytes at a time is slow and, with
+ * the native PRNG, serializes all threads on a global lock. So each thread
+ * keeps its own generator and fetches random bytes in large blocks, from
+ * which it then cuts nonces without further synchronization or allocation
+ * (other than the returned string).
+ * </p>
+ */
+public class SecureRandomNonceGenerator implements NonceGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int NONCE_BYTES = 16;
+
+    private static final int BLOCK_SIZE = 256 * NONCE_BYTES;
+
+    // ceil(16 * 8 / 6), without padding
+    private static final int NONCE_LENGTH = 22;
+
+    private static final char[] URL_SAFE_ALPHABET = ("ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "abcdefghijklmnopqrstuvwxyz0123456789-_").toCharArray();
+
+    private static final ThreadLocal<Block> BLOCKS = new ThreadLocal<Block>() {
+        @Override
+        protected Block initialValue() {
+            return new Block();
+        }
+    };
+
+    public String generateNonce() {
+        return BLOCKS.get().nextNonce();
+    }
+
+    private static final class Block {
+
+        private final SecureRandom random = new SecureRandom();
+
+        private final byte[] bytes = new byte[BLOCK_SIZE];
+
+        private final char[] chars = new char[NONCE_LENGTH];
+
+        private int position = BLOCK_SIZE;
+
+        String nextNonce() {
+            if (position == BLOCK_SIZE) {
+                random.nextBytes(bytes);
+                position = 0;
+            }
+            int c = 0;
+            int end = position + NONCE_BYTES;
+            // five groups of three bytes, each giving four characters...
+            for (; position + 3 <= end; position += 3) {
+                int group = (bytes[position] & 0xFF) << 16 | (bytes[position + 1] & 0xFF) << 8
+                        | (bytes[position + 2] & 0xFF);
+                chars[c++] = URL_SAFE_ALPHABET[group >>> 18];
+                chars[c++] = URL_SAFE_ALPHABET[(group >>> 12) & 0x3F];
+                chars[c++] = URL_SAFE_ALPHABET[(group >>> 6) & 0x3F];
+                chars[c++] = URL_SAFE_ALPHABET[group & 0x3F];
+            }
+            // ...and one byte left over for the last two
+            int last = bytes[position++] & 0xFF;
+            chars[c++] = URL_SAFE_ALPHABET[last >>> 2];
+            chars[c++] = URL_SAFE_ALPHABET[(last & 0x3) << 4];
+            return new String(chars, 0, c);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package oauth.signpost.basic;
+
+import oauth.signpost.TimestampSource;
+
+/**
+ * <p>
+ * The default {@link TimestampSource}. It starts out with the local clock and
+ * adds the offset to the service provider's clock as soon as it learns about
+ * it, which providers do whenever a response carries a Date header or the
+ * provider refuses a timestamp (see {@link oauth.signpost.AbstractOAuthProvider}).
+ * </p>
+ * <p>
+ * The time a provider reports is only accurate to the second and late by the
+ * response's latency, so differences up to a tolerance are ignored.
+ * </p>
+ */
+public class SkewCompensatingTimestampSource implements TimestampSource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The default tolerance in milliseconds: two seconds, enough to cover the
+     * rounding of Date headers and a slow response.
+     */
+    public static final long DEFAULT_TOLERANCE_MILLIS = 2000L;
+
+    private final long toleranceMillis;
+
+    private volatile long offsetMillis;
+
+    public SkewCompensatingTimestampSource() {
+        this(DEFAULT_TOLERANCE_MILLIS);
+    }
+
+    /**
+     * @param toleranceMillis
+     *        the difference between the provider's reported time and the
+     *        compensated local time below which the offset is left alone
+     */
+    public SkewCompensatingTimestampSource(long toleranceMillis) {
+        this.toleranceMillis = toleranceMillis;
+    }
+
+    public long currentTimeSeconds() {
+        return (currentTimeMillis() + offsetMillis) / 1000L;
+    }
+
+    public boolean synchronize(long serverTimeMillis, long localTimeMillis) {
+        long observedOffset = serverTimeMillis - localTimeMillis;
+        if (Math.abs(observedOffset - offsetMillis) <= toleranceMillis) {
+            return false;
+        }
+        offsetMillis = observedOffset;
+        return true;
+    }
+
+    /**
+     * @return how far the provider's clock is ahead of the local clock, in
+     *         milliseconds (negative if it is behind)
+     */
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    public void setOffsetMillis(long offsetMillis) {
+        this.offsetMillis = offsetMillis;
+    }
+
+    /**
+     * @return the local time; tests may override this
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
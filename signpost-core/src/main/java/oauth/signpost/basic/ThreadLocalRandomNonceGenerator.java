@@ -0,0 +1,21 @@
+package oauth.signpost.basic;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import oauth.signpost.NonceGenerator;
+
+/**
+ * A {@link NonceGenerator} that takes 63 bits from
+ * {@link ThreadLocalRandom}, which is as cheap as it gets. The nonces are
+ * predictable, so only use this where that does not matter, e.g. in tests and
+ * benchmarks.
+ */
+public class ThreadLocalRandomNonceGenerator implements NonceGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    public String generateNonce() {
+        // 63 bits; Long.toUnsignedString would go through intermediate strings
+        return Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, Character.MAX_RADIX);
+    }
+}
@@ -15,13 +15,17 @@
 package oauth.signpost.http;
 
 import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import oauth.signpost.OAuth;
@@ -34,27 +38,67 @@ import oauth.signpost.OAuth;
  * percent-encoded upon insertion. This class has special semantics tailored to
  * being useful for message signing; it's not a general purpose collection class
  * to handle request parameters.
+ * <p>
+ * Internally, the key/value pairs are kept in two parallel arrays. Every
+ * method that adds parameters sorts the pairs it added out of order and merges
+ * them into the pairs that are in order already (clearing out duplicate
+ * pairs), once per call, so the bulk methods like {@link #putAll(Map)} sort
+ * only once. Reading never changes the arrays, so parameters that are no
+ * longer modified can be read by many threads at once. Since almost every
+ * parameter has exactly one value, this is a lot cheaper than a tree of sets.
+ * The {@link Map} methods, including the value sets returned by {@link #get},
+ * are live views onto the arrays. Code that only needs to walk the parameters in
+ * order, like the signature base string, should use {@link #entryCount()},
+ * {@link #keyAt(int)} and {@link #valueAt(int)} instead.
+ * </p>
  * 
  * @author Matthias Kaeppler
  */
 @SuppressWarnings("serial")
 public class HttpParameters implements Map<String, SortedSet<String>>, Serializable {
 
-    private TreeMap<String, SortedSet<String>> wrappedMap = new TreeMap<String, SortedSet<String>>();
+    private static final int INITIAL_CAPACITY = 16;
+
+    // below this size, sorting by insertion beats heapsort
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    // pairs appended out of order in up to this many ascending runs are
+    // merged run by run, rather than sorted first
+    private static final int MAX_MERGED_RUNS = 8;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+
+    // a null value stands in for a key that has no values (yet)
+    private String[] values = new String[INITIAL_CAPACITY];
+
+    private int count;
+
+    // the pairs before this index are sorted by key, then value, without
+    // duplicate pairs, and without null values for keys that have other
+    // values; those after it were appended out of order
+    private int sorted;
 
     public SortedSet<String> put(String key, SortedSet<String> value) {
-        return wrappedMap.put(key, value);
+        SortedSet<String> previous = remove(key);
+        append(key, null);
+        if (value != null) {
+            for (String v : value) {
+                append(key, v);
+            }
+        }
+        normalize();
+        return previous;
     }
 
     public SortedSet<String> put(String key, SortedSet<String> values, boolean percentEncode) {
         if (percentEncode) {
-            remove(key);
-            for (String v : values) {
-                put(key, v, true);
-            }
+            String encodedKey = OAuth.percentEncode(key);
+            remove(encodedKey);
+            appendEncoded(encodedKey, values);
+            normalize();
             return get(key);
         } else {
-            return wrappedMap.put(key, values);
+            return put(key, values);
         }
     }
 
@@ -86,20 +130,15 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
      * @return the value
      */
     public String put(String key, String value, boolean percentEncode) {
-         // fix contributed by Bjorn Roche - key should be encoded before wrappedMap.get
-         key = percentEncode ? OAuth.percentEncode(key) : key;
-         SortedSet<String> values = wrappedMap.get(key);
-         if (values == null) {
-             values = new TreeSet<String>();
-             wrappedMap.put( key, values);
-         }
-         if (value != null) {
-             value = percentEncode ? OAuth.percentEncode(value) : value;
-             values.add(value);
-         }
-
-         return value;
-     }
+        // fix contributed by Bjorn Roche - key should be encoded before lookup
+        key = percentEncode ? OAuth.percentEncode(key) : key;
+        if (value != null && percentEncode) {
+            value = OAuth.percentEncode(value);
+        }
+        append(key, value);
+        normalize();
+        return value;
+    }
 
     /**
      * Convenience method to allow for storing null values. {@link #put} doesn't
@@ -116,23 +155,44 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
     }
 
     public void putAll(Map<? extends String, ? extends SortedSet<String>> m) {
-        wrappedMap.putAll(m);
+        putAll(m, false);
     }
 
     public void putAll(Map<? extends String, ? extends SortedSet<String>> m, boolean percentEncode) {
-        if (percentEncode) {
-            for (String key : m.keySet()) {
-                put(key, m.get(key), true);
+        if (m == this) {
+            return;
+        }
+        // the values replace those of the same keys; remove them first, so
+        // that the new pairs only need sorting once
+        for (String key : m.keySet()) {
+            remove(percentEncode ? OAuth.percentEncode(key) : key);
+        }
+        for (Entry<? extends String, ? extends SortedSet<String>> entry : m.entrySet()) {
+            if (percentEncode) {
+                appendEncoded(OAuth.percentEncode(entry.getKey()), entry.getValue());
+            } else {
+                append(entry.getKey(), null);
+                if (entry.getValue() != null) {
+                    for (String v : entry.getValue()) {
+                        append(entry.getKey(), v);
+                    }
+                }
             }
-        } else {
-            wrappedMap.putAll(m);
         }
+        normalize();
     }
 
     public void putAll(String[] keyValuePairs, boolean percentEncode) {
         for (int i = 0; i < keyValuePairs.length - 1; i += 2) {
-            this.put(keyValuePairs[i], keyValuePairs[i + 1], percentEncode);
+            String key = keyValuePairs[i];
+            String value = keyValuePairs[i + 1];
+            if (percentEncode) {
+                key = OAuth.percentEncode(key);
+                value = value == null ? null : OAuth.percentEncode(value);
+            }
+            append(key, value);
         }
+        normalize();
     }
 
     /**
@@ -143,17 +203,19 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
      */
     public void putMap(Map<String, List<String>> m) {
         for (String key : m.keySet()) {
-            SortedSet<String> vals = get(key);
-            if (vals == null) {
-                vals = new TreeSet<String>();
-                put(key, vals);
+            append(key, null);
+            for (String value : m.get(key)) {
+                append(key, value);
             }
-            vals.addAll(m.get(key));
         }
+        normalize();
     }
 
     public SortedSet<String> get(Object key) {
-        return wrappedMap.get(key);
+        if (!containsKey(key)) {
+            return null;
+        }
+        return new ValueSet((String) key);
     }
 
     /**
@@ -184,11 +246,11 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
      * @return the first value found for this parameter
      */
     public String getFirst(Object key, boolean percentDecode) {
-        SortedSet<String> values = wrappedMap.get(key);
-        if (values == null || values.isEmpty()) {
+        int index = indexOf(key);
+        if (index < 0 || values[index] == null) {
             return null;
         }
-        String value = values.first();
+        String value = values[index];
         return percentDecode ? OAuth.percentDecode(value) : value;
     }
 
@@ -223,16 +285,15 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
         StringBuilder sb = new StringBuilder();
         if(percentEncode)
         	key = OAuth.percentEncode((String) key);
-        Set<String> values = wrappedMap.get(key);
-        if (values == null) {
+        int index = indexOf(key);
+        if (index < 0) {
             return key + "=";
         }
-        Iterator<String> iter = values.iterator();
-        while (iter.hasNext()) {
-            sb.append(key).append("=").append(iter.next());
-            if (iter.hasNext()) {
+        for (int i = index; i < count && keys[i].equals(key) && values[i] != null; i++) {
+            if (i > index) {
                 sb.append("&");
             }
+            sb.append(key).append("=").append(values[i]);
         }
         return sb.toString();
     }
@@ -246,12 +307,15 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
     }
 
     public boolean containsKey(Object key) {
-        return wrappedMap.containsKey(key);
+        return indexOf(key) >= 0;
     }
 
     public boolean containsValue(Object value) {
-        for (Set<String> values : wrappedMap.values()) {
-            if (values.contains(value)) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (value.equals(values[i])) {
                 return true;
             }
         }
@@ -259,47 +323,693 @@ public class HttpParameters implements Map<String, SortedSet<String>>, Serializa
     }
 
     public int size() {
-        int count = 0;
-        for (String key : wrappedMap.keySet()) {
-            count += wrappedMap.get(key).size();
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (values[i] != null) {
+                size++;
+            }
         }
-        return count;
+        return size;
     }
 
     public boolean isEmpty() {
-        return wrappedMap.isEmpty();
+        return count == 0;
     }
 
     public void clear() {
-        wrappedMap.clear();
+        for (int i = 0; i < count; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        count = 0;
+        sorted = 0;
     }
 
     public SortedSet<String> remove(Object key) {
-        return wrappedMap.remove(key);
+        int from = indexOf(key);
+        if (from < 0) {
+            return null;
+        }
+        int to = endOfKey(from);
+        SortedSet<String> previous = new TreeSet<String>();
+        for (int i = from; i < to; i++) {
+            if (values[i] != null) {
+                previous.add(values[i]);
+            }
+        }
+        removeRange(from, to);
+        return previous;
     }
 
     public Set<String> keySet() {
-        return wrappedMap.keySet();
+        return new KeySet();
     }
 
     public Collection<SortedSet<String>> values() {
-        return wrappedMap.values();
+        return new AbstractCollection<SortedSet<String>>() {
+            @Override
+            public Iterator<SortedSet<String>> iterator() {
+                final Iterator<String> keyIter = keySet().iterator();
+                return new Iterator<SortedSet<String>>() {
+                    public boolean hasNext() {
+                        return keyIter.hasNext();
+                    }
+
+                    public SortedSet<String> next() {
+                        return new ValueSet(keyIter.next());
+                    }
+
+                    public void remove() {
+                        keyIter.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keyCount();
+            }
+        };
     }
 
     public Set<Entry<String, SortedSet<String>>> entrySet() {
-        return wrappedMap.entrySet();
+        return new AbstractSet<Entry<String, SortedSet<String>>>() {
+            @Override
+            public Iterator<Entry<String, SortedSet<String>>> iterator() {
+                final Iterator<String> keyIter = keySet().iterator();
+                return new Iterator<Entry<String, SortedSet<String>>>() {
+                    public boolean hasNext() {
+                        return keyIter.hasNext();
+                    }
+
+                    public Entry<String, SortedSet<String>> next() {
+                        return new ParameterEntry(keyIter.next());
+                    }
+
+                    public void remove() {
+                        keyIter.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keyCount();
+            }
+        };
     }
 
     public HttpParameters getOAuthParameters() {
         HttpParameters oauthParams = new HttpParameters();
-
-        for (Entry<String, SortedSet<String>> param : this.entrySet()) {
-            String key = param.getKey();
+        for (int i = 0; i < count; i++) {
+            String key = keys[i];
             if (key.startsWith("oauth_") || key.startsWith("x_oauth_")) {
-                oauthParams.put(key, param.getValue());
+                // already in order, so this never has to sort
+                oauthParams.append(key, values[i]);
             }
         }
-
         return oauthParams;
     }
+
+    /**
+     * Returns the number of key/value pairs, counting a key without any values
+     * as one pair. Together with {@link #keyAt(int)} and {@link #valueAt(int)}
+     * this allows walking the parameters in order without going through the
+     * {@link Map} views.
+     * 
+     * @return the number of key/value pairs
+     */
+    public int entryCount() {
+        return count;
+    }
+
+    /**
+     * @param index
+     *        an index between 0 and {@link #entryCount()} (exclusive)
+     * @return the key of the pair at the given index; pairs are ordered by key,
+     *         then by value
+     */
+    public String keyAt(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    /**
+     * @param index
+     *        an index between 0 and {@link #entryCount()} (exclusive)
+     * @return the value of the pair at the given index, or null if this is a
+     *         key without any values
+     */
+    public String valueAt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    private void append(String key, String value) {
+        if (key == null) {
+            throw new NullPointerException("parameter name must not be null");
+        }
+        boolean inOrder = sorted == count;
+        if (inOrder && count > 0) {
+            int last = count - 1;
+            int cmp = compare(key, value, keys[last], values[last]);
+            if (cmp == 0) {
+                return;
+            }
+            if (cmp < 0) {
+                inOrder = false;
+            } else if (value != null && values[last] == null && key.equals(keys[last])) {
+                // the key's first value replaces its placeholder
+                values[last] = value;
+                return;
+            }
+        }
+        if (count == keys.length) {
+            String[] newKeys = new String[count * 2];
+            String[] newValues = new String[count * 2];
+            System.arraycopy(keys, 0, newKeys, 0, count);
+            System.arraycopy(values, 0, newValues, 0, count);
+            keys = newKeys;
+            values = newValues;
+        }
+        keys[count] = key;
+        values[count] = value;
+        count++;
+        if (inOrder) {
+            sorted = count;
+        }
+    }
+
+    // the values must not be encoded yet, the key must be
+    private void appendEncoded(String key, SortedSet<String> values) {
+        for (String v : values) {
+            append(key, OAuth.percentEncode(v));
+        }
+    }
+
+    // called by every method that appends pairs, before it returns
+    private void normalize() {
+        if (sorted == count) {
+            return;
+        }
+        int changed;
+        if (countRuns(sorted) <= MAX_MERGED_RUNS) {
+            changed = count;
+            for (int from = sorted; from < count;) {
+                int to = endOfRun(from);
+                changed = Math.min(changed, merge(from, to));
+                from = to;
+            }
+        } else {
+            // only the pairs appended out of order need sorting
+            if (count - sorted < INSERTION_SORT_THRESHOLD) {
+                insertionSort(sorted, count);
+            } else {
+                heapSort(sorted, count);
+            }
+            changed = merge(sorted, count);
+        }
+        // drop duplicate pairs and placeholders of keys that have values;
+        // placeholders sort first, so they are overwritten by the next value.
+        // The pairs before the first merged one are clean already.
+        int kept = Math.max(0, changed - 1);
+        for (int i = kept; i < count; i++) {
+            String key = keys[i];
+            String value = values[i];
+            if (kept > 0 && key.equals(keys[kept - 1])) {
+                String previous = values[kept - 1];
+                if (value == null || value.equals(previous)) {
+                    continue;
+                }
+                if (previous == null) {
+                    values[kept - 1] = value;
+                    continue;
+                }
+            }
+            keys[kept] = key;
+            values[kept] = value;
+            kept++;
+        }
+        for (int i = kept; i < count; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        count = kept;
+        sorted = kept;
+    }
+
+    // the number of ascending runs the pairs from the given index on form,
+    // stopping early once there are too many to merge them one by one
+    private int countRuns(int from) {
+        int runs = 0;
+        for (int i = from; i < count && runs <= MAX_MERGED_RUNS; i = endOfRun(i)) {
+            runs++;
+        }
+        return runs;
+    }
+
+    private int endOfRun(int from) {
+        int end = from + 1;
+        while (end < count
+                && compare(keys[end - 1], values[end - 1], keys[end], values[end]) <= 0) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Merges the sorted run of pairs between the given indexes into the sorted
+     * pairs before it. Each pair of the run is placed with a binary search,
+     * and the pairs between two of them are moved as a block, so the cost is
+     * mostly that of copying the pairs that come after the first one of the
+     * run.
+     * 
+     * @return the index of the first pair that changed
+     */
+    private int merge(int from, int to) {
+        if (from == 0) {
+            return 0;
+        }
+        int runLength = to - from;
+        if (runLength == 1) {
+            // a single put, which needn't copy the run
+            String key = keys[from];
+            String value = values[from];
+            int position = upperBound(key, value, from);
+            System.arraycopy(keys, position, keys, position + 1, from - position);
+            System.arraycopy(values, position, values, position + 1, from - position);
+            keys[position] = key;
+            values[position] = value;
+            return position;
+        }
+        String[] runKeys = new String[runLength];
+        String[] runValues = new String[runLength];
+        System.arraycopy(keys, from, runKeys, 0, runLength);
+        System.arraycopy(values, from, runValues, 0, runLength);
+
+        // fill from the end, where the merged pairs go
+        int end = from;
+        int target = to;
+        for (int j = runLength - 1; j >= 0; j--) {
+            int position = upperBound(runKeys[j], runValues[j], end);
+            int block = end - position;
+            target -= block;
+            System.arraycopy(keys, position, keys, target, block);
+            System.arraycopy(values, position, values, target, block);
+            end = position;
+            target--;
+            keys[target] = runKeys[j];
+            values[target] = runValues[j];
+        }
+        return target;
+    }
+
+    private void insertionSort(int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            String key = keys[i];
+            String value = values[i];
+            int j = i - 1;
+            while (j >= from && compare(keys[j], values[j], key, value) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    // in place, so sorting large form bodies doesn't allocate either
+    private void heapSort(int from, int to) {
+        int length = to - from;
+        for (int i = length / 2 - 1; i >= 0; i--) {
+            siftDown(from, i, length);
+        }
+        for (int end = length - 1; end > 0; end--) {
+            swap(from, from + end);
+            siftDown(from, 0, end);
+        }
+    }
+
+    // root and end are relative to the heap that starts at base
+    private void siftDown(int base, int root, int end) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= end) {
+                return;
+            }
+            int c = base + child;
+            if (child + 1 < end && compare(keys[c], values[c], keys[c + 1], values[c + 1]) < 0) {
+                child++;
+            }
+            int r = base + root;
+            c = base + child;
+            if (compare(keys[r], values[r], keys[c], values[c]) >= 0) {
+                return;
+            }
+            swap(r, c);
+            root = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String key = keys[i];
+        String value = values[i];
+        keys[i] = keys[j];
+        values[i] = values[j];
+        keys[j] = key;
+        values[j] = value;
+    }
+
+    private static int compare(String key1, String value1, String key2, String value2) {
+        int cmp = key1.compareTo(key2);
+        if (cmp != 0) {
+            return cmp;
+        }
+        if (value1 == null) {
+            return value2 == null ? 0 : -1;
+        }
+        return value2 == null ? 1 : value1.compareTo(value2);
+    }
+
+    // the index of the first pair whose key and value are not less than the
+    // given ones; a null value is less than any other
+    private int lowerBound(String key, String value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(keys[mid], values[mid], key, value) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the index of the first of the pairs before end that is greater than the
+    // given one
+    private int upperBound(String key, String value, int end) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(keys[mid], values[mid], key, value) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the index of the first pair of the given key, or -1
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        int index = lowerBound((String) key, null);
+        return index < count && keys[index].equals(key) ? index : -1;
+    }
+
+    private int endOfKey(int index) {
+        String key = keys[index];
+        int end = index + 1;
+        while (end < count && keys[end].equals(key)) {
+            end++;
+        }
+        return end;
+    }
+
+    private int keyCount() {
+        int keyCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || !keys[i].equals(keys[i - 1])) {
+                keyCount++;
+            }
+        }
+        return keyCount;
+    }
+
+    private void removeRange(int from, int to) {
+        System.arraycopy(keys, to, keys, from, count - to);
+        System.arraycopy(values, to, values, from, count - to);
+        int newCount = count - (to - from);
+        for (int i = newCount; i < count; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        count = newCount;
+        // only ever called on sorted pairs
+        sorted = newCount;
+    }
+
+    /**
+     * Iterates over the distinct keys. Each step looks up the key following
+     * the one returned last, so the parameters may be changed freely while
+     * iterating, as they could be when they were backed by a tree map.
+     */
+    private final class KeySet extends AbstractSet<String> {
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private String last;
+
+                private boolean removable;
+
+                public boolean hasNext() {
+                    return nextIndex() < count;
+                }
+
+                public String next() {
+                    int index = nextIndex();
+                    if (index >= count) {
+                        throw new NoSuchElementException();
+                    }
+                    last = keys[index];
+                    removable = true;
+                    return last;
+                }
+
+                public void remove() {
+                    if (!removable) {
+                        throw new IllegalStateException();
+                    }
+                    HttpParameters.this.remove(last);
+                    removable = false;
+                }
+
+                private int nextIndex() {
+                    if (last == null) {
+                        return 0;
+                    }
+                    int index = lowerBound(last, null);
+                    while (index < count && keys[index].equals(last)) {
+                        index++;
+                    }
+                    return index;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keyCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return HttpParameters.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            HttpParameters.this.clear();
+        }
+    }
+
+    /**
+     * The values of a single key. Adding or removing values changes the
+     * parameters. Like the parameters themselves, the view tolerates changes
+     * while iterating. The subset views are copies.
+     */
+    private final class ValueSet extends AbstractSet<String> implements SortedSet<String> {
+
+        private final String key;
+
+        ValueSet(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private String last;
+
+                private boolean removable;
+
+                public boolean hasNext() {
+                    return valueAfter(last) != null;
+                }
+
+                public String next() {
+                    String value = valueAfter(last);
+                    if (value == null) {
+                        throw new NoSuchElementException();
+                    }
+                    last = value;
+                    removable = true;
+                    return value;
+                }
+
+                public void remove() {
+                    if (!removable) {
+                        throw new IllegalStateException();
+                    }
+                    ValueSet.this.remove(last);
+                    removable = false;
+                }
+            };
+        }
+
+        // the smallest value greater than the given one, or the first value
+        private String valueAfter(String value) {
+            int index = lowerBound(key, value);
+            if (index < count && value != null && value.equals(values[index])
+                    && keys[index].equals(key)) {
+                index++;
+            }
+            if (index < count && values[index] == null && keys[index].equals(key)) {
+                index++;
+            }
+            return index < count && keys[index].equals(key) ? values[index] : null;
+        }
+
+        @Override
+        public int size() {
+            int index = indexOf(key);
+            if (index < 0 || values[index] == null) {
+                return 0;
+            }
+            return endOfKey(index) - index;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            int index = lowerBound(key, (String) o);
+            return index < count && keys[index].equals(key) && o.equals(values[index]);
+        }
+
+        @Override
+        public boolean add(String value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            if (contains(value)) {
+                return false;
+            }
+            append(key, value);
+            normalize();
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            int index = lowerBound(key, (String) o);
+            if (size() == 1) {
+                // like an emptied set in a map, the key stays
+                values[index] = null;
+            } else {
+                removeRange(index, index + 1);
+            }
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            int index = indexOf(key);
+            if (index >= 0) {
+                removeRange(index, endOfKey(index));
+                append(key, null);
+                normalize();
+            }
+        }
+
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        public String first() {
+            String first = valueAfter(null);
+            if (first == null) {
+                throw new NoSuchElementException();
+            }
+            return first;
+        }
+
+        public String last() {
+            int index = indexOf(key);
+            if (index < 0 || values[index] == null) {
+                throw new NoSuchElementException();
+            }
+            return values[endOfKey(index) - 1];
+        }
+
+        public SortedSet<String> subSet(String fromElement, String toElement) {
+            return Collections.unmodifiableSortedSet(new TreeSet<String>(this).subSet(
+                fromElement, toElement));
+        }
+
+        public SortedSet<String> headSet(String toElement) {
+            return Collections.unmodifiableSortedSet(new TreeSet<String>(this)
+                .headSet(toElement));
+        }
+
+        public SortedSet<String> tailSet(String fromElement) {
+            return Collections.unmodifiableSortedSet(new TreeSet<String>(this)
+                .tailSet(fromElement));
+        }
+    }
+
+    private final class ParameterEntry implements Entry<String, SortedSet<String>> {
+
+        private final String key;
+
+        ParameterEntry(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public SortedSet<String> getValue() {
+            return new ValueSet(key);
+        }
+
+        public SortedSet<String> setValue(SortedSet<String> value) {
+            return put(key, value);
+        }
+    }
 }
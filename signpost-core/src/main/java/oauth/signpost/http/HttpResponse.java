@@ -11,6 +11,14 @@ public interface HttpResponse {
 
     InputStream getContent() throws IOException;
 
+    /**
+     * @param name
+     *        the header name, e.g. Date
+     * @return the value of the given response header, or null if the response
+     *         doesn't have it
+     */
+    String getHeader(String name);
+
     /**
      * Returns the underlying response object, in case you need to work on it
      * directly.
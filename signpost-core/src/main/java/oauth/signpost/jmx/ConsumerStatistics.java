@@ -0,0 +1,95 @@
+package oauth.signpost.jmx;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import oauth.signpost.basic.HistogramSigningMetrics;
+import oauth.signpost.exception.OAuthMessageSignerException;
+
+/**
+ * {@link HistogramSigningMetrics} that can be registered as an MXBean, see
+ * {@link SignpostMBeans#register(oauth.signpost.OAuthConsumer, String)}.
+ * Failures are additionally counted by cause. Like its superclass, it never
+ * locks while recording; only reading the signing rate does.
+ */
+public class ConsumerStatistics extends HistogramSigningMetrics implements
+        ConsumerStatisticsMXBean {
+
+    private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentHashMap<String, LongAdder> failuresByCause =
+            new ConcurrentHashMap<String, LongAdder>();
+
+    // guarded by this
+    private long sampledAt = System.nanoTime();
+
+    private long sampledCount;
+
+    private double signaturesPerSecond;
+
+    @Override
+    public void signingFailed(Stage stage, Exception failure) {
+        super.signingFailed(stage, failure);
+        Throwable cause = failure;
+        if (failure instanceof OAuthMessageSignerException && failure.getCause() != null) {
+            cause = failure.getCause();
+        }
+        String key = cause.getClass().getName();
+        LongAdder count = failuresByCause.get(key);
+        if (count == null) {
+            LongAdder newCount = new LongAdder();
+            count = failuresByCause.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.increment();
+    }
+
+    public synchronized double getSignaturesPerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - sampledAt;
+        if (elapsed >= RATE_INTERVAL_NANOS) {
+            long count = getSignedCount();
+            signaturesPerSecond = (count - sampledCount) * 1e9 / elapsed;
+            sampledAt = now;
+            sampledCount = count;
+        }
+        return signaturesPerSecond;
+    }
+
+    public double getMeanSigningMicros() {
+        return getRequestHistogram().getMeanNanos() / 1e3;
+    }
+
+    public double getP99SigningMicros() {
+        return getRequestHistogram().getValueAtPercentile(99) / 1e3;
+    }
+
+    public Map<String, Long> getFailuresByCause() {
+        Map<String, Long> failures = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : failuresByCause.entrySet()) {
+            failures.put(entry.getKey(), entry.getValue().sum());
+        }
+        return failures;
+    }
+
+    public long getMeanBodyBytes() {
+        long bodies = getBodyCount();
+        return bodies == 0 ? 0 : getBodyBytes() / bodies;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        failuresByCause.clear();
+        synchronized (this) {
+            sampledAt = System.nanoTime();
+            sampledCount = 0;
+            signaturesPerSecond = 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package oauth.signpost.jmx;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ConsumerStatistics}.
+ */
+public interface ConsumerStatisticsMXBean {
+
+    /**
+     * @return how many requests have been signed
+     */
+    long getSignedCount();
+
+    /**
+     * @return how many requests could not be signed
+     */
+    long getFailureCount();
+
+    /**
+     * @return requests signed per second, over the time since this was last
+     *         read, but at least a second
+     */
+    double getSignaturesPerSecond();
+
+    /**
+     * @return the average time it took to sign a request, in microseconds
+     */
+    double getMeanSigningMicros();
+
+    /**
+     * @return the time 99% of requests were signed within, in microseconds
+     */
+    double getP99SigningMicros();
+
+    /**
+     * @return the failures, keyed by the class name of their cause: the
+     *         underlying exception of an
+     *         {@link oauth.signpost.exception.OAuthMessageSignerException},
+     *         else the exception thrown
+     */
+    Map<String, Long> getFailuresByCause();
+
+    /**
+     * @return how many x-www-form-urlencoded bodies have been read
+     */
+    long getBodyCount();
+
+    /**
+     * @return the average size of the bodies read, in bytes
+     */
+    long getMeanBodyBytes();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,103 @@
+package oauth.signpost.jmx;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import oauth.signpost.ProviderMetrics;
+import oauth.signpost.basic.LatencyHistogram;
+import oauth.signpost.exception.OAuthNotAuthorizedException;
+
+/**
+ * {@link ProviderMetrics} that can be registered as an MXBean, see
+ * {@link SignpostMBeans#register(oauth.signpost.OAuthProvider, String)}.
+ * Recording never locks, so one instance can be shared by all providers of an
+ * application.
+ */
+public class ProviderStatistics implements ProviderMetrics, ProviderStatisticsMXBean {
+
+    private final LatencyHistogram retrievals = new LatencyHistogram();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder notAuthorized = new LongAdder();
+
+    private final ConcurrentHashMap<Integer, LongAdder> statusCodes =
+            new ConcurrentHashMap<Integer, LongAdder>();
+
+    public void responseReceived(int statusCode) {
+        LongAdder count = statusCodes.get(statusCode);
+        if (count == null) {
+            LongAdder newCount = new LongAdder();
+            count = statusCodes.putIfAbsent(statusCode, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.increment();
+    }
+
+    public void tokenRetrieved(long nanos) {
+        retrievals.record(nanos);
+    }
+
+    public void retrievalFailed(Exception failure, long nanos) {
+        failures.increment();
+        if (failure instanceof OAuthNotAuthorizedException) {
+            notAuthorized.increment();
+        }
+    }
+
+    /**
+     * @return the durations of all successful token requests
+     */
+    public LatencyHistogram getRetrievalHistogram() {
+        return retrievals;
+    }
+
+    public long getRetrievalCount() {
+        return retrievals.getCount();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getNotAuthorizedCount() {
+        return notAuthorized.sum();
+    }
+
+    public double getMeanRetrievalMillis() {
+        return retrievals.getMeanNanos() / 1e6;
+    }
+
+    public double getP99RetrievalMillis() {
+        return retrievals.getValueAtPercentile(99) / 1e6;
+    }
+
+    public double getMaxRetrievalMillis() {
+        return retrievals.getMaxNanos() / 1e6;
+    }
+
+    public Map<String, Long> getStatusCodes() {
+        Map<String, Long> codes = new TreeMap<String, Long>();
+        for (Map.Entry<Integer, LongAdder> entry : statusCodes.entrySet()) {
+            codes.put(entry.getKey().toString(), entry.getValue().sum());
+        }
+        return codes;
+    }
+
+    public void reset() {
+        retrievals.reset();
+        failures.reset();
+        notAuthorized.reset();
+        statusCodes.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "retrievals: " + retrievals + "\nfailures=" + getFailureCount()
+                + ", notAuthorized=" + getNotAuthorizedCount() + ", statusCodes=" + getStatusCodes();
+    }
+}
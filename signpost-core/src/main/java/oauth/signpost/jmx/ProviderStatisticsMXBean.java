@@ -0,0 +1,50 @@
+package oauth.signpost.jmx;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ProviderStatistics}.
+ */
+public interface ProviderStatisticsMXBean {
+
+    /**
+     * @return how many request and access tokens have been retrieved
+     */
+    long getRetrievalCount();
+
+    /**
+     * @return how many token requests failed, for whatever reason
+     */
+    long getFailureCount();
+
+    /**
+     * @return how many token requests the service provider refused with a
+     *         401
+     */
+    long getNotAuthorizedCount();
+
+    /**
+     * @return the average time it took to retrieve a token, in milliseconds
+     */
+    double getMeanRetrievalMillis();
+
+    /**
+     * @return the time 99% of tokens were retrieved within, in milliseconds
+     */
+    double getP99RetrievalMillis();
+
+    /**
+     * @return the longest time it took to retrieve a token, in milliseconds
+     */
+    double getMaxRetrievalMillis();
+
+    /**
+     * @return how many responses the service provider sent, by status code
+     */
+    Map<String, Long> getStatusCodes();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,125 @@
+package oauth.signpost.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.AbstractOAuthProvider;
+
+/**
+ * <p>
+ * Registers runtime statistics of consumers and providers with the platform
+ * MBean server, where JConsole and other JMX clients can read them:
+ * </p>
+ * 
+ * <pre>
+ * ConsumerStatistics stats = SignpostMBeans.register(consumer, &quot;twitter&quot;);
+ * </pre>
+ * <p>
+ * registers an {@code oauth.signpost:type=Consumer,name="twitter"} MBean and
+ * makes the consumer report to it. Nothing is registered unless you ask for
+ * it, and consumers and providers without statistics don't pay for them.
+ * </p>
+ */
+public final class SignpostMBeans {
+
+    public static final String DOMAIN = "oauth.signpost";
+
+    private SignpostMBeans() {
+    }
+
+    /**
+     * Makes the consumer report to a new {@link ConsumerStatistics}, and
+     * registers that as {@code oauth.signpost:type=Consumer,name=<name>}.
+     * Register a consumer once and copy the statistics to the consumers
+     * created from it with
+     * {@link AbstractOAuthConsumer#setSigningMetrics(oauth.signpost.SigningMetrics)}
+     * to count them together.
+     * 
+     * @param consumer
+     *        the consumer
+     * @param name
+     *        the name to register under, unique among consumers
+     * @return the statistics
+     * @throws JMException
+     *         if the name is taken, or the MBean could not be registered
+     */
+    public static ConsumerStatistics register(AbstractOAuthConsumer consumer, String name)
+            throws JMException {
+        ConsumerStatistics statistics = new ConsumerStatistics();
+        register(statistics, objectName("Consumer", name));
+        consumer.setSigningMetrics(statistics);
+        return statistics;
+    }
+
+    /**
+     * Makes the provider report to a new {@link ProviderStatistics}, and
+     * registers that as {@code oauth.signpost:type=Provider,name=<name>}.
+     * 
+     * @param provider
+     *        the provider
+     * @param name
+     *        the name to register under, unique among providers
+     * @return the statistics
+     * @throws JMException
+     *         if the name is taken, or the MBean could not be registered
+     */
+    public static ProviderStatistics register(AbstractOAuthProvider provider, String name)
+            throws JMException {
+        ProviderStatistics statistics = new ProviderStatistics();
+        register(statistics, objectName("Provider", name));
+        provider.setProviderMetrics(statistics);
+        return statistics;
+    }
+
+    /**
+     * Stops the consumer reporting and unregisters its MBean.
+     * 
+     * @param consumer
+     *        the consumer
+     * @param name
+     *        the name it was registered under
+     * @throws JMException
+     *         if nothing is registered under the name
+     */
+    public static void unregister(AbstractOAuthConsumer consumer, String name)
+            throws JMException {
+        consumer.setSigningMetrics(null);
+        server().unregisterMBean(objectName("Consumer", name));
+    }
+
+    /**
+     * Stops the provider reporting and unregisters its MBean.
+     * 
+     * @param provider
+     *        the provider
+     * @param name
+     *        the name it was registered under
+     * @throws JMException
+     *         if nothing is registered under the name
+     */
+    public static void unregister(AbstractOAuthProvider provider, String name)
+            throws JMException {
+        provider.setProviderMetrics(null);
+        server().unregisterMBean(objectName("Provider", name));
+    }
+
+    /**
+     * @return the name an MBean of the given type ("Consumer" or "Provider")
+     *         is registered under
+     */
+    public static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    private static void register(Object mbean, ObjectName objectName) throws JMException {
+        server().registerMBean(mbean, objectName);
+    }
+
+    private static MBeanServer server() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+}
@@ -0,0 +1,115 @@
+package oauth.signpost.signature;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.PercentEncoder;
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * Builds the value of the Authorization header from the realm and the
+ * oauth_* and x_oauth_* parameters, in their sorted order, plus the
+ * signature. The parameters are read straight from the store, and the header
+ * is written into a single builder of the exact size.
+ */
+final class AuthorizationHeaderWriter {
+
+    private static final char[] SCHEME = "OAuth ".toCharArray();
+
+    private static final char[] REALM = "realm=\"".toCharArray();
+
+    private static final char[] SIGNATURE = (OAuth.OAUTH_SIGNATURE + "=\"").toCharArray();
+
+    private static final char[] EQUALS_QUOTE = "=\"".toCharArray();
+
+    private static final char[] QUOTE_SEPARATOR = "\", ".toCharArray();
+
+    private AuthorizationHeaderWriter() {
+    }
+
+    /**
+     * @param requestParameters
+     *        the parameters the signature was computed from (already percent
+     *        encoded); an oauth_signature among them is ignored
+     * @param signature
+     *        the signature, not percent encoded
+     * @return the header value
+     */
+    static String write(HttpParameters requestParameters, String signature) {
+        int n = requestParameters.entryCount();
+        int realm = -1;
+        // room for the trailing separator, which is dropped at the end
+        int length = SCHEME.length + SIGNATURE.length + PercentEncoder.encodedLength(signature)
+                + QUOTE_SEPARATOR.length;
+        String key = null;
+        for (int i = 0; i < n; i++) {
+            if (requestParameters.keyAt(i).equals(key)) {
+                // only the first value of each key is written
+                continue;
+            }
+            key = requestParameters.keyAt(i);
+            if (isOAuthParameter(key)) {
+                length += key.length() + valueLength(requestParameters.valueAt(i))
+                        + EQUALS_QUOTE.length + QUOTE_SEPARATOR.length;
+            } else if (realm < 0 && "realm".equals(key)) {
+                realm = i;
+                length += REALM.length + valueLength(requestParameters.valueAt(i))
+                        + QUOTE_SEPARATOR.length;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(SCHEME);
+        if (realm >= 0) {
+            sb.append(REALM);
+            appendValue(requestParameters.valueAt(realm), sb);
+            sb.append(QUOTE_SEPARATOR);
+        }
+        boolean signatureWritten = false;
+        key = null;
+        for (int i = 0; i < n; i++) {
+            if (requestParameters.keyAt(i).equals(key)) {
+                continue;
+            }
+            key = requestParameters.keyAt(i);
+            if (!isOAuthParameter(key)) {
+                continue;
+            }
+            if (!signatureWritten && key.compareTo(OAuth.OAUTH_SIGNATURE) > 0) {
+                appendSignature(signature, sb);
+                sb.append(QUOTE_SEPARATOR);
+                signatureWritten = true;
+            }
+            sb.append(key).append(EQUALS_QUOTE);
+            appendValue(requestParameters.valueAt(i), sb);
+            sb.append(QUOTE_SEPARATOR);
+        }
+        if (signatureWritten) {
+            // drop the trailing separator
+            sb.setLength(sb.length() - QUOTE_SEPARATOR.length + 1);
+        } else {
+            appendSignature(signature, sb);
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static boolean isOAuthParameter(String key) {
+        return (key.startsWith("oauth_") || key.startsWith("x_oauth_"))
+                && !OAuth.OAUTH_SIGNATURE.equals(key);
+    }
+
+    private static void appendSignature(String signature, StringBuilder sb) {
+        sb.append(SIGNATURE);
+        PercentEncoder.encode(signature, sb);
+    }
+
+    // a key without values is written with an empty value
+    private static void appendValue(String value, StringBuilder sb) {
+        if (value != null) {
+            sb.append(value);
+        }
+    }
+
+    private static int valueLength(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,198 @@
+/* Copyright (c) 2009 Matthias Kaeppler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package oauth.signpost.signature;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * <p>
+ * Base class for signers that compute the signature as an HMAC over the
+ * signature base string, keyed with the consumer secret and token secret.
+ * </p>
+ * <p>
+ * Initializing a {@link Mac} with a key is expensive, so each signer keys an
+ * engine once for its current secrets and keeps it as a prototype. Engines
+ * aren't thread safe: every signature is computed on a clone, and a few clones
+ * are kept for reuse, so that threads signing concurrently neither wait for
+ * each other nor key an engine of their own. All of this is dropped when
+ * either secret changes, and goes away with the signer.
+ * </p>
+ * <p>
+ * The signature base string is streamed into the engine as it is encoded (see
+ * {@link SignatureBaseString#writeTo(Mac)}), so it is never built as a whole.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public abstract class HmacMessageSigner extends OAuthMessageSigner {
+
+    // enough for every core to sign at once without cloning the prototype
+    private static final int IDLE_MACS = Math.min(Runtime.getRuntime().availableProcessors(),
+        16);
+
+    private transient volatile KeyState keyState;
+
+    /**
+     * @return the JCA name of the MAC algorithm, e.g. HmacSHA1
+     */
+    protected abstract String getMacName();
+
+    @Override
+    public String sign(HttpRequest request, HttpParameters requestParams)
+            throws OAuthMessageSignerException {
+        return sign(new SignatureBaseString(request, requestParams));
+    }
+
+    @Override
+    public String sign(SignatureBaseString sbs) throws OAuthMessageSignerException {
+        try {
+            KeyState state = getKeyState();
+            Mac mac = state.acquire();
+
+            if (OAuth.isDebugEnabled()) {
+                OAuth.debugOut("SBS", sbs.generate());
+            }
+            // an engine that failed midway holds part of a base string, so
+            // it's only returned for reuse once it has been finalized
+            sbs.writeTo(mac);
+            String signature = base64Encode(mac.doFinal()).trim();
+            state.release(mac);
+
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new OAuthMessageSignerException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new OAuthMessageSignerException(e);
+        }
+    }
+
+    @Override
+    public void setConsumerSecret(String consumerSecret) {
+        super.setConsumerSecret(consumerSecret);
+        keyState = null;
+    }
+
+    @Override
+    public void setTokenSecret(String tokenSecret) {
+        super.setTokenSecret(tokenSecret);
+        keyState = null;
+    }
+
+    /**
+     * Returns an engine that is initialized with the current secrets and ready
+     * to receive the signature base string. The engine belongs to the caller
+     * alone; {@link Mac#doFinal()} resets it for the next signature.
+     */
+    protected Mac getMac() throws GeneralSecurityException, UnsupportedEncodingException {
+        return getKeyState().acquire();
+    }
+
+    private KeyState getKeyState() throws GeneralSecurityException,
+            UnsupportedEncodingException {
+        String consumerSecret = getConsumerSecret();
+        String tokenSecret = getTokenSecret();
+        KeyState state = keyState;
+        // a concurrent secret change may have raced with the last keying
+        if (state == null || !state.matches(consumerSecret, tokenSecret)) {
+            // keying outside any lock; losing a race only costs an extra init
+            state = new KeyState(getMacName(), consumerSecret, tokenSecret);
+            keyState = state;
+        }
+        return state;
+    }
+
+    private static final class KeyState {
+
+        private final String macName;
+
+        private final String consumerSecret;
+
+        private final String tokenSecret;
+
+        private final SecretKeySpec key;
+
+        // never used directly, only cloned
+        private final Mac prototype;
+
+        private final AtomicReferenceArray<Mac> idle = new AtomicReferenceArray<Mac>(IDLE_MACS);
+
+        KeyState(String macName, String consumerSecret, String tokenSecret)
+                throws GeneralSecurityException, UnsupportedEncodingException {
+            this.macName = macName;
+            this.consumerSecret = consumerSecret;
+            this.tokenSecret = tokenSecret;
+            String keyString = OAuth.percentEncode(consumerSecret) + '&'
+                    + OAuth.percentEncode(tokenSecret);
+            this.key = new SecretKeySpec(keyString.getBytes(OAuth.ENCODING), macName);
+            this.prototype = Mac.getInstance(macName);
+            prototype.init(key);
+        }
+
+        boolean matches(String consumerSecret, String tokenSecret) {
+            return equal(this.consumerSecret, consumerSecret)
+                    && equal(this.tokenSecret, tokenSecret);
+        }
+
+        Mac acquire() throws GeneralSecurityException {
+            // threads start looking at different slots so they rarely collide
+            int start = slot();
+            for (int i = 0; i < IDLE_MACS; i++) {
+                int index = (start + i) % IDLE_MACS;
+                Mac mac = idle.get(index);
+                if (mac != null && idle.compareAndSet(index, mac, null)) {
+                    return mac;
+                }
+            }
+            return newMac();
+        }
+
+        void release(Mac mac) {
+            int start = slot();
+            for (int i = 0; i < IDLE_MACS; i++) {
+                if (idle.compareAndSet((start + i) % IDLE_MACS, null, mac)) {
+                    return;
+                }
+            }
+        }
+
+        private static int slot() {
+            return (int) (Thread.currentThread().getId() % IDLE_MACS);
+        }
+
+        private Mac newMac() throws GeneralSecurityException {
+            try {
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                // not all providers can clone their engines
+                Mac mac = Mac.getInstance(macName);
+                mac.init(key);
+                return mac;
+            }
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == b || a != null && a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package oauth.signpost.signature;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import oauth.signpost.OAuth;
+
+/**
+ * <p>
+ * Remembers the normalized form (OAuth Core 1.0, section 9.1.2) of the request
+ * URLs seen by {@link SignatureBaseString}, so that each distinct endpoint is
+ * parsed only once. The cache is keyed by the part of the URL before the query
+ * string or fragment, since normalization drops both anyway.
+ * </p>
+ * <p>
+ * The cache is bounded, and evicts approximately the least recently used URLs
+ * once it is full: a lookup only marks the URL it finds as used, and a clock
+ * sweeping over the cache removes the URLs that haven't been used since it
+ * last passed them. Lookups therefore never lock, and only one thread at a
+ * time sweeps, while the others carry on.
+ * </p>
+ */
+public final class NormalizedUrlCache {
+
+    /**
+     * The maximum number of URLs the shared cache holds.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final NormalizedUrlCache INSTANCE = new NormalizedUrlCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    // the clock hand, only moved by the thread that is sweeping
+    private Iterator<Map.Entry<String, Entry>> hand;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    NormalizedUrlCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new ConcurrentHashMap<String, Entry>(this.capacity * 4 / 3 + 1);
+    }
+
+    /**
+     * @return the cache shared by all signature base strings
+     */
+    public static NormalizedUrlCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return how many lookups found the URL in the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many lookups had to parse the URL
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of URLs currently cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all URLs, but leaves the counters alone.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    NormalizedUrl get(String requestUrl) throws URISyntaxException {
+        String key = stripQueryAndFragment(requestUrl);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            // only write when needed, so that threads hitting the same URL
+            // don't contend for its cache line
+            if (!entry.used) {
+                entry.used = true;
+            }
+            hits.increment();
+            return entry.url;
+        }
+        misses.increment();
+        // racing threads compute the same value
+        NormalizedUrl url = new NormalizedUrl(normalize(key));
+        entries.put(key, new Entry(url));
+        if (entries.size() > capacity) {
+            sweep();
+        }
+        return url;
+    }
+
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (entries.size() > capacity) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = entries.entrySet().iterator();
+                    if (!hand.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<String, Entry> next = hand.next();
+                Entry entry = next.getValue();
+                if (entry.used) {
+                    // a second chance until the hand comes round again
+                    entry.used = false;
+                } else {
+                    entries.remove(next.getKey(), entry);
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    static String normalize(String url) throws URISyntaxException {
+        URI uri = new URI(url);
+        String scheme = uri.getScheme().toLowerCase();
+        String authority = uri.getAuthority().toLowerCase();
+        boolean dropPort = (scheme.equals("http") && uri.getPort() == 80)
+                || (scheme.equals("https") && uri.getPort() == 443);
+        if (dropPort) {
+            // find the last : in the authority
+            int index = authority.lastIndexOf(":");
+            if (index >= 0) {
+                authority = authority.substring(0, index);
+            }
+        }
+        String path = uri.getRawPath();
+        if (path == null || path.length() <= 0) {
+            path = "/"; // conforms to RFC 2616 section 3.2.2
+        }
+        // we know that there is no query and no fragment here.
+        return scheme + "://" + authority + path;
+    }
+
+    private static String stripQueryAndFragment(String url) {
+        for (int i = 0, length = url.length(); i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return url.substring(0, i);
+            }
+        }
+        return url;
+    }
+
+    /**
+     * A normalized URL, along with the percent encoded form that goes into the
+     * signature base string.
+     */
+    static final class NormalizedUrl {
+
+        final String normalized;
+
+        final String encoded;
+
+        final byte[] encodedBytes;
+
+        NormalizedUrl(String normalized) {
+            this.normalized = normalized;
+            this.encoded = OAuth.percentEncode(normalized);
+            try {
+                // percent encoded, hence ASCII
+                this.encodedBytes = encoded.getBytes("US-ASCII");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final NormalizedUrl url;
+
+        // set by lookups, cleared by the clock hand
+        volatile boolean used;
+
+        Entry(NormalizedUrl url) {
+            this.url = url;
+        }
+    }
+}
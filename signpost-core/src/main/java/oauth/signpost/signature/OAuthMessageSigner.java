@@ -25,13 +25,30 @@ public abstract class OAuthMessageSigner implements Serializable {
 
     private static final long serialVersionUID = 4445779788786131202L;
 
-    private String consumerSecret;
+    private volatile String consumerSecret;
 
-    private String tokenSecret;
+    private volatile String tokenSecret;
 
     public abstract String sign(HttpRequest request, HttpParameters requestParameters)
             throws OAuthMessageSignerException;
 
+    /**
+     * Signs the given signature base string. Signers that compute the
+     * signature from the base string should override this to make use of
+     * precomputed base strings, such as those of a
+     * {@link SignatureBaseStringTemplate}. By default, this signs the request
+     * and parameters the base string was created for.
+     *
+     * @param signatureBaseString
+     *        the base string to sign
+     * @return the signature
+     * @throws OAuthMessageSignerException
+     */
+    public String sign(SignatureBaseString signatureBaseString)
+            throws OAuthMessageSignerException {
+        return sign(signatureBaseString.getRequest(), signatureBaseString.getRequestParameters());
+    }
+
     public abstract String getSignatureMethod();
 
     public String getConsumerSecret() {
@@ -1,8 +1,5 @@
 package oauth.signpost.signature;
 
-import java.util.Iterator;
-
-import oauth.signpost.OAuth;
 import oauth.signpost.http.HttpParameters;
 import oauth.signpost.http.HttpRequest;
 
@@ -12,6 +9,9 @@ import oauth.signpost.http.HttpRequest;
  * because most HTTP request implementations do not allow the client to change
  * the URL once the request has been instantiated, so there is no way to append
  * parameters to it.
+ * <p>
+ * The strategy has no state, so a single instance can sign URLs on many
+ * threads at once.
  * 
  * @author Matthias Kaeppler
  */
@@ -22,24 +22,8 @@ public class QueryStringSigningStrategy implements SigningStrategy {
     public String writeSignature(String signature, HttpRequest request,
             HttpParameters requestParameters) {
 
-        // add all (x_)oauth parameters
-        HttpParameters oauthParams = requestParameters.getOAuthParameters();
-        oauthParams.put(OAuth.OAUTH_SIGNATURE, signature, true);
-
-        Iterator<String> iter = oauthParams.keySet().iterator();
-
-        // add the first query parameter (we always have at least the signature)
-        String firstKey = iter.next();
-        StringBuilder sb = new StringBuilder(OAuth.addQueryString(request.getRequestUrl(),
-            oauthParams.getAsQueryString(firstKey)));
-
-        while (iter.hasNext()) {
-            sb.append("&");
-            String key = iter.next();
-            sb.append(oauthParams.getAsQueryString(key));
-        }
-
-        String signedUrl = sb.toString();
+        String signedUrl = QueryStringWriter.write(request.getRequestUrl(), requestParameters,
+            signature);
 
         request.setRequestUrl(signedUrl);
 
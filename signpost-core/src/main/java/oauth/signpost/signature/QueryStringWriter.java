@@ -0,0 +1,85 @@
+package oauth.signpost.signature;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.PercentEncoder;
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * Appends the oauth_* and x_oauth_* parameters, in their sorted order, plus
+ * the signature to a URL. The parameters are read straight from the store,
+ * and the URL is written into a single builder of the exact size.
+ */
+final class QueryStringWriter {
+
+    private static final char[] SIGNATURE = (OAuth.OAUTH_SIGNATURE + "=").toCharArray();
+
+    private QueryStringWriter() {
+    }
+
+    /**
+     * @param url
+     *        the URL to append to, which may have a query string already
+     * @param requestParameters
+     *        the parameters the signature was computed from (already percent
+     *        encoded); an oauth_signature among them is ignored
+     * @param signature
+     *        the signature, not percent encoded
+     * @return the signed URL
+     */
+    static String write(String url, HttpParameters requestParameters, String signature) {
+        int n = requestParameters.entryCount();
+        int length = url.length() + 1 + SIGNATURE.length
+                + PercentEncoder.encodedLength(signature);
+        for (int i = 0; i < n; i++) {
+            String key = requestParameters.keyAt(i);
+            if (isOAuthParameter(key)) {
+                String value = requestParameters.valueAt(i);
+                length += key.length() + (value == null ? 0 : value.length()) + 2;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(url);
+        int q = url.indexOf('?');
+        if (q < 0) {
+            sb.append('?');
+        } else if (q < url.length() - 1 && url.charAt(url.length() - 1) != '&') {
+            sb.append('&');
+        }
+        boolean signatureWritten = false;
+        for (int i = 0; i < n; i++) {
+            String key = requestParameters.keyAt(i);
+            if (!isOAuthParameter(key)) {
+                continue;
+            }
+            if (!signatureWritten && key.compareTo(OAuth.OAUTH_SIGNATURE) > 0) {
+                appendSignature(signature, sb);
+                sb.append('&');
+                signatureWritten = true;
+            }
+            // every value of a key, and a key without values as key=
+            sb.append(key).append('=');
+            String value = requestParameters.valueAt(i);
+            if (value != null) {
+                sb.append(value);
+            }
+            sb.append('&');
+        }
+        if (signatureWritten) {
+            sb.setLength(sb.length() - 1);
+        } else {
+            appendSignature(signature, sb);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isOAuthParameter(String key) {
+        return (key.startsWith("oauth_") || key.startsWith("x_oauth_"))
+                && !OAuth.OAUTH_SIGNATURE.equals(key);
+    }
+
+    private static void appendSignature(String signature, StringBuilder sb) {
+        sb.append(SIGNATURE);
+        PercentEncoder.encode(signature, sb);
+    }
+}
@@ -11,14 +11,16 @@
 package oauth.signpost.signature;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Iterator;
 
+import javax.crypto.Mac;
+
 import oauth.signpost.OAuth;
 import oauth.signpost.exception.OAuthMessageSignerException;
 import oauth.signpost.http.HttpRequest;
 import oauth.signpost.http.HttpParameters;
+import oauth.signpost.signature.NormalizedUrlCache.NormalizedUrl;
 
 public class SignatureBaseString {
 
@@ -41,6 +43,20 @@ public class SignatureBaseString {
         this.requestParameters = requestParameters;
     }
 
+    /**
+     * @return the request this instance operates on
+     */
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the request parameters this instance operates on
+     */
+    public HttpParameters getRequestParameters() {
+        return requestParameters;
+    }
+
     /**
      * Builds the signature base string from the data this instance was
      * configured with.
@@ -51,35 +67,47 @@ public class SignatureBaseString {
     public String generate() throws OAuthMessageSignerException {
 
         try {
-            String normalizedUrl = normalizeRequestUrl();
+            NormalizedUrl normalizedUrl = NormalizedUrlCache.getInstance().get(
+                request.getRequestUrl());
             String normalizedParams = normalizeRequestParameters();
 
-            return request.getMethod() + '&' + OAuth.percentEncode(normalizedUrl) + '&'
+            return request.getMethod() + '&' + normalizedUrl.encoded + '&'
                     + OAuth.percentEncode(normalizedParams);
         } catch (Exception e) {
             throw new OAuthMessageSignerException(e);
         }
     }
 
-    public String normalizeRequestUrl() throws URISyntaxException {
-        URI uri = new URI(request.getRequestUrl());
-        String scheme = uri.getScheme().toLowerCase();
-        String authority = uri.getAuthority().toLowerCase();
-        boolean dropPort = (scheme.equals("http") && uri.getPort() == 80)
-                || (scheme.equals("https") && uri.getPort() == 443);
-        if (dropPort) {
-            // find the last : in the authority
-            int index = authority.lastIndexOf(":");
-            if (index >= 0) {
-                authority = authority.substring(0, index);
-            }
-        }
-        String path = uri.getRawPath();
-        if (path == null || path.length() <= 0) {
-            path = "/"; // conforms to RFC 2616 section 3.2.2
+    /**
+     * Feeds the UTF-8 bytes of the signature base string into the given MAC,
+     * without building the signature base string first. The bytes are the same
+     * as those of {@link #generate()}.
+     * 
+     * @param mac
+     *        an initialized MAC; on success it is ready for
+     *        {@link Mac#doFinal()}
+     * @throws OAuthMessageSignerException
+     */
+    public void writeTo(Mac mac) throws OAuthMessageSignerException {
+        try {
+            NormalizedUrl normalizedUrl = NormalizedUrlCache.getInstance().get(
+                request.getRequestUrl());
+            SignatureBaseStringWriter.get().write(mac, request.getMethod(),
+                normalizedUrl.encodedBytes, requestParameters);
+        } catch (Exception e) {
+            throw new OAuthMessageSignerException(e);
         }
-        // we know that there is no query and no fragment here.
-        return scheme + "://" + authority + path;
+    }
+
+    /**
+     * Normalizes the request URL as per OAuth spec section 9.1.2. Results are
+     * kept in the {@link NormalizedUrlCache}.
+     * 
+     * @return the normalized URL
+     * @throws URISyntaxException
+     */
+    public String normalizeRequestUrl() throws URISyntaxException {
+        return NormalizedUrlCache.getInstance().get(request.getRequestUrl()).normalized;
     }
 
     /**
@@ -0,0 +1,127 @@
+package oauth.signpost.signature;
+
+import java.io.UnsupportedEncodingException;
+
+import javax.crypto.Mac;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.PercentEncoder;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.NormalizedUrlCache.NormalizedUrl;
+
+/**
+ * <p>
+ * The parts of a signature base string that are the same for every request to
+ * an endpoint: the method, the normalized URL and the parameters that never
+ * change, such as the consumer key or a fixed query string. These are encoded
+ * once, when the template is created. Binding the template to a request then
+ * only merges in the parameters that differ from request to request, e.g. the
+ * nonce and timestamp.
+ * </p>
+ * <p>
+ * Templates are immutable and can be shared between threads.
+ * </p>
+ */
+public final class SignatureBaseStringTemplate {
+
+    private final String method;
+
+    private final byte[] prefix;
+
+    private final String[] keys;
+
+    private final String[] values;
+
+    private final byte[][] fragments;
+
+    /**
+     * @param method
+     *        the HTTP method
+     * @param requestUrl
+     *        the request URL; only the part that goes into the normalized URL
+     *        is used
+     * @param staticParameters
+     *        the parameters (already percent encoded) that every request bound
+     *        to this template has
+     * @throws OAuthMessageSignerException
+     *         if the URL cannot be normalized
+     */
+    public SignatureBaseStringTemplate(String method, String requestUrl,
+            HttpParameters staticParameters) throws OAuthMessageSignerException {
+        this.method = method;
+        try {
+            NormalizedUrl normalizedUrl = NormalizedUrlCache.getInstance().get(requestUrl);
+            this.prefix = (method + '&' + normalizedUrl.encoded + '&').getBytes(OAuth.ENCODING);
+        } catch (Exception e) {
+            throw new OAuthMessageSignerException(e);
+        }
+
+        int n = staticParameters.entryCount();
+        this.keys = new String[n];
+        this.values = new String[n];
+        this.fragments = new byte[n][];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            keys[i] = staticParameters.keyAt(i);
+            values[i] = staticParameters.valueAt(i);
+            if (values[i] == null || OAuth.OAUTH_SIGNATURE.equals(keys[i])
+                    || "realm".equals(keys[i])) {
+                continue;
+            }
+            sb.setLength(0);
+            PercentEncoder.encode(keys[i], sb);
+            sb.append("%3D");
+            PercentEncoder.encode(values[i], sb);
+            fragments[i] = toAscii(sb.toString());
+        }
+    }
+
+    /**
+     * @return the HTTP method this template was created for
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the signature base string for a request that matches this
+     * template. {@link SignatureBaseString#writeTo(Mac)} takes the static
+     * parts from the template, while {@link SignatureBaseString#generate()}
+     * builds the base string from scratch.
+     *
+     * @param request
+     *        the request being signed
+     * @param requestParameters
+     *        all parameters of the request, i.e. the template's static
+     *        parameters plus the dynamic ones
+     * @param dynamicParameters
+     *        the parameters (already percent encoded) that are not part of the
+     *        template
+     * @return the signature base string
+     */
+    public SignatureBaseString bind(HttpRequest request, HttpParameters requestParameters,
+            final HttpParameters dynamicParameters) {
+        return new SignatureBaseString(request, requestParameters) {
+            @Override
+            public void writeTo(Mac mac) throws OAuthMessageSignerException {
+                try {
+                    SignatureBaseStringWriter.get().write(mac, prefix, keys, values, fragments,
+                        dynamicParameters);
+                } catch (Exception e) {
+                    throw new OAuthMessageSignerException(e);
+                }
+            }
+        };
+    }
+
+    private static byte[] toAscii(String encoded) {
+        try {
+            // percent encoded, hence ASCII
+            return encoded.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package oauth.signpost.signature;
+
+import java.io.UnsupportedEncodingException;
+
+import javax.crypto.Mac;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.PercentEncoder;
+import oauth.signpost.http.HttpParameters;
+
+/**
+ * Writes a signature base string straight into a {@link Mac}. Characters are
+ * encoded with {@link PercentEncoder} into a small buffer that is handed to
+ * {@link Mac#update(byte[], int, int)} whenever it fills up, so the base
+ * string never exists as a whole. The output is byte for byte what
+ * {@link SignatureBaseString#generate()} returns.
+ * <p>
+ * Instances are not thread safe; use {@link #get()} to obtain the writer of
+ * the calling thread.
+ */
+final class SignatureBaseStringWriter {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final ThreadLocal<SignatureBaseStringWriter> WRITERS = new ThreadLocal<SignatureBaseStringWriter>() {
+        @Override
+        protected SignatureBaseStringWriter initialValue() {
+            return new SignatureBaseStringWriter();
+        }
+    };
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int count;
+
+    private Mac mac;
+
+    // the key of the parameter written last, and where it stands among the
+    // distinct keys
+    private String key;
+
+    private int keyIndex;
+
+    private boolean skip;
+
+    private SignatureBaseStringWriter() {
+    }
+
+    static SignatureBaseStringWriter get() {
+        return WRITERS.get();
+    }
+
+    /**
+     * Feeds the signature base string for the given parts into the MAC. The
+     * MAC is left ready for {@link Mac#doFinal()}.
+     *
+     * @param mac
+     *        the initialized MAC
+     * @param method
+     *        the HTTP method
+     * @param encodedUrl
+     *        the normalized request URL, percent encoded
+     * @param requestParameters
+     *        the request parameters (already percent encoded), or null
+     */
+    void write(Mac mac, String method, byte[] encodedUrl, HttpParameters requestParameters) {
+        this.mac = mac;
+        this.count = 0;
+        try {
+            writeRaw(method);
+            writeByte('&');
+            writeBytes(encodedUrl);
+            writeByte('&');
+            if (requestParameters != null) {
+                writeParameters(requestParameters);
+            }
+            flush();
+        } finally {
+            this.mac = null;
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Feeds the signature base string of a {@link SignatureBaseStringTemplate}
+     * into the MAC: the precomputed prefix, followed by the template's static
+     * parameters merged with the given dynamic ones. Static parameters are
+     * written from their pre-encoded fragments.
+     *
+     * @param mac
+     *        the initialized MAC
+     * @param prefix
+     *        the method and URL part, including the trailing '&'
+     * @param keys
+     *        the sorted keys of the static parameters
+     * @param values
+     *        the values that go with keys
+     * @param fragments
+     *        the encoded "key%3Dvalue" fragments that go with keys, null where
+     *        nothing is written
+     * @param dynamicParameters
+     *        the remaining request parameters (already percent encoded)
+     */
+    void write(Mac mac, byte[] prefix, String[] keys, String[] values, byte[][] fragments,
+            HttpParameters dynamicParameters) {
+        this.mac = mac;
+        this.count = 0;
+        startParameters();
+        try {
+            writeBytes(prefix);
+            int s = 0;
+            int d = 0;
+            int staticCount = keys.length;
+            int dynamicCount = dynamicParameters.entryCount();
+            while (s < staticCount || d < dynamicCount) {
+                int order;
+                if (s == staticCount) {
+                    order = 1;
+                } else if (d == dynamicCount) {
+                    order = -1;
+                } else {
+                    order = compare(keys[s], values[s], dynamicParameters.keyAt(d),
+                        dynamicParameters.valueAt(d));
+                }
+                String key;
+                String value;
+                byte[] fragment;
+                if (order <= 0) {
+                    key = keys[s];
+                    value = values[s];
+                    fragment = fragments[s];
+                    s++;
+                    if (order == 0) {
+                        // the same pair in both, which HttpParameters keeps once
+                        d++;
+                    }
+                } else {
+                    key = dynamicParameters.keyAt(d);
+                    value = dynamicParameters.valueAt(d);
+                    fragment = null;
+                    d++;
+                }
+                if (value == null
+                        && (s < staticCount && keys[s].equals(key) || d < dynamicCount
+                                && dynamicParameters.keyAt(d).equals(key))) {
+                    // a key without values is dropped once the other side has one
+                    continue;
+                }
+                writeParameter(key, value, fragment);
+            }
+            flush();
+        } finally {
+            this.mac = null;
+            this.count = 0;
+            this.key = null;
+        }
+    }
+
+    // mirrors SignatureBaseString.normalizeRequestParameters(), with the
+    // outer round of percent encoding applied on the fly
+    private void writeParameters(HttpParameters requestParameters) {
+        startParameters();
+        try {
+            for (int i = 0, n = requestParameters.entryCount(); i < n; i++) {
+                writeParameter(requestParameters.keyAt(i), requestParameters.valueAt(i), null);
+            }
+        } finally {
+            this.key = null;
+        }
+    }
+
+    private void startParameters() {
+        keyIndex = -1;
+        key = null;
+        skip = false;
+    }
+
+    private void writeParameter(String key, String value, byte[] fragment) {
+        if (!key.equals(this.key)) {
+            this.key = key;
+            keyIndex++;
+            skip = OAuth.OAUTH_SIGNATURE.equals(key) || "realm".equals(key);
+            // a separator even for keys without values, like generate()
+            if (!skip && keyIndex > 0) {
+                writeEscapedAmpersand();
+            }
+        } else if (!skip) {
+            writeEscapedAmpersand();
+        }
+        if (skip || value == null) {
+            return;
+        }
+        if (fragment != null) {
+            writeBytes(fragment);
+            return;
+        }
+        writeEncoded(key);
+        writeEscapedEquals();
+        writeEncoded(value);
+    }
+
+    // the order of HttpParameters: by key, then by value, no value first
+    private static int compare(String key1, String value1, String key2, String value2) {
+        int order = key1.compareTo(key2);
+        if (order != 0 || value1 == value2) {
+            return order;
+        }
+        if (value1 == null) {
+            return -1;
+        }
+        if (value2 == null) {
+            return 1;
+        }
+        return value1.compareTo(value2);
+    }
+
+    private void writeEscapedAmpersand() {
+        ensureCapacity(3);
+        buffer[count++] = '%';
+        buffer[count++] = '2';
+        buffer[count++] = '6';
+    }
+
+    private void writeEscapedEquals() {
+        ensureCapacity(3);
+        buffer[count++] = '%';
+        buffer[count++] = '3';
+        buffer[count++] = 'D';
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) c;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (bytes.length > BUFFER_SIZE - count) {
+            flush();
+            mac.update(bytes);
+        } else {
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+    }
+
+    private void writeRaw(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // HTTP methods are tokens and hence ASCII, but don't fail
+                writeUtf8(s.substring(i));
+                return;
+            }
+            writeByte(c);
+        }
+    }
+
+    private void writeUtf8(String s) {
+        try {
+            byte[] bytes = s.getBytes(OAuth.ENCODING);
+            flush();
+            mac.update(bytes);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeEncoded(String s) {
+        int length = s.length();
+        int start = 0;
+        while (start < length) {
+            int end = PercentEncoder.chunkEnd(s, start, BUFFER_SIZE - count);
+            if (end == start) {
+                flush();
+                continue;
+            }
+            count = PercentEncoder.encode(s, start, end, buffer, count);
+            start = end;
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (count + bytes > BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (count > 0) {
+            mac.update(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package oauth.signpost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import oauth.signpost.http.HttpParameters;
+
+import org.junit.Test;
+
+public class AuthorizationHeaderParserTest {
+
+    @Test
+    public void shouldKeepCommasAndEqualsSignsInQuotedValues() {
+        HttpParameters params = AuthorizationHeaderParser.parse("OAuth realm=\"a,b=c\", "
+                + "oauth_token=\"x=y\",oauth_nonce = \"1,2\"");
+        assertEquals("a,b=c", params.getFirst("realm"));
+        assertEquals("x=y", params.getFirst("oauth_token"));
+        assertEquals("1,2", params.getFirst("oauth_nonce"));
+    }
+
+    @Test
+    public void shouldParseTokensAndEscapes() {
+        HttpParameters params = AuthorizationHeaderParser.parse("oauth \t realm=example , "
+                + "a=\"say \\\"hi\\\"\", b=\"back\\\\slash\"");
+        assertEquals("example", params.getFirst("realm"));
+        assertEquals("say \"hi\"", params.getFirst("a"));
+        assertEquals("back\\slash", params.getFirst("b"));
+    }
+
+    @Test
+    public void shouldLeaveValuesEncoded() {
+        HttpParameters params = AuthorizationHeaderParser.parse("OAuth oauth_token=\"a%20b\"");
+        assertEquals("a%20b", params.getFirst("oauth_token"));
+        assertEquals("a b", params.getFirst("oauth_token", true));
+    }
+
+    @Test
+    public void shouldIgnoreOtherSchemes() {
+        HttpParameters params = new HttpParameters();
+        assertFalse(AuthorizationHeaderParser.parse("Basic dXNlcjpwYXNz", params));
+        assertFalse(AuthorizationHeaderParser.parse("OAuth2 token=\"x\"", params));
+        assertFalse(AuthorizationHeaderParser.parse(null, params));
+        assertTrue(params.isEmpty());
+    }
+
+    @Test
+    public void shouldSkipMalformedElements() {
+        HttpParameters params = AuthorizationHeaderParser.parse("OAuth ,, novalue, =\"x\", "
+                + "a=\"1\" junk, b=\"unterminated, c=3");
+        assertEquals(2, params.size());
+        assertEquals("1", params.getFirst("a"));
+        assertEquals("unterminated, c=3", params.getFirst("b"));
+    }
+
+    @Test
+    public void shouldReadBackRandomlyFormattedHeaders() {
+        Random random = new Random(23);
+        String[] spaces = { "", " ", "  ", "\t" };
+        for (int n = 0; n < 2000; n++) {
+            List<String> names = new ArrayList<String>();
+            List<String> values = new ArrayList<String>();
+            StringBuilder header = new StringBuilder(random.nextBoolean() ? "OAuth" : "oAuTh");
+            header.append(' ');
+            int count = random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                String name = "p" + i;
+                String value = randomValue(random);
+                boolean quoted = random.nextInt(4) > 0 || !isToken(value);
+                names.add(name);
+                values.add(value);
+                if (i > 0) {
+                    header.append(spaces[random.nextInt(spaces.length)]).append(',');
+                }
+                header.append(spaces[random.nextInt(spaces.length)]).append(name);
+                header.append(spaces[random.nextInt(spaces.length)]).append('=');
+                header.append(spaces[random.nextInt(spaces.length)]);
+                if (quoted) {
+                    header.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\""))
+                            .append('"');
+                } else {
+                    header.append(value);
+                }
+            }
+            header.append(spaces[random.nextInt(spaces.length)]);
+
+            HttpParameters params = AuthorizationHeaderParser.parse(header.toString());
+            assertEquals(header.toString(), count, params.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(header.toString(), values.get(i), params.getFirst(names.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotThrowOnGarbage() {
+        Random random = new Random(5);
+        String alphabet = "OAuth =,\"\\ab\t";
+        for (int n = 0; n < 10000; n++) {
+            StringBuilder header = new StringBuilder(random.nextBoolean() ? "OAuth " : "");
+            for (int i = random.nextInt(30); i > 0; i--) {
+                header.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            AuthorizationHeaderParser.parse(header.toString());
+        }
+    }
+
+    private static String randomValue(Random random) {
+        String alphabet = "abc%20=,\" \\";
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(8); i > 0; i--) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    // values that survive being written without quotes
+    private static boolean isToken(String value) {
+        return value.length() > 0 && value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf(' ') < 0 && value.indexOf('\\') < 0;
+    }
+}
@@ -0,0 +1,130 @@
+package oauth.signpost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import oauth.signpost.http.HttpParameters;
+
+import org.junit.Test;
+
+public class FormDecoderTest {
+
+    private static final String[] SAMPLES = { "", "a", "a=", "=b", "a=1&b=2", "a=1&a=2&a=1",
+            "&a=1", "a=1&&b=2", "a=1&", "&&", "a=b=c", "q=%C3%A9+%E4%B8%AD%F0%9F%98%80",
+            "%26key%3D=%25value+", "x=Grüße+aus+Köln", "a&b=1&c&d",
+            "oauth_token=abc&oauth_token_secret=d%2Be" };
+
+    @Test
+    public void shouldDecodeLikeUrlDecoder() throws Exception {
+        for (String sample : SAMPLES) {
+            assertDecodedEverywhere(sample);
+        }
+        Random random = new Random(7);
+        String[] tokens = { "a", "b", "=", "&", "+", "%20", "%C3", "%A9", "é", "\u4e2d" };
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--) {
+                sb.append(tokens[random.nextInt(tokens.length)]);
+            }
+            assertDecodedEverywhere(sb.toString());
+        }
+    }
+
+    @Test
+    public void shouldKeepNewlines() throws Exception {
+        HttpParameters params = FormDecoder.decode(new ByteArrayInputStream(
+            "a=line1\nline2&b=2\r\n".getBytes("UTF-8")), 100);
+        assertEquals("line1\nline2", params.getFirst("a"));
+        assertEquals("2\r\n", params.getFirst("b"));
+    }
+
+    @Test
+    public void shouldEnforceMaximumSize() throws Exception {
+        byte[] form = "a=12345".getBytes("UTF-8");
+        assertEquals("12345", FormDecoder.decode(new ByteArrayInputStream(form), 7).getFirst("a"));
+        try {
+            FormDecoder.decode(new ByteArrayInputStream(form), 6);
+            fail("expected the document to be refused");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("6"));
+        }
+
+        byte[] large = new byte[5000];
+        Arrays.fill(large, (byte) 'x');
+        large[0] = 'k';
+        large[1] = '=';
+        assertEquals(4998, FormDecoder.decode(new ByteArrayInputStream(large), 5000).getFirst("k")
+                .length());
+    }
+
+    @Test
+    public void shouldDecodeByteBuffers() throws Exception {
+        byte[] form = "xxa=%C3%A9&b".getBytes("UTF-8");
+        ByteBuffer direct = ByteBuffer.allocateDirect(form.length);
+        direct.put(form).flip();
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(form), direct }) {
+            buffer.position(2);
+            HttpParameters params = FormDecoder.decode(buffer);
+            assertEquals("é", params.getFirst("a"));
+            assertTrue(params.containsKey("b"));
+            assertNull(params.getFirst("b"));
+            assertEquals(buffer.limit(), buffer.position());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIncompleteEscapes() {
+        FormDecoder.decode("a=%4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIllegalHexCharacters() throws Exception {
+        byte[] form = "a=%4G".getBytes("UTF-8");
+        FormDecoder.decode(form, 0, form.length);
+    }
+
+    private void assertDecodedEverywhere(String form) throws Exception {
+        String expected = toString(legacyDecode(form));
+        assertEquals(form, expected, toString(FormDecoder.decode(form)));
+        byte[] bytes = form.getBytes("UTF-8");
+        assertEquals(form, expected, toString(FormDecoder.decode(bytes, 0, bytes.length)));
+        assertEquals(form, expected, toString(FormDecoder.decode(new ByteArrayInputStream(bytes),
+            bytes.length)));
+    }
+
+    // what OAuth.decodeForm(String) used to do
+    private static HttpParameters legacyDecode(String form) throws Exception {
+        HttpParameters params = new HttpParameters();
+        if (form.length() == 0) {
+            return params;
+        }
+        for (String nvp : form.split("\\&")) {
+            int equals = nvp.indexOf('=');
+            if (equals < 0) {
+                params.putNull(URLDecoder.decode(nvp, "UTF-8"), null);
+            } else {
+                params.put(URLDecoder.decode(nvp.substring(0, equals), "UTF-8"), URLDecoder
+                        .decode(nvp.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static String toString(HttpParameters params) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < params.entryCount(); i++) {
+            sb.append('[').append(params.keyAt(i)).append("]=[").append(params.valueAt(i)).append(
+                "] ");
+        }
+        return sb.toString();
+    }
+}
@@ -5,6 +5,7 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,12 +14,24 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import oauth.signpost.SigningMetrics.Stage;
+import oauth.signpost.basic.HistogramSigningMetrics;
+import oauth.signpost.basic.UrlStringRequestAdapter;
 import oauth.signpost.exception.OAuthExpectationFailedException;
+import oauth.signpost.exception.OAuthMessageSignerException;
 import oauth.signpost.http.HttpParameters;
 import oauth.signpost.http.HttpRequest;
 import oauth.signpost.signature.HmacSha1MessageSigner;
 import oauth.signpost.signature.OAuthMessageSigner;
+import oauth.signpost.signature.PlainTextMessageSigner;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -31,19 +44,19 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
 
     protected OAuthConsumer consumer;
 
-    protected abstract OAuthConsumer buildConsumer(String consumerKey, String consumerSecret,
+    protected abstract AbstractOAuthConsumer buildConsumer(String consumerKey, String consumerSecret,
             OAuthMessageSigner messageSigner);
 
     @Test(expected = OAuthExpectationFailedException.class)
     public void shouldThrowIfConsumerKeyNotSet() throws Exception {
-        OAuthConsumer consumer = buildConsumer(null, CONSUMER_SECRET, null);
+        AbstractOAuthConsumer consumer = buildConsumer(null, CONSUMER_SECRET, null);
         consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
         consumer.sign(httpGetMock);
     }
 
     @Test(expected = OAuthExpectationFailedException.class)
     public void shouldThrowIfConsumerSecretNotSet() throws Exception {
-        OAuthConsumer consumer = buildConsumer(CONSUMER_KEY, null, null);
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, null, null);
         consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
         consumer.sign(httpGetMock);
     }
@@ -51,7 +64,7 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
     @Test
     public void shouldSignHttpRequestMessage() throws Exception {
 
-        OAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
 
         consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
 
@@ -64,7 +77,7 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
     @Test
     public void shouldSignUrl() throws Exception {
 
-        OAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
 
         consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
 
@@ -149,7 +162,7 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
 
     @Test
     public void shouldPercentEncodeOAuthParameters() throws Exception {
-        OAuthConsumer consumer = buildConsumer("1%2", CONSUMER_SECRET, null);
+        AbstractOAuthConsumer consumer = buildConsumer("1%2", CONSUMER_SECRET, null);
         consumer.setTokenWithSecret("3 4", TOKEN_SECRET);
 
         consumer.sign(httpGetMock);
@@ -184,7 +197,7 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
         for (int i = 0; i < 10; i++) {
             initRequestMocks();
 
-            final OAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+            final AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
             consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
             Thread t1 = new Thread() {
 
@@ -223,9 +236,367 @@ public abstract class OAuthConsumerTest extends SignpostTestBase {
             assertThat(headerMap1.getFirst(OAuth.OAUTH_NONCE), not(equalTo(headerMap2.getFirst(OAuth.OAUTH_NONCE))));
         }
     }
+
+    @Test
+    public void shouldSignWithAdditionalParametersOnManyThreads() throws Exception {
+        final AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        HttpParameters additional = new HttpParameters();
+        // added out of order, so that they'd need sorting
+        for (int i = 20; i > 0; i--) {
+            additional.put("x_extra" + i, Integer.toString(i));
+        }
+        consumer.setAdditionalParameters(additional);
+        // the consumer kept its own copy
+        additional.put("x_extra0", "0");
+
+        final int threadCount = 8;
+        final String[] signedNonces = new String[threadCount];
+        final String[] readNonces = new String[threadCount];
+        // assertion errors thrown on the workers don't fail the test by themselves
+        final Throwable[] failures = new Throwable[threadCount];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int idx = i;
+            final HttpRequest request = mock(HttpRequest.class);
+            when(request.getMethod()).thenReturn("GET");
+            when(request.getRequestUrl()).thenReturn("http://www.example.com?t=" + i);
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        HttpParameters params = null;
+                        for (int n = 0; n < 50; n++) {
+                            params = consumer.signForResult(request).getRequestParameters();
+                            assertEquals(Integer.toString(idx), params.getFirst("t"));
+                            for (int x = 1; x <= 20; x++) {
+                                assertEquals(Integer.toString(x), params.getFirst("x_extra" + x));
+                            }
+                            assertNull(params.getFirst("x_extra0"));
+                        }
+                        signedNonces[idx] = params.getFirst(OAuth.OAUTH_NONCE);
+                        readNonces[idx] = OAuth.oauthHeaderToParamsMap(
+                            captureLastHeader(request)).getFirst(OAuth.OAUTH_NONCE);
+                    } catch (Throwable t) {
+                        failures[idx] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new AssertionError(failure);
+            }
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            assertNotNull(signedNonces[i]);
+            assertEquals(signedNonces[i], readNonces[i]);
+        }
+    }
+
+    @Test
+    public void shouldExposeRequestParametersOfLastSignedRequest() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        assertNull(consumer.getRequestParameters());
+
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestUrl()).thenReturn("http://www.example.com?t=1");
+        consumer.sign(request);
+        assertEquals("1", consumer.getRequestParameters().getFirst("t"));
+
+        consumer.sign("http://www.example.com?t=2");
+        assertEquals("2", consumer.getRequestParameters().getFirst("t"));
+    }
+
+    @Test
+    public void shouldNotChangeSigningStrategyWhenSigningUrl() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+
+        consumer.sign("http://www.example.com?q=1");
+        consumer.sign(httpGetMock);
+
+        verify(httpGetMock).setHeader(eq("Authorization"),
+                argThat(new IsCompleteListOfOAuthParameters()));
+    }
+
+    @Test
+    public void shouldSignUrlsConcurrentlyWithoutTouchingTheStrategy() throws Exception {
+        final AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Exception[] failures = new Exception[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int idx = i;
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int n = 0; n < 200; n++) {
+                            String url = "http://www.example.com/media/" + idx + "/" + n;
+                            if (n % 2 == 0) {
+                                url += "?size=large";
+                            }
+                            String signed = consumer.sign(url);
+                            assertTrue(signed, signed.startsWith(url + (n % 2 == 0 ? "&" : "?")));
+                            HttpParameters params = OAuth.decodeForm(signed.substring(signed
+                                    .indexOf('?') + 1));
+                            assertEquals(1, params.get(OAuth.OAUTH_SIGNATURE).size());
+
+                            // header signing on the same consumer must be unaffected
+                            UrlStringRequestAdapter request = new UrlStringRequestAdapter(url);
+                            SigningResult result = consumer.signForResult(request);
+                            assertEquals(url, request.getRequestUrl());
+                            assertTrue(result.getWrittenValue().startsWith("OAuth "));
+                        }
+                    } catch (Exception e) {
+                        failures[idx] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+            if (failures[i] != null) {
+                throw failures[i];
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnSigningResult() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+
+        SigningResult result = consumer.signForResult(httpGetMockWithQueryString);
+
+        assertSame(httpGetMockWithQueryString, result.getRequest());
+        assertNotNull(result.getSignature());
+        assertTrue(result.getDurationNanos() >= 0);
+        verify(httpGetMockWithQueryString).setHeader("Authorization", result.getWrittenValue());
+
+        HttpParameters oauthParams = result.getOAuthParameters();
+        assertAllOAuthParametersExist(oauthParams);
+        assertNull(oauthParams.getFirst("foo"));
+        assertEquals(OAuth.percentEncode(result.getSignature()),
+            oauthParams.getFirst(OAuth.OAUTH_SIGNATURE));
+        assertEquals("bar", result.getRequestParameters().getFirst("foo"));
+
+        // results are not retained by the consumer
+        assertNull(consumer.getRequestParameters());
+
+        // copies handed out by the result must not write through
+        oauthParams.remove(OAuth.OAUTH_NONCE);
+        result.getRequestParameters().get(OAuth.OAUTH_NONCE).clear();
+        assertNotNull(result.getOAuthParameters().getFirst(OAuth.OAUTH_NONCE));
+        assertNotNull(result.getRequestParameters().getFirst(OAuth.OAUTH_NONCE));
+    }
+
+    @Test
+    public void shouldReportEveryStageToSigningMetrics() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        HistogramSigningMetrics metrics = new HistogramSigningMetrics();
+        consumer.setSigningMetrics(metrics);
+
+        consumer.sign(httpGetMockWithQueryString);
+        consumer.createRequestTemplate("GET", "http://www.example.com").sign(
+            new UrlStringRequestAdapter("http://www.example.com"));
+
+        assertEquals(2, metrics.getSignedCount());
+        assertEquals(1, metrics.getStageHistogram(Stage.COLLECT_PARAMETERS).getCount());
+        assertEquals(1, metrics.getStageHistogram(Stage.READ_BODY).getCount());
+        assertEquals(2, metrics.getStageHistogram(Stage.COMPLETE_PARAMETERS).getCount());
+        assertEquals(2, metrics.getStageHistogram(Stage.SIGN).getCount());
+        assertEquals(2, metrics.getStageHistogram(Stage.WRITE_SIGNATURE).getCount());
+        long stages = 0;
+        for (Stage stage : Stage.values()) {
+            stages += metrics.getStageHistogram(stage).getTotalNanos();
+        }
+        assertTrue(stages <= metrics.getRequestHistogram().getTotalNanos());
+        assertEquals(0, metrics.getFailureCount());
+
+        consumer.setMessageSigner(new PlainTextMessageSigner() {
+
+            @Override
+            public String sign(HttpRequest request, HttpParameters requestParams)
+                    throws OAuthMessageSignerException {
+                throw new OAuthMessageSignerException("broken");
+            }
+        });
+        try {
+            consumer.sign(httpGetMockWithQueryString);
+            fail("expected OAuthMessageSignerException");
+        } catch (OAuthMessageSignerException e) {
+        }
+        assertEquals(1, metrics.getFailureCount(Stage.SIGN));
+        assertEquals(2, metrics.getSignedCount());
+
+        consumer.setSigningMetrics(null);
+        consumer.setMessageSigner(new HmacSha1MessageSigner());
+        consumer.sign(httpGetMockWithQueryString);
+        assertEquals(2, metrics.getSignedCount());
+    }
+
+    @Test
+    public void shouldReturnSigningResultForUrl() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+
+        SigningResult result = consumer.signForResult("http://www.example.com?q=1");
+
+        String signedUrl = result.getWrittenValue();
+        assertTrue(signedUrl.startsWith("http://www.example.com?q=1&"));
+        assertEquals(signedUrl, result.getRequest().getRequestUrl());
+        HttpParameters params = OAuth.decodeForm(signedUrl.split("\\?")[1]);
+        assertEquals(result.getSignature(), params.getFirst(OAuth.OAUTH_SIGNATURE));
+    }
+
+    @Test
+    public void shouldTakeNoncesFromNonceGenerator() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        NonceGenerator nonceGenerator = mock(NonceGenerator.class);
+        when(nonceGenerator.generateNonce()).thenReturn("n0nce");
+        consumer.setNonceGenerator(nonceGenerator);
+        assertSame(nonceGenerator, consumer.getNonceGenerator());
+
+        SigningResult result = consumer.signForResult("http://www.example.com");
+        assertEquals("n0nce", result.getOAuthParameters().getFirst(OAuth.OAUTH_NONCE));
+    }
+
+    @Test
+    public void shouldSignLikeSignForResultWhenUsingRequestTemplate() throws Exception {
+        for (OAuthMessageSigner signer : new OAuthMessageSigner[] { new HmacSha1MessageSigner(),
+                new PlainTextMessageSigner() }) {
+            AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+            consumer.setMessageSigner(signer);
+            consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+            NonceGenerator nonceGenerator = mock(NonceGenerator.class);
+            when(nonceGenerator.generateNonce()).thenReturn(NONCE);
+            consumer.setNonceGenerator(nonceGenerator);
+            TimestampSource timestampSource = mock(TimestampSource.class);
+            when(timestampSource.currentTimeSeconds()).thenReturn(Long.parseLong(TIMESTAMP));
+            consumer.setTimestampSource(timestampSource);
+            HttpParameters additionalParameters = new HttpParameters();
+            additionalParameters.put("realm", "http://example.com/", true);
+            additionalParameters.put("x_extra", "a b", true);
+            consumer.setAdditionalParameters(additionalParameters);
+
+            String url = "http://www.example.com/photos?size=original&file=vacation.jpg";
+            SigningResult expected = consumer.signForResult(new UrlStringRequestAdapter(url));
+
+            RequestTemplate template = consumer.createRequestTemplate("GET",
+                "http://www.example.com/photos?size=original");
+            HttpParameters params = new HttpParameters();
+            params.put("file", "vacation.jpg", true);
+            SigningResult actual = template.sign(new UrlStringRequestAdapter(url), params);
+
+            assertEquals(expected.getSignature(), actual.getSignature());
+            assertEquals(expected.getWrittenValue(), actual.getWrittenValue());
+            assertEquals(expected.getRequestParameters().getAsQueryString("x_extra"), actual
+                    .getRequestParameters().getAsQueryString("x_extra"));
+            assertEquals(expected.getRequestParameters().keySet(), actual.getRequestParameters()
+                    .keySet());
+        }
+    }
+
+    @Test(expected = OAuthExpectationFailedException.class)
+    public void shouldRefuseRequestsThatDoNotMatchTemplate() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        RequestTemplate template = consumer.createRequestTemplate("GET",
+            "http://www.example.com/photos");
+        template.sign(new UrlStringRequestAdapter("http://www.example.com/photos2"));
+    }
+
+    @Test
+    public void shouldSignAllRequestsOfBatchWithDistinctNonces() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        List<HttpRequest> requests = new ArrayList<HttpRequest>();
+        for (int i = 0; i < 500; i++) {
+            requests.add(new UrlStringRequestAdapter("http://www.example.com/" + i));
+        }
+        // can't be normalized, but mustn't take the others down with it
+        requests.set(123, new UrlStringRequestAdapter("http://www.example.com/a b"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchSigningResult batch = consumer.signAll(requests, pool);
+            assertEquals(500, batch.size());
+            assertEquals(1, batch.getFailureCount());
+            assertNull(batch.getResult(123));
+            assertTrue(batch.getFailure(123) instanceof OAuthMessageSignerException);
+
+            Set<String> nonces = new HashSet<String>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (i != 123) {
+                    assertSame(requests.get(i), batch.getResult(i).getRequest());
+                    nonces.add(batch.getResult(i).getOAuthParameters().getFirst(OAuth.OAUTH_NONCE));
+                }
+            }
+            assertEquals(499, nonces.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldStreamOutcomesOfBatchToListener() throws Exception {
+        AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET, null);
+        List<HttpRequest> requests = new ArrayList<HttpRequest>();
+        for (int i = 0; i < 2500; i++) {
+            requests.add(new UrlStringRequestAdapter("http://www.example.com/?i=" + i));
+        }
+        final AtomicLongArray signed = new AtomicLongArray(requests.size());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            consumer.signAll(requests, pool, new SigningListener() {
+                public void onSigned(long index, SigningResult result) {
+                    assertTrue(result.getRequest().getRequestUrl().endsWith("=" + index));
+                    signed.incrementAndGet((int) index);
+                }
+
+                public void onFailed(long index, HttpRequest request, Exception failure) {
+                    fail(failure.toString());
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < signed.length(); i++) {
+            assertEquals(1, signed.get(i));
+        }
+    }
+
+    private String captureLastHeader(HttpRequest request) {
+        ArgumentCaptor<String> header = ArgumentCaptor.forClass(String.class);
+        verify(request, atLeastOnce()).setHeader(eq("Authorization"), header.capture());
+        return header.getValue();
+    }
+
     // @Test
     // public void shouldSupport2LeggedOAuth() throws Exception {
-    // OAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET,
+    // AbstractOAuthConsumer consumer = buildConsumer(CONSUMER_KEY, CONSUMER_SECRET,
     // null);
     //
     // // note how we do not set a token and secret; should still include the
@@ -1,8 +1,11 @@
 package oauth.signpost;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,6 +15,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.util.concurrent.ExecutionException;
 
 import oauth.signpost.basic.DefaultOAuthConsumer;
 import oauth.signpost.exception.OAuthExpectationFailedException;
@@ -137,6 +141,74 @@ public abstract class OAuthProviderTest extends SignpostTestBase {
         assertEquals("3", provider.getResponseParameters().getFirst("c"));
     }
 
+    @Test
+    public void shouldKeepHandshakeStateInFlow() throws Exception {
+        OAuthFlow flow = provider.newFlow(consumerMock);
+        assertSame(consumerMock, flow.getConsumer());
+
+        ((OAuthProviderMock) provider).mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&"
+                + OAuth.OAUTH_TOKEN_SECRET + "=" + TOKEN_SECRET + "&"
+                + OAuth.OAUTH_CALLBACK_CONFIRMED + "=true&a=1");
+        String url = flow.retrieveRequestToken("http://www.example.com");
+
+        verify(consumerMock).setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        assertEquals(AUTHORIZE_WEBSITE_URL + "?" + OAuth.OAUTH_TOKEN + "=" + TOKEN, url);
+        assertTrue(flow.isOAuth10a());
+        assertEquals(1, flow.getResponseParameters().size());
+        assertEquals("1", flow.getResponseParameters().getFirst("a"));
+
+        ((OAuthProviderMock) provider).mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&"
+                + OAuth.OAUTH_TOKEN_SECRET + "=" + TOKEN_SECRET + "&b=2");
+        flow.retrieveAccessToken("verifier");
+
+        assertEquals(1, flow.getResponseParameters().size());
+        assertEquals("2", flow.getResponseParameters().getFirst("b"));
+
+        // the provider's own state is untouched
+        assertFalse(provider.isOAuth10a());
+        assertTrue(provider.getResponseParameters().isEmpty());
+    }
+
+    @Test(expected = OAuthExpectationFailedException.class)
+    public void shouldThrowWhenFlowGetsAccessTokenBeforeRequestToken() throws Exception {
+        when(consumerMock.getToken()).thenReturn(null);
+        provider.newFlow(consumerMock).retrieveAccessToken(null);
+    }
+
+    @Test
+    public void shouldRetrieveTokensAsynchronously() throws Exception {
+        ((OAuthProviderMock) provider).mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&"
+                + OAuth.OAUTH_TOKEN_SECRET + "=" + TOKEN_SECRET + "&"
+                + OAuth.OAUTH_CALLBACK_CONFIRMED + "=true&a=1");
+        String url = provider.retrieveRequestTokenAsync(consumerMock, "http://www.example.com")
+            .toCompletableFuture().get();
+
+        verify(consumerMock).setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        assertEquals(AUTHORIZE_WEBSITE_URL + "?" + OAuth.OAUTH_TOKEN + "=" + TOKEN, url);
+        assertTrue(provider.isOAuth10a());
+        assertEquals("1", provider.getResponseParameters().getFirst("a"));
+
+        ((OAuthProviderMock) provider).mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&"
+                + OAuth.OAUTH_TOKEN_SECRET + "=" + TOKEN_SECRET + "&b=2");
+        OAuthFlow flow = provider.newFlow(consumerMock);
+        flow.setOAuth10a(true);
+        flow.retrieveAccessTokenAsync("verifier").toCompletableFuture().get();
+
+        assertEquals("2", flow.getResponseParameters().getFirst("b"));
+        assertEquals("1", provider.getResponseParameters().getFirst("a"));
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyWhenAsyncRetrievalFails() throws Exception {
+        when(consumerMock.getToken()).thenReturn(null);
+        try {
+            provider.retrieveAccessTokenAsync(consumerMock, null).toCompletableFuture().get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof OAuthExpectationFailedException);
+        }
+    }
+
     @Test
     public void shouldBeSerializable() throws Exception {
         // the mock consumer isn't serializable, thus set a normal one
@@ -107,4 +107,10 @@ public class OAuthTest {
         assertEquals("OAuth realm=\"http://x.com\", oauth_token=\"x%25y\"", OAuth
             .prepareOAuthHeader("realm", "http://x.com", "oauth_token", "x%y"));
     }
+
+    @Test
+    public void shouldTreatNullHeaderElementAsEmpty() {
+        assertEquals("=\"x\"", OAuth.toHeaderElement(null, "x"));
+        assertEquals("oauth_token=\"\"", OAuth.toHeaderElement("oauth_token", null));
+    }
 }
@@ -0,0 +1,127 @@
+package oauth.signpost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.gdata.util.common.base.PercentEscaper;
+
+public class PercentEncoderTest {
+
+    private static final PercentEscaper ESCAPER = new PercentEscaper("-._~", false);
+
+    private static final String[] SAMPLES = { "", "abcXYZ019-._~", " ", "%", "a b&c=d+e",
+            ":/?#[]@!$&'()*+,;=", "éü", "中文", "😀", "\u007f\u0080߿ࠀ￿" };
+
+    @Test
+    public void shouldMatchPercentEscaper() throws Exception {
+        for (String sample : SAMPLES) {
+            assertEncodedEverywhere(sample);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEncodedEverywhere(randomString(random));
+        }
+    }
+
+    @Test
+    public void shouldNotCopyStringsThatNeedNoEncoding() {
+        String s = "abc-._~123";
+        assertFalse(PercentEncoder.needsEncoding(s));
+        assertSame(s, OAuth.percentEncode(s));
+        assertTrue(PercentEncoder.needsEncoding("a b"));
+    }
+
+    @Test
+    public void shouldEncodeInChunks() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("x 😀é");
+        }
+        String s = sb.toString();
+
+        byte[] chunk = new byte[16];
+        StringBuilder result = new StringBuilder();
+        int start = 0;
+        while (start < s.length()) {
+            int end = PercentEncoder.chunkEnd(s, start, chunk.length);
+            assertTrue(end > start);
+            int written = PercentEncoder.encode(s, start, end, chunk, 0);
+            result.append(new String(chunk, 0, written));
+            start = end;
+        }
+        assertEquals(ESCAPER.escape(s), result.toString());
+    }
+
+    @Test
+    public void shouldLeaveBufferUntouchedOnOverflow() {
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(8),
+                ByteBuffer.allocateDirect(8) }) {
+            buffer.put((byte) 'x');
+            try {
+                PercentEncoder.encode("a b c", buffer);
+                fail("expected an overflow");
+            } catch (BufferOverflowException e) {
+                assertEquals(1, buffer.position());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnpairedSurrogates() {
+        PercentEncoder.encode("a\udc00", new StringBuilder());
+    }
+
+    private void assertEncodedEverywhere(String s) throws Exception {
+        String expected = ESCAPER.escape(s);
+        assertEquals(expected, OAuth.percentEncode(s));
+        assertEquals(expected.length(), PercentEncoder.encodedLength(s));
+
+        StringBuilder sb = new StringBuilder("x");
+        PercentEncoder.encode(s, sb);
+        assertEquals("x" + expected, sb.toString());
+
+        byte[] bytes = new byte[expected.length() + 2];
+        assertEquals(expected.length() + 1, PercentEncoder.encode(s, bytes, 1));
+        assertEquals(expected, new String(bytes, 1, expected.length(), "US-ASCII"));
+
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(expected.length() + 1),
+                ByteBuffer.allocateDirect(expected.length() + 1) }) {
+            buffer.put((byte) 'x');
+            PercentEncoder.encode(s, buffer);
+            buffer.flip();
+            byte[] written = new byte[buffer.remaining()];
+            buffer.get(written);
+            assertEquals("x" + expected, new String(written, "US-ASCII"));
+        }
+    }
+
+    private String randomString(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(20);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(4)) {
+            case 0:
+                sb.append((char) random.nextInt(128));
+                break;
+            case 1:
+                sb.append((char) (0x80 + random.nextInt(0x780)));
+                break;
+            case 2:
+                sb.append((char) (0x800 + random.nextInt(0xD000 - 0x800)));
+                break;
+            default:
+                sb.appendCodePoint(0x10000 + random.nextInt(0x100000));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,6 @@
 package oauth.signpost.basic;
 
-import oauth.signpost.OAuthConsumer;
+import oauth.signpost.AbstractOAuthConsumer;
 import oauth.signpost.OAuthConsumerTest;
 import oauth.signpost.signature.OAuthMessageSigner;
 
@@ -17,7 +17,7 @@ public class DefaultOAuthConsumerTest extends OAuthConsumerTest {
     }
 
     @Override
-    protected OAuthConsumer buildConsumer(String consumerKey, String consumerSecret,
+    protected AbstractOAuthConsumer buildConsumer(String consumerKey, String consumerSecret,
             OAuthMessageSigner messageSigner) {
         return new DefaultOAuthConsumer(consumerKey, consumerSecret);
     }
@@ -1,10 +1,39 @@
 package oauth.signpost.basic;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import oauth.signpost.AbstractOAuthProvider;
 import oauth.signpost.OAuth;
+import oauth.signpost.OAuthFlow;
 import oauth.signpost.OAuthProvider;
 import oauth.signpost.OAuthProviderTest;
+import oauth.signpost.exception.OAuthCommunicationException;
+import oauth.signpost.http.HttpParameters;
 import oauth.signpost.mocks.DefaultOAuthProviderMock;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnit44Runner;
 
@@ -22,4 +51,161 @@ public class DefaultOAuthProviderTest extends OAuthProviderTest {
         }
         return new DefaultOAuthProvider(requestTokenUrl, accessTokenUrl, websiteUrl);
     }
+
+    @Test
+    public void shouldDisconnectByDefault() throws Exception {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+
+        provider.closeConnection(new HttpURLConnectionRequestAdapter(connection),
+            new HttpURLConnectionResponseAdapter(connection));
+
+        verify(connection).disconnect();
+    }
+
+    @Test
+    public void shouldDrainResponseInsteadOfDisconnectingWhenKeepingAlive() throws Exception {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        ByteArrayInputStream body = new ByteArrayInputStream(new byte[5000]);
+        when(connection.getInputStream()).thenReturn(body);
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        provider.setKeepAlive(true);
+
+        provider.closeConnection(new HttpURLConnectionRequestAdapter(connection),
+            new HttpURLConnectionResponseAdapter(connection));
+
+        assertEquals(0, body.available());
+        verify(connection, never()).disconnect();
+    }
+
+    @Test
+    public void shouldDrainErrorStreamWhenKeepingAlive() throws Exception {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        ByteArrayInputStream body = new ByteArrayInputStream("denied".getBytes());
+        when(connection.getInputStream()).thenThrow(new IOException("401"));
+        when(connection.getErrorStream()).thenReturn(body);
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        provider.setKeepAlive(true);
+
+        provider.closeConnection(new HttpURLConnectionRequestAdapter(connection),
+            new HttpURLConnectionResponseAdapter(connection));
+
+        assertEquals(0, body.available());
+        verify(connection, never()).disconnect();
+    }
+
+    @Test
+    public void shouldDisconnectWhenKeepingAliveWithoutResponse() throws Exception {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        provider.setKeepAlive(true);
+
+        provider.closeConnection(new HttpURLConnectionRequestAdapter(connection), null);
+
+        verify(connection).disconnect();
+    }
+
+    @Test
+    public void shouldRetrieveFlowTokensThroughOverriddenRetrieveToken() throws Exception {
+        final List<String> endpoints = Collections.synchronizedList(new ArrayList<String>());
+        @SuppressWarnings("serial")
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL) {
+
+            @Override
+            protected void retrieveToken(OAuthFlow flow, String endpointUrl,
+                    HttpParameters customOAuthParams) {
+                endpoints.add(endpointUrl);
+                flow.getConsumer().setTokenWithSecret(TOKEN, TOKEN_SECRET);
+                HttpParameters params = new HttpParameters();
+                params.put("endpoint", endpointUrl);
+                flow.setResponseParameters(params);
+            }
+
+            @Override
+            protected CompletionStage<Void> retrieveTokenAsync(OAuthFlow flow,
+                    String endpointUrl, HttpParameters customOAuthParams) {
+                retrieveToken(flow, endpointUrl, customOAuthParams);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+
+        OAuthFlow flow = provider.newFlow(new DefaultOAuthConsumer(CONSUMER_KEY,
+                CONSUMER_SECRET));
+        flow.retrieveRequestToken(OAuth.OUT_OF_BAND);
+        assertEquals(REQUEST_TOKEN_ENDPOINT_URL, flow.getResponseParameters().getFirst(
+            "endpoint"));
+        flow.retrieveAccessTokenAsync("verifier").toCompletableFuture().get();
+
+        assertEquals(Arrays.asList(REQUEST_TOKEN_ENDPOINT_URL, ACCESS_TOKEN_ENDPOINT_URL),
+            endpoints);
+        assertEquals(ACCESS_TOKEN_ENDPOINT_URL, flow.getResponseParameters().getFirst(
+            "endpoint"));
+        assertTrue(provider.getResponseParameters().isEmpty());
+    }
+
+    @Test
+    public void shouldCopyHandshakeStateOfOtherProvidersIntoFlow() throws Exception {
+        OAuthProvider provider = mock(OAuthProvider.class);
+        DefaultOAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        HttpParameters params = new HttpParameters();
+        params.put("a", "1");
+        when(provider.retrieveRequestToken(consumer, OAuth.OUT_OF_BAND)).thenReturn(
+            AUTHORIZE_WEBSITE_URL);
+        when(provider.getResponseParameters()).thenReturn(params);
+        when(provider.isOAuth10a()).thenReturn(true);
+
+        OAuthFlow flow = new OAuthFlow(provider, consumer);
+
+        assertEquals(AUTHORIZE_WEBSITE_URL, flow.retrieveRequestToken(OAuth.OUT_OF_BAND));
+        assertTrue(flow.isOAuth10a());
+        assertEquals("1", flow.getResponseParameters().getFirst("a"));
+
+        flow.retrieveAccessToken("verifier");
+        verify(provider).setOAuth10a(true);
+        verify(provider).retrieveAccessToken(consumer, "verifier");
+    }
+
+    @Test
+    public void shouldSendAsynchronouslyOnBoundedPoolOfItsOwnByDefault() throws Exception {
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) provider.getExecutor();
+
+        assertSame(executor, provider.getExecutor());
+        assertEquals(AbstractOAuthProvider.DEFAULT_EXECUTOR_THREADS,
+            executor.getMaximumPoolSize());
+        assertEquals(AbstractOAuthProvider.DEFAULT_EXECUTOR_QUEUE_SIZE, executor.getQueue()
+            .remainingCapacity());
+        assertTrue(executor.allowsCoreThreadTimeOut());
+        assertNotSame(executor, new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL).getExecutor());
+    }
+
+    @Test
+    public void shouldFailAsynchronousHandshakeWhenExecutorIsFull() throws Exception {
+        DefaultOAuthProvider provider = new DefaultOAuthProvider(REQUEST_TOKEN_ENDPOINT_URL,
+                ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        provider.setExecutor(new Executor() {
+
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("full");
+            }
+        });
+
+        try {
+            provider.retrieveRequestTokenAsync(
+                new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET), OAuth.OUT_OF_BAND)
+                .toCompletableFuture().get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof OAuthCommunicationException);
+            assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+        }
+    }
 }
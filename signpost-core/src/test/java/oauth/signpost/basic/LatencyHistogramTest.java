@@ -0,0 +1,82 @@
+package oauth.signpost.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldCountEveryValueToWithinThreePercent() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertTrue(value + " above bucket end " + highest, value <= highest);
+            if (bucket > 0) {
+                assertTrue(value + " below bucket start",
+                    value > LatencyHistogram.highestValueIn(bucket - 1));
+            }
+            assertTrue(value + " in bucket ending at " + highest,
+                highest - value <= Math.max(1, value / 32));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueIn(LatencyHistogram
+                .bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void shouldReportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        long[] values = new long[10000];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + random.nextInt(1000000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double p : new double[] { 1, 50, 90, 99, 99.9, 100 }) {
+            long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(p);
+            assertTrue(p + ": " + actual + " vs " + expected, actual >= expected
+                    && actual - expected <= expected / 32);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(values.length, histogram.getCount());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void shouldNotLoseValuesRecordedConcurrently() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i % 100);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, histogram.getCount());
+        assertEquals(400000L * 99 / 2, histogram.getTotalNanos());
+        assertEquals(99, histogram.getMaxNanos());
+        assertEquals(49, histogram.getValueAtPercentile(50));
+    }
+}
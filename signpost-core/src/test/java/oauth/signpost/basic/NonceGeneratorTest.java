@@ -0,0 +1,74 @@
+package oauth.signpost.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import oauth.signpost.NonceGenerator;
+import oauth.signpost.PercentEncoder;
+
+import org.junit.Test;
+
+public class NonceGeneratorTest {
+
+    @Test
+    public void shouldGenerateUrlSafeSecureNonces() throws Exception {
+        Set<String> nonces = generateConcurrently(new SecureRandomNonceGenerator());
+        for (String nonce : nonces) {
+            assertEquals(22, nonce.length());
+            assertFalse(PercentEncoder.needsEncoding(nonce));
+        }
+    }
+
+    @Test
+    public void shouldGenerateUrlSafeThreadLocalRandomNonces() throws Exception {
+        for (String nonce : generateConcurrently(new ThreadLocalRandomNonceGenerator())) {
+            assertFalse(PercentEncoder.needsEncoding(nonce));
+        }
+    }
+
+    @Test
+    public void shouldEncodeTheLastByteWithoutPadding() {
+        // the 22nd character only carries two bits, so it can only ever be one
+        // of four characters
+        Set<Character> lastChars = new HashSet<Character>();
+        NonceGenerator generator = new SecureRandomNonceGenerator();
+        for (int i = 0; i < 1000; i++) {
+            String nonce = generator.generateNonce();
+            lastChars.add(nonce.charAt(nonce.length() - 1));
+        }
+        assertEquals(new HashSet<Character>(Arrays.asList('A', 'Q', 'g', 'w')),
+            lastChars);
+    }
+
+    // nonces from several threads, more than one block's worth each
+    private Set<String> generateConcurrently(final NonceGenerator generator)
+            throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 1000;
+        final Set<String> nonces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        nonces.add(generator.generateNonce());
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue("nonces must be unique", nonces.size() == threads * perThread);
+        return nonces;
+    }
+}
@@ -0,0 +1,201 @@
+package oauth.signpost.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import oauth.signpost.AbstractOAuthProvider;
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.SignpostTestBase;
+import oauth.signpost.exception.OAuthNotAuthorizedException;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.http.HttpResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnit44Runner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnit44Runner.class)
+public class SkewCompensatingTimestampSourceTest extends SignpostTestBase {
+
+    // an hour ahead of us
+    private static final long SKEW_MILLIS = 3600 * 1000L;
+
+    @Test
+    public void shouldIgnoreSmallDifferences() {
+        SkewCompensatingTimestampSource source = new SkewCompensatingTimestampSource();
+        long now = System.currentTimeMillis();
+        assertFalse(source.synchronize(now + 1500, now));
+        assertEquals(0, source.getOffsetMillis());
+
+        assertTrue(source.synchronize(now - SKEW_MILLIS, now));
+        assertEquals(-SKEW_MILLIS, source.getOffsetMillis());
+        assertFalse(source.synchronize(now - SKEW_MILLIS + 1000, now));
+        assertEquals((now - SKEW_MILLIS) / 1000, source.currentTimeSeconds(), 5);
+    }
+
+    @Test
+    public void shouldRetryOnceWhenTimestampRefused() throws Exception {
+        long serverSeconds = (System.currentTimeMillis() + SKEW_MILLIS) / 1000;
+        StubProvider provider = new StubProvider();
+        provider.respond(401, "oauth_problem=timestamp_refused&oauth_acceptable_timestamps="
+                + (serverSeconds - 300) + "-" + (serverSeconds + 300), null);
+        provider.respond(200, "oauth_token=a&oauth_token_secret=b", null);
+
+        OAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        provider.retrieveRequestToken(consumer, OAuth.OUT_OF_BAND);
+
+        assertEquals("a", consumer.getToken());
+        assertEquals(2, provider.timestamps.size());
+        long retried = provider.timestamps.get(1);
+        assertTrue(Math.abs(retried - serverSeconds) < 5);
+
+        // later requests use the right time straight away
+        provider.respond(200, "oauth_token=c&oauth_token_secret=d", null);
+        provider.retrieveAccessToken(consumer, null);
+        assertEquals(3, provider.timestamps.size());
+        assertTrue(Math.abs(provider.timestamps.get(2) - serverSeconds) < 5);
+    }
+
+    @Test
+    public void shouldLearnFromDateHeaders() throws Exception {
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(
+            System.currentTimeMillis() - SKEW_MILLIS).atOffset(ZoneOffset.UTC));
+        StubProvider provider = new StubProvider();
+        provider.respond(401, "signature_invalid", date);
+        provider.respond(200, "oauth_token=a&oauth_token_secret=b", date);
+
+        DefaultOAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        provider.retrieveRequestToken(consumer, OAuth.OUT_OF_BAND);
+
+        assertEquals("a", consumer.getToken());
+        assertTrue(Math.abs(((SkewCompensatingTimestampSource) consumer.getTimestampSource())
+            .getOffsetMillis() + SKEW_MILLIS) < 5000);
+    }
+
+    @Test
+    public void shouldNotRetryWhenSkewIsAcceptable() throws Exception {
+        // far enough to adjust the clock, but not to refuse the timestamp
+        long skew = 60 * 1000L;
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(
+            System.currentTimeMillis() + skew).atOffset(ZoneOffset.UTC));
+        StubProvider provider = new StubProvider();
+        provider.respond(401, "token_rejected", date);
+        provider.respond(200, "oauth_token=a&oauth_token_secret=b", date);
+
+        DefaultOAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        try {
+            provider.retrieveRequestToken(consumer, OAuth.OUT_OF_BAND);
+            fail("expected the request to be refused");
+        } catch (OAuthNotAuthorizedException e) {
+            assertEquals("token_rejected", e.getResponseBody());
+        }
+        assertEquals(1, provider.timestamps.size());
+        assertTrue(Math.abs(((SkewCompensatingTimestampSource) consumer.getTimestampSource())
+            .getOffsetMillis() - skew) < 5000);
+    }
+
+    @Test
+    public void shouldNotRetryOtherFailures() throws Exception {
+        StubProvider provider = new StubProvider();
+        provider.respond(401, "oauth_problem=signature_invalid", null);
+        provider.respond(200, "oauth_token=a&oauth_token_secret=b", null);
+
+        try {
+            provider.retrieveRequestToken(new DefaultOAuthConsumer(CONSUMER_KEY,
+                CONSUMER_SECRET), OAuth.OUT_OF_BAND);
+            fail("expected the request to be refused");
+        } catch (OAuthNotAuthorizedException e) {
+            assertEquals("oauth_problem=signature_invalid", e.getResponseBody());
+        }
+        assertEquals(1, provider.timestamps.size());
+    }
+
+    @Test
+    public void shouldPassRefusedBodyOnAsSent() throws Exception {
+        String body = "oauth_problem=signature_invalid\r\nGr\u00fc\u00dfe";
+        StubProvider provider = new StubProvider();
+        provider.respond(401, body.getBytes("ISO-8859-1"), null, "text/plain; charset=iso-8859-1");
+        try {
+            provider.retrieveRequestToken(new DefaultOAuthConsumer(CONSUMER_KEY,
+                CONSUMER_SECRET), OAuth.OUT_OF_BAND);
+            fail("expected the request to be refused");
+        } catch (OAuthNotAuthorizedException e) {
+            assertEquals(body, e.getResponseBody());
+        }
+
+        provider.respond(401, body.getBytes("UTF-8"), null, "text/plain");
+        try {
+            provider.retrieveRequestToken(new DefaultOAuthConsumer(CONSUMER_KEY,
+                CONSUMER_SECRET), OAuth.OUT_OF_BAND);
+            fail("expected the request to be refused");
+        } catch (OAuthNotAuthorizedException e) {
+            assertEquals(body, e.getResponseBody());
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubProvider extends AbstractOAuthProvider {
+
+        private final LinkedList<HttpResponse> responses = new LinkedList<HttpResponse>();
+
+        private final List<Long> timestamps = new ArrayList<Long>();
+
+        StubProvider() {
+            super(REQUEST_TOKEN_ENDPOINT_URL, ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        }
+
+        void respond(int statusCode, String body, String date) throws Exception {
+            respond(statusCode, body.getBytes("UTF-8"), date, null);
+        }
+
+        void respond(int statusCode, byte[] body, String date, String contentType)
+                throws Exception {
+            HttpResponse response = mock(HttpResponse.class);
+            when(response.getStatusCode()).thenReturn(statusCode);
+            when(response.getContent()).thenReturn(new ByteArrayInputStream(body));
+            when(response.getHeader("Date")).thenReturn(date);
+            when(response.getHeader("Content-Type")).thenReturn(contentType);
+            responses.add(response);
+        }
+
+        @Override
+        protected HttpRequest createRequest(String endpointUrl) throws Exception {
+            HttpRequest request = mock(HttpRequest.class);
+            when(request.getMethod()).thenReturn("POST");
+            when(request.getRequestUrl()).thenReturn(endpointUrl);
+            doAnswer(new Answer<Object>() {
+                public Object answer(InvocationOnMock invocation) {
+                    String header = (String) invocation.getArguments()[1];
+                    timestamps.add(Long.parseLong(OAuth.oauthHeaderToParamsMap(header)
+                        .getFirst(OAuth.OAUTH_TIMESTAMP)));
+                    return null;
+                }
+            }).when(request).setHeader(eq(OAuth.HTTP_AUTHORIZATION_HEADER),
+                anyString());
+            return request;
+        }
+
+        @Override
+        protected HttpResponse sendRequest(HttpRequest request) throws Exception {
+            return responses.removeFirst();
+        }
+    }
+}
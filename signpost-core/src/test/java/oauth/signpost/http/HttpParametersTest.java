@@ -4,9 +4,16 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -70,4 +77,193 @@ public class HttpParametersTest {
         assertTrue(oauthParams.containsKey("oauth_token"));
         assertTrue(oauthParams.containsKey("x_oauth_token"));
     }
+
+    @Test
+    public void shouldSortAndDeduplicateLazily() {
+        HttpParameters params = new HttpParameters();
+        params.put("b", "2");
+        params.put("a", "2");
+        params.put("a", "1");
+        params.put("b", "2");
+        params.putNull("c", null);
+        params.putNull("a", null);
+
+        assertEquals(4, params.entryCount());
+        assertEquals("a", params.keyAt(0));
+        assertEquals("1", params.valueAt(0));
+        assertEquals("2", params.valueAt(1));
+        assertEquals("b", params.keyAt(2));
+        assertEquals("c", params.keyAt(3));
+        assertEquals(null, params.valueAt(3));
+
+        assertEquals(3, params.size());
+        assertEquals(3, params.keySet().size());
+        assertTrue(params.get("c").isEmpty());
+        assertEquals("", params.getAsQueryString("c"));
+
+        // the first value replaces the placeholder
+        params.put("c", "3");
+        assertEquals(4, params.entryCount());
+        assertEquals("3", params.getFirst("c"));
+    }
+
+    @Test
+    public void shouldBehaveLikeTreeMapOfTreeSets() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            HttpParameters params = new HttpParameters();
+            TreeMap<String, SortedSet<String>> expected = new TreeMap<String, SortedSet<String>>();
+            // enough pairs to sort by heap as well as by insertion
+            int pairs = random.nextInt(100);
+            for (int i = 0; i < pairs; i++) {
+                String key = "k" + random.nextInt(20);
+                String value = "v" + random.nextInt(5);
+                params.put(key, value);
+                if (!expected.containsKey(key)) {
+                    expected.put(key, new TreeSet<String>());
+                }
+                expected.get(key).add(value);
+            }
+            assertEquals(expected.keySet(), params.keySet());
+            for (String key : expected.keySet()) {
+                assertEquals(expected.get(key), params.get(key));
+                assertEquals(expected.get(key).first(), params.getFirst(key));
+            }
+        }
+    }
+
+    @Test
+    public void shouldMergePairsAddedBetweenReads() {
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            HttpParameters params = new HttpParameters();
+            TreeMap<String, SortedSet<String>> expected = new TreeMap<String, SortedSet<String>>();
+            int pairs = random.nextInt(200);
+            for (int i = 0; i < pairs; i++) {
+                String key = "k" + random.nextInt(40);
+                int action = random.nextInt(10);
+                if (action == 0) {
+                    // replaces the key's values, the way mergeOAuthParameters does
+                    TreeSet<String> values = new TreeSet<String>();
+                    values.add("v" + random.nextInt(5));
+                    params.put(key, values);
+                    expected.put(key, values);
+                } else if (action == 1) {
+                    params.putNull(key, null);
+                    if (!expected.containsKey(key)) {
+                        expected.put(key, new TreeSet<String>());
+                    }
+                } else {
+                    String value = "v" + random.nextInt(5);
+                    params.put(key, value);
+                    if (!expected.containsKey(key)) {
+                        expected.put(key, new TreeSet<String>());
+                    }
+                    expected.get(key).add(value);
+                }
+                if (random.nextInt(4) == 0) {
+                    // reads in between merge what has been added so far
+                    String probe = "k" + random.nextInt(40);
+                    assertEquals(expected.get(probe), params.get(probe));
+                }
+            }
+            assertEquals(expected.keySet(), params.keySet());
+            for (String key : expected.keySet()) {
+                assertEquals(expected.get(key), params.get(key));
+            }
+            for (int i = 1; i < params.entryCount(); i++) {
+                assertTrue(params.keyAt(i - 1).compareTo(params.keyAt(i)) <= 0);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldLeaveParametersUnchangedWhenReadConcurrently() throws Exception {
+        final HttpParameters shared = new HttpParameters();
+        TreeMap<String, SortedSet<String>> expected = new TreeMap<String, SortedSet<String>>();
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            // adds pairs out of order, one at a time
+            String key = "k" + random.nextInt(100);
+            String value = "v" + random.nextInt(5);
+            shared.put(key, value);
+            if (!expected.containsKey(key)) {
+                expected.put(key, new TreeSet<String>());
+            }
+            expected.get(key).add(value);
+        }
+
+        final List<HttpParameters> copies =
+                Collections.synchronizedList(new ArrayList<HttpParameters>());
+        final List<Throwable> failures =
+                Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            HttpParameters copy = new HttpParameters();
+                            copy.putAll(shared, false);
+                            copies.add(copy);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(expected.keySet(), shared.keySet());
+        for (HttpParameters copy : copies) {
+            assertEquals(expected.keySet(), copy.keySet());
+            for (String key : expected.keySet()) {
+                assertEquals(expected.get(key), copy.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void shouldExposeLiveViews() {
+        HttpParameters params = new HttpParameters();
+        params.put("a", "1");
+        params.put("b", "1");
+
+        SortedSet<String> a = params.get("a");
+        a.add("2");
+        assertEquals("a=1&a=2", params.getAsQueryString("a"));
+        assertEquals("2", a.last());
+
+        a.remove("1");
+        a.remove("2");
+        assertTrue(params.containsKey("a"));
+        assertEquals(1, params.size());
+
+        // changing the values of a key while iterating is fine
+        List<String> keys = new ArrayList<String>();
+        for (String key : params.keySet()) {
+            keys.add(key);
+            params.get(key).add("x");
+            params.get(key).add("0");
+        }
+        assertEquals(2, keys.size());
+        assertEquals("a=0&a=x", params.getAsQueryString("a"));
+        assertEquals("b=0&b=1&b=x", params.getAsQueryString("b"));
+
+        Iterator<String> iter = params.keySet().iterator();
+        iter.next();
+        iter.remove();
+        assertEquals(Collections.singleton("b"), params.keySet());
+
+        params.entrySet().iterator().next().setValue(new TreeSet<String>(
+                Collections.singleton("y")));
+        assertEquals("y", params.getFirst("b"));
+        assertEquals(1, params.entryCount());
+    }
 }
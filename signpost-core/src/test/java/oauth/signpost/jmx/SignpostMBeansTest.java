@@ -0,0 +1,122 @@
+package oauth.signpost.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.SignpostTestBase;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.exception.OAuthNotAuthorizedException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.mocks.DefaultOAuthProviderMock;
+import oauth.signpost.signature.PlainTextMessageSigner;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnit44Runner;
+
+@RunWith(MockitoJUnit44Runner.class)
+public class SignpostMBeansTest extends SignpostTestBase {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void shouldExposeConsumerStatistics() throws Exception {
+        DefaultOAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+        ObjectName name = SignpostMBeans.objectName("Consumer", "test");
+
+        ConsumerStatistics statistics = SignpostMBeans.register(consumer, "test");
+        try {
+            assertSame(statistics, consumer.getSigningMetrics());
+            assertTrue(server.isRegistered(name));
+
+            consumer.sign(new UrlStringRequestAdapter("http://www.example.com?a=1"));
+            when(httpPostMock.getContentType()).thenReturn(OAuth.FORM_ENCODED);
+            when(httpPostMock.getMessagePayload()).thenReturn(
+                new ByteArrayInputStream("b=2&c=3".getBytes("UTF-8")));
+            consumer.sign(httpPostMock);
+
+            consumer.setMessageSigner(new PlainTextMessageSigner() {
+
+                @Override
+                public String sign(HttpRequest request, HttpParameters requestParams)
+                        throws OAuthMessageSignerException {
+                    throw new OAuthMessageSignerException(new IllegalStateException());
+                }
+            });
+            try {
+                consumer.sign(httpGetMock);
+                fail("expected OAuthMessageSignerException");
+            } catch (OAuthMessageSignerException e) {
+            }
+
+            assertEquals(2L, server.getAttribute(name, "SignedCount"));
+            assertEquals(1L, server.getAttribute(name, "FailureCount"));
+            assertEquals(1L, server.getAttribute(name, "BodyCount"));
+            assertEquals(7L, server.getAttribute(name, "MeanBodyBytes"));
+            assertTrue((Double) server.getAttribute(name, "P99SigningMicros") > 0);
+            TabularData failures = (TabularData) server.getAttribute(name, "FailuresByCause");
+            assertEquals(1, failures.size());
+            assertEquals(1L, failures.get(new Object[] { IllegalStateException.class.getName() })
+                .get("value"));
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "SignedCount"));
+            assertTrue(statistics.getFailuresByCause().isEmpty());
+        } finally {
+            SignpostMBeans.unregister(consumer, "test");
+        }
+        assertFalse(server.isRegistered(name));
+        assertNull(consumer.getSigningMetrics());
+    }
+
+    @Test
+    public void shouldExposeProviderStatistics() throws Exception {
+        DefaultOAuthProviderMock provider = new DefaultOAuthProviderMock(
+                REQUEST_TOKEN_ENDPOINT_URL, ACCESS_TOKEN_ENDPOINT_URL, AUTHORIZE_WEBSITE_URL);
+        provider.mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&" + OAuth.OAUTH_TOKEN_SECRET
+                + "=" + TOKEN_SECRET);
+        ObjectName name = SignpostMBeans.objectName("Provider", "test");
+
+        ProviderStatistics statistics = SignpostMBeans.register(provider, "test");
+        try {
+            OAuthConsumer consumer = mock(OAuthConsumer.class);
+            when(consumer.getConsumerKey()).thenReturn(CONSUMER_KEY);
+            when(consumer.getConsumerSecret()).thenReturn(CONSUMER_SECRET);
+            provider.retrieveRequestToken(consumer, OAuth.OUT_OF_BAND);
+            statistics.responseReceived(401);
+            statistics.retrievalFailed(new OAuthNotAuthorizedException(), 1000000L);
+
+            assertEquals(1L, server.getAttribute(name, "RetrievalCount"));
+            assertEquals(1L, server.getAttribute(name, "FailureCount"));
+            assertEquals(1L, server.getAttribute(name, "NotAuthorizedCount"));
+            assertTrue((Double) server.getAttribute(name, "MaxRetrievalMillis") > 0);
+            TabularData statusCodes = (TabularData) server.getAttribute(name, "StatusCodes");
+            assertEquals(2, statusCodes.size());
+            assertEquals(1L, statusCodes.get(new Object[] { "200" }).get("value"));
+            assertEquals(1L, statusCodes.get(new Object[] { "401" }).get("value"));
+        } finally {
+            SignpostMBeans.unregister(provider, "test");
+        }
+        assertFalse(server.isRegistered(name));
+        assertNull(provider.getProviderMetrics());
+    }
+}
@@ -0,0 +1,117 @@
+package oauth.signpost.signature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.Random;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class AuthorizationHeaderWriterTest {
+
+    private static final String SIGNATURE = "tR3+Ty81lMeYAr/Fid0kMTYa/WM=";
+
+    @Test
+    public void shouldWriteWhatTheStrategyUsedTo() {
+        Random random = new Random(11);
+        String[] keys = { "realm", "oauth_consumer_key", "oauth_nonce", "oauth_signature_method",
+                "oauth_timestamp", "oauth_token", "oauth_version", "x_oauth_extra", "file", "a",
+                "z" };
+        for (int n = 0; n < 500; n++) {
+            HttpParameters params = new HttpParameters();
+            for (int i = random.nextInt(12); i > 0; i--) {
+                params.put(keys[random.nextInt(keys.length)], "v" + random.nextInt(3), true);
+            }
+            assertEquals(legacyWrite(params, SIGNATURE), AuthorizationHeaderWriter.write(params,
+                SIGNATURE));
+        }
+    }
+
+    @Test
+    public void shouldIgnoreExistingSignatureAndWriteEmptyValues() {
+        HttpParameters params = new HttpParameters();
+        params.put(OAuth.OAUTH_SIGNATURE, "stale");
+        params.putNull(OAuth.OAUTH_TOKEN, null);
+        assertEquals("OAuth oauth_signature=\"new\", oauth_token=\"\"", AuthorizationHeaderWriter
+                .write(params, "new"));
+    }
+
+    @Test
+    public void shouldOnlyAllocateTheHeader() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+                && allocations.isThreadAllocatedMemoryEnabled());
+
+        HttpParameters params = new HttpParameters();
+        params.put("realm", "http://photos.example.net/", true);
+        params.put(OAuth.OAUTH_CONSUMER_KEY, "dpf43f3p2l4k3l03");
+        params.put(OAuth.OAUTH_TOKEN, "nnch734d00sl2jdk");
+        params.put(OAuth.OAUTH_SIGNATURE_METHOD, "HMAC-SHA1");
+        params.put(OAuth.OAUTH_TIMESTAMP, "1191242096");
+        params.put(OAuth.OAUTH_NONCE, "kllo9940pd9333jh");
+        params.put(OAuth.OAUTH_VERSION, "1.0");
+        params.put("file", "vacation.jpg");
+        int headerLength = AuthorizationHeaderWriter.write(params, SIGNATURE).length();
+
+        long writer = bytesPerCall(allocations, params, true);
+        long legacy = bytesPerCall(allocations, params, false);
+        // strings take a byte per Latin-1 char since Java 9, two before
+        int bytesPerChar = System.getProperty("java.specification.version").startsWith("1.") ? 2
+                : 1;
+        // the builder's array and the string's copy of it, plus object headers
+        assertTrue("allocated " + writer + " bytes per header of " + headerLength,
+            writer <= 2 * headerLength * bytesPerChar + 128);
+        assertTrue("allocated " + writer + " bytes, legacy " + legacy, writer * 2 < legacy);
+    }
+
+    private long bytesPerCall(com.sun.management.ThreadMXBean allocations,
+            HttpParameters params, boolean writer) {
+        int calls = 20000;
+        long threadId = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        // the lowest of a few rounds, so that JIT warm-up doesn't count
+        for (int round = 0; round < 5; round++) {
+            long before = allocations.getThreadAllocatedBytes(threadId);
+            int sink = 0;
+            for (int i = 0; i < calls; i++) {
+                String header = writer ? AuthorizationHeaderWriter.write(params, SIGNATURE)
+                        : legacyWrite(params, SIGNATURE);
+                sink += header.length();
+            }
+            long used = allocations.getThreadAllocatedBytes(threadId) - before;
+            assertTrue(sink > 0);
+            best = Math.min(best, used / calls);
+        }
+        return best;
+    }
+
+    // what AuthorizationHeaderSigningStrategy used to do
+    private static String legacyWrite(HttpParameters requestParameters, String signature) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("OAuth ");
+        if (requestParameters.containsKey("realm")) {
+            sb.append(requestParameters.getAsHeaderElement("realm"));
+            sb.append(", ");
+        }
+        HttpParameters oauthParams = requestParameters.getOAuthParameters();
+        oauthParams.put(OAuth.OAUTH_SIGNATURE, signature, true);
+        Iterator<String> iter = oauthParams.keySet().iterator();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            sb.append(oauthParams.getAsHeaderElement(key));
+            if (iter.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.toString();
+    }
+}
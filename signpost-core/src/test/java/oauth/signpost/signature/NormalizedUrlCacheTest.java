@@ -0,0 +1,53 @@
+package oauth.signpost.signature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NormalizedUrlCacheTest {
+
+    @Test
+    public void shouldCountHitsAndMisses() throws Exception {
+        NormalizedUrlCache cache = new NormalizedUrlCache(64);
+
+        NormalizedUrlCache.NormalizedUrl url = cache.get("HTTP://Example.com:80/a?q=1");
+        assertEquals("http://example.com/a", url.normalized);
+        assertEquals("http%3A%2F%2Fexample.com%2Fa", url.encoded);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // query strings and fragments don't matter
+        assertSame(url, cache.get("HTTP://Example.com:80/a?q=2"));
+        assertSame(url, cache.get("HTTP://Example.com:80/a#top"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldStayWithinCapacity() throws Exception {
+        NormalizedUrlCache cache = new NormalizedUrlCache(64);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("http://example.com/" + i);
+        }
+        assertTrue(cache.size() <= 64);
+        assertEquals(1000, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldKeepUrlsThatAreInUse() throws Exception {
+        NormalizedUrlCache cache = new NormalizedUrlCache(8);
+        NormalizedUrlCache.NormalizedUrl hot = cache.get("http://example.com/hot");
+        for (int i = 0; i < 100; i++) {
+            assertSame(hot, cache.get("http://example.com/hot"));
+            cache.get("http://example.com/" + i);
+        }
+        assertTrue(cache.size() <= 8);
+        assertEquals(101, cache.getMissCount());
+    }
+}
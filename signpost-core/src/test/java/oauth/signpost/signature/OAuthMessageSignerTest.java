@@ -63,4 +63,77 @@ public class OAuthMessageSignerTest extends SignpostTestBase {
 
         assertEquals("0gCtTYQAxqCKhIE0sltgx7UgHkAs10vrpuYE7xpRBnE=", signer.sign(request, params));
     }
+
+    @Test
+    public void shouldComputeSameHmacSignaturesOnAnyThread() throws Exception {
+        final OAuthMessageSigner sha1 = new HmacSha1MessageSigner();
+        sha1.setConsumerSecret(CONSUMER_SECRET);
+        sha1.setTokenSecret(TOKEN_SECRET);
+        final OAuthMessageSigner sha256 = new HmacSha256MessageSigner();
+        sha256.setConsumerSecret(CONSUMER_SECRET);
+        sha256.setTokenSecret(TOKEN_SECRET);
+
+        final HttpRequest request = mock(HttpRequest.class);
+        when(request.getRequestUrl()).thenReturn("http://photos.example.net/photos");
+        when(request.getMethod()).thenReturn("GET");
+
+        final HttpParameters params = new HttpParameters();
+        params.putAll(OAUTH_PARAMS);
+        params.put("file", "vacation.jpg");
+        params.put("size", "original");
+
+        // alternate algorithms so that the Mac clones pooled by each signer
+        // get handed back and reused several times
+        for (int i = 0; i < 3; i++) {
+            assertEquals("tR3+Ty81lMeYAr/Fid0kMTYa/WM=", sha1.sign(request, params));
+            assertEquals("0gCtTYQAxqCKhIE0sltgx7UgHkAs10vrpuYE7xpRBnE=",
+                sha256.sign(request, params));
+        }
+
+        final String[] signatures = new String[2];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    signatures[0] = sha1.sign(request, params);
+                    signatures[1] = sha256.sign(request, params);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals("tR3+Ty81lMeYAr/Fid0kMTYa/WM=", signatures[0]);
+        assertEquals("0gCtTYQAxqCKhIE0sltgx7UgHkAs10vrpuYE7xpRBnE=", signatures[1]);
+    }
+
+    @Test
+    public void shouldRekeyWhenTokenSecretChanges() throws Exception {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getRequestUrl()).thenReturn("http://photos.example.net/photos");
+        when(request.getMethod()).thenReturn("GET");
+
+        HttpParameters params = new HttpParameters();
+        params.putAll(OAUTH_PARAMS);
+        params.put("file", "vacation.jpg");
+        params.put("size", "original");
+
+        OAuthMessageSigner signer = new HmacSha1MessageSigner();
+        signer.setConsumerSecret(CONSUMER_SECRET);
+        signer.setTokenSecret("rotated-secret");
+        String rotatedSignature = signer.sign(request, params);
+
+        signer.setTokenSecret(TOKEN_SECRET);
+        assertEquals("tR3+Ty81lMeYAr/Fid0kMTYa/WM=", signer.sign(request, params));
+
+        // a new signer with the same secrets keys its own engine
+        OAuthMessageSigner other = new HmacSha1MessageSigner();
+        other.setConsumerSecret(CONSUMER_SECRET);
+        other.setTokenSecret(TOKEN_SECRET);
+        assertEquals("tR3+Ty81lMeYAr/Fid0kMTYa/WM=", other.sign(request, params));
+
+        other.setTokenSecret("rotated-secret");
+        assertEquals(rotatedSignature, other.sign(request, params));
+    }
 }
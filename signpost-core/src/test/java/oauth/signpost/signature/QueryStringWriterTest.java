@@ -0,0 +1,61 @@
+package oauth.signpost.signature;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.http.HttpParameters;
+
+import org.junit.Test;
+
+public class QueryStringWriterTest {
+
+    private static final String SIGNATURE = "tR3+Ty81lMeYAr/Fid0kMTYa/WM=";
+
+    @Test
+    public void shouldWriteWhatTheStrategyUsedTo() {
+        Random random = new Random(13);
+        String[] keys = { "realm", "oauth_consumer_key", "oauth_nonce", "oauth_signature_method",
+                "oauth_timestamp", "oauth_token", "oauth_version", "x_oauth_extra", "file", "a",
+                "z" };
+        String[] urls = { "http://example.com", "http://example.com/p?file=a.jpg" };
+        for (int n = 0; n < 500; n++) {
+            HttpParameters params = new HttpParameters();
+            for (int i = random.nextInt(12); i > 0; i--) {
+                params.put(keys[random.nextInt(keys.length)], "v " + random.nextInt(3), true);
+            }
+            String url = urls[random.nextInt(urls.length)];
+            assertEquals(legacyWrite(url, params, SIGNATURE), QueryStringWriter.write(url, params,
+                SIGNATURE));
+        }
+    }
+
+    @Test
+    public void shouldNotAddSeparatorAfterTrailingDelimiter() {
+        HttpParameters params = new HttpParameters();
+        params.put(OAuth.OAUTH_TOKEN, "t");
+        params.put(OAuth.OAUTH_SIGNATURE, "stale");
+        assertEquals("http://example.com/?oauth_signature=s&oauth_token=t", QueryStringWriter
+                .write("http://example.com/?", params, "s"));
+        assertEquals("http://example.com/?a=1&oauth_signature=s&oauth_token=t", QueryStringWriter
+                .write("http://example.com/?a=1&", params, "s"));
+    }
+
+    // what QueryStringSigningStrategy used to do
+    private static String legacyWrite(String url, HttpParameters requestParameters,
+            String signature) {
+        HttpParameters oauthParams = requestParameters.getOAuthParameters();
+        oauthParams.put(OAuth.OAUTH_SIGNATURE, signature, true);
+        Iterator<String> iter = oauthParams.keySet().iterator();
+        String firstKey = iter.next();
+        StringBuilder sb = new StringBuilder(OAuth.addQueryString(url, oauthParams
+                .getAsQueryString(firstKey)));
+        while (iter.hasNext()) {
+            sb.append("&");
+            sb.append(oauthParams.getAsQueryString(iter.next()));
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,17 @@
 package oauth.signpost.signature;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import oauth.signpost.SignpostTestBase;
+import oauth.signpost.exception.OAuthMessageSignerException;
 import oauth.signpost.http.HttpRequest;
 import oauth.signpost.http.HttpParameters;
 
@@ -145,4 +151,105 @@ public class SignatureBaseStringTest extends SignpostTestBase {
         
         assertEquals("GET&http%3A%2F%2Fexamplemultiple.com%2F&a%255B%255D%3D1%26a%255B%255D%3D2", sbs.generate());
     }
+
+    @Test
+    public void shouldWriteSameBytesAsGenerate() throws Exception {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestUrl()).thenReturn("HTTPS://Example.com:443/a%20b/\u00fc~?x=1");
+
+        HttpParameters params = new HttpParameters();
+        params.put("realm", "example", true);
+        params.put("oauth_signature", "12345", true);
+        params.put("a[]", "1", true);
+        params.put("a[]", "2", true);
+        params.put("empty", "", true);
+        params.putNull("none", null);
+        params.put("unicode", "\u00e9\u4e2d\ud83d\ude00 &=%+", true);
+        assertStreamedEqualsGenerated(request, params);
+
+        // larger than the writer's buffer, so it is fed to the MAC in chunks
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            body.append("\u00e9x ");
+        }
+        params.put("body", body.toString(), true);
+        assertStreamedEqualsGenerated(request, params);
+
+        assertStreamedEqualsGenerated(request, new HttpParameters());
+        assertStreamedEqualsGenerated(request, null);
+    }
+
+    @Test
+    public void shouldWriteSameBytesFromTemplateAsGenerate() throws Exception {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestUrl()).thenReturn("http://example.com/photos?size=original");
+
+        HttpParameters staticParams = new HttpParameters();
+        staticParams.put("realm", "example", true);
+        staticParams.put("a[]", "1", true);
+        staticParams.putNull("none", null);
+        staticParams.put("other", "x", true);
+        staticParams.put("size", "original", true);
+
+        HttpParameters dynamicParams = new HttpParameters();
+        dynamicParams.put("a[]", "1", true);
+        dynamicParams.put("a[]", "2", true);
+        dynamicParams.put("none", "now some", true);
+        dynamicParams.putNull("other", null);
+        dynamicParams.put("b", "\u00e9 &=", true);
+        assertTemplateEqualsGenerated(request, staticParams, dynamicParams);
+
+        assertTemplateEqualsGenerated(request, staticParams, new HttpParameters());
+        assertTemplateEqualsGenerated(request, new HttpParameters(), dynamicParams);
+    }
+
+    @Test(expected = OAuthMessageSignerException.class)
+    public void shouldRejectUnpairedSurrogates() throws Exception {
+        HttpParameters params = new HttpParameters();
+        params.put("a", "\ud83d", false);
+        new SignatureBaseString(httpGetMock, params).writeTo(newMac());
+    }
+
+    private void assertStreamedEqualsGenerated(HttpRequest request, HttpParameters params)
+            throws Exception {
+        SignatureBaseString sbs = new SignatureBaseString(request, params);
+
+        Mac expected = newMac();
+        expected.update(sbs.generate().getBytes("UTF-8"));
+
+        Mac actual = newMac();
+        sbs.writeTo(actual);
+
+        assertArrayEquals(expected.doFinal(), actual.doFinal());
+    }
+
+    private void assertTemplateEqualsGenerated(HttpRequest request, HttpParameters staticParams,
+            HttpParameters dynamicParams) throws Exception {
+        // merged pair by pair; putAll() would replace keys
+        HttpParameters params = new HttpParameters();
+        for (HttpParameters source : new HttpParameters[] { staticParams, dynamicParams }) {
+            for (int i = 0; i < source.entryCount(); i++) {
+                params.put(source.keyAt(i), source.valueAt(i));
+            }
+        }
+        SignatureBaseStringTemplate template = new SignatureBaseStringTemplate("POST",
+            request.getRequestUrl(), staticParams);
+        SignatureBaseString sbs = template.bind(request, params, dynamicParams);
+
+        Mac expected = newMac();
+        expected.update(new SignatureBaseString(request, params).generate().getBytes("UTF-8"));
+
+        Mac actual = newMac();
+        sbs.writeTo(actual);
+
+        assertArrayEquals(expected.doFinal(), actual.doFinal());
+    }
+
+    private Mac newMac() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec("secret".getBytes("UTF-8"), "HmacSHA1"));
+        return mac;
+    }
 }
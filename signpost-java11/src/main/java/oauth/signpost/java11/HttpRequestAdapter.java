@@ -0,0 +1,135 @@
+package oauth.signpost.java11;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.Builder;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * Adapts a {@link java.net.http.HttpRequest.Builder}. Builders can't be read,
+ * so the adapter reads a request built from it when it's created, and writes
+ * the headers and URL the signer sets to both its own view and the builder.
+ * Build the request only after signing.
+ */
+public class HttpRequestAdapter implements HttpRequest {
+
+    private final Builder builder;
+
+    private final java.net.http.HttpRequest request;
+
+    // headers set since the snapshot was taken
+    private final Map<String, String> headers = new TreeMap<String, String>(
+            String.CASE_INSENSITIVE_ORDER);
+
+    private String requestUrl;
+
+    public HttpRequestAdapter(Builder builder) {
+        this.builder = builder;
+        this.request = builder.build();
+        this.requestUrl = request.uri().toString();
+    }
+
+    public String getMethod() {
+        return request.method();
+    }
+
+    public String getRequestUrl() {
+        return requestUrl;
+    }
+
+    public void setRequestUrl(String url) {
+        builder.uri(URI.create(url));
+        this.requestUrl = url;
+    }
+
+    public void setHeader(String name, String value) {
+        builder.setHeader(name, value);
+        headers.put(name, value);
+    }
+
+    public String getHeader(String name) {
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        return request.headers().firstValue(name).orElse(null);
+    }
+
+    public Map<String, String> getAllHeaders() {
+        Map<String, String> all = new HashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            if (!header.getValue().isEmpty()) {
+                all.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        all.putAll(headers);
+        return all;
+    }
+
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    public InputStream getMessagePayload() throws IOException {
+        Optional<BodyPublisher> publisher = request.bodyPublisher();
+        if (!publisher.isPresent() || publisher.get().contentLength() == 0) {
+            return null;
+        }
+        return new ByteArrayInputStream(readFully(publisher.get()));
+    }
+
+    public Object unwrap() {
+        return builder;
+    }
+
+    // publishers can be subscribed to more than once, so this leaves the
+    // body to be sent intact
+    private static byte[] readFully(BodyPublisher publisher) throws IOException {
+        CompletableFuture<byte[]> body = new CompletableFuture<byte[]>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+
+            private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes, 0, bytes.length);
+            }
+
+            public void onError(Throwable failure) {
+                body.completeExceptionally(failure);
+            }
+
+            public void onComplete() {
+                body.complete(out.toByteArray());
+            }
+        });
+        try {
+            return body.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
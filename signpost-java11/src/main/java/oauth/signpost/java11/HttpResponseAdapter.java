@@ -0,0 +1,40 @@
+package oauth.signpost.java11;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Adapts a {@link java.net.http.HttpResponse} whose body has been read into a
+ * byte array, which is how {@link Java11OAuthProvider} receives responses.
+ */
+public class HttpResponseAdapter implements oauth.signpost.http.HttpResponse {
+
+    private final java.net.http.HttpResponse<byte[]> response;
+
+    public HttpResponseAdapter(java.net.http.HttpResponse<byte[]> response) {
+        this.response = response;
+    }
+
+    public InputStream getContent() {
+        byte[] body = response.body();
+        return new ByteArrayInputStream(body == null ? new byte[0] : body);
+    }
+
+    public int getStatusCode() {
+        return response.statusCode();
+    }
+
+    public String getReasonPhrase() {
+        // HTTP/2 has no reason phrases, and HttpClient doesn't expose the
+        // HTTP/1.1 ones
+        return "";
+    }
+
+    public String getHeader(String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    public Object unwrap() {
+        return response;
+    }
+}
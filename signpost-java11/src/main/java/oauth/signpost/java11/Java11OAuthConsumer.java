@@ -0,0 +1,36 @@
+package oauth.signpost.java11;
+
+import java.net.http.HttpRequest.Builder;
+
+import oauth.signpost.AbstractOAuthConsumer;
+import oauth.signpost.http.HttpRequest;
+
+/**
+ * Supports signing requests for {@link java.net.http.HttpClient}. Since
+ * {@link java.net.http.HttpRequest}s are immutable, this consumer signs their
+ * {@link java.net.http.HttpRequest.Builder}s:
+ * 
+ * <pre>
+ * HttpRequest.Builder builder = HttpRequest.newBuilder(uri).GET();
+ * consumer.sign(builder);
+ * client.sendAsync(builder.build(), BodyHandlers.ofString());
+ * </pre>
+ */
+public class Java11OAuthConsumer extends AbstractOAuthConsumer {
+
+    private static final long serialVersionUID = 1L;
+
+    public Java11OAuthConsumer(String consumerKey, String consumerSecret) {
+        super(consumerKey, consumerSecret);
+    }
+
+    @Override
+    protected HttpRequest wrap(Object request) {
+        if (!(request instanceof Builder)) {
+            throw new IllegalArgumentException("This consumer expects requests of type "
+                    + Builder.class.getCanonicalName());
+        }
+
+        return new HttpRequestAdapter((Builder) request);
+    }
+}
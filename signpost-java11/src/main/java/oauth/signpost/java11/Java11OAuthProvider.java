@@ -0,0 +1,76 @@
+package oauth.signpost.java11;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpRequest.Builder;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.CompletionStage;
+
+import oauth.signpost.AbstractOAuthProvider;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.http.HttpResponse;
+
+/**
+ * Fetches tokens with {@link java.net.http.HttpClient}. The asynchronous token
+ * methods use {@link HttpClient#sendAsync}, so no thread waits for the
+ * service provider, and since the client speaks HTTP/2 where the service
+ * provider does, concurrent token requests share its connections. The client
+ * is safe to share, so one provider can run the {@link oauth.signpost.OAuthFlow}s
+ * of all users.
+ */
+public class Java11OAuthProvider extends AbstractOAuthProvider {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient HttpClient httpClient;
+
+    public Java11OAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
+            String authorizationWebsiteUrl) {
+        this(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl,
+                HttpClient.newHttpClient());
+    }
+
+    public Java11OAuthProvider(String requestTokenEndpointUrl, String accessTokenEndpointUrl,
+            String authorizationWebsiteUrl, HttpClient httpClient) {
+        super(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl);
+        this.httpClient = httpClient;
+    }
+
+    public void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    protected HttpRequest createRequest(String endpointUrl) throws Exception {
+        Builder builder = java.net.http.HttpRequest.newBuilder(URI.create(endpointUrl)).POST(
+            BodyPublishers.noBody());
+        return new HttpRequestAdapter(builder);
+    }
+
+    @Override
+    protected HttpResponse sendRequest(HttpRequest request) throws Exception {
+        return new HttpResponseAdapter(httpClient.send(build(request), BodyHandlers
+            .ofByteArray()));
+    }
+
+    @Override
+    protected CompletionStage<HttpResponse> sendRequestAsync(HttpRequest request) {
+        // the body is read in full before the stage completes, so handling
+        // the response never blocks the client's threads
+        return httpClient.sendAsync(build(request), BodyHandlers.ofByteArray())
+            .<HttpResponse> thenApply(HttpResponseAdapter::new);
+    }
+
+    private static java.net.http.HttpRequest build(HttpRequest request) {
+        return ((Builder) request.unwrap()).build();
+    }
+
+    private void readObject(ObjectInputStream stream) throws IOException,
+            ClassNotFoundException {
+        stream.defaultReadObject();
+        httpClient = HttpClient.newHttpClient();
+    }
+}
@@ -0,0 +1,64 @@
+package oauth.signpost.java11;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.SignpostTestBase;
+import oauth.signpost.basic.HttpRequestAdapterTestBase;
+import oauth.signpost.signature.QueryStringSigningStrategy;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnit44Runner;
+
+@RunWith(MockitoJUnit44Runner.class)
+public class HttpRequestAdapterTest extends HttpRequestAdapterTestBase {
+
+    @Override
+    public void prepareRequest() throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(URL))
+            .header(HEADER_NAME, HEADER_VALUE).header("Content-Type", CONTENT_TYPE)
+            .POST(BodyPublishers.ofString(PAYLOAD));
+        request = new HttpRequestAdapter(builder);
+    }
+
+    @Test
+    public void shouldLeaveBodyToBeSent() throws Exception {
+        request.getMessagePayload().close();
+        HttpRequest built = ((HttpRequest.Builder) request.unwrap()).build();
+        HttpRequestAdapter rebuilt = new HttpRequestAdapter(built.newBuilder(built.uri())
+            .POST(built.bodyPublisher().get()));
+        assertEquals(PAYLOAD, new BufferedReader(new InputStreamReader(rebuilt
+            .getMessagePayload())).readLine());
+        assertNull(new HttpRequestAdapter(HttpRequest.newBuilder(URI.create(URL)))
+            .getMessagePayload());
+    }
+
+    @Test
+    public void shouldWriteSignatureToBuilder() throws Exception {
+        OAuthConsumer consumer = new Java11OAuthConsumer(SignpostTestBase.CONSUMER_KEY,
+                SignpostTestBase.CONSUMER_SECRET);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(URL + "?a=1"));
+        consumer.sign(builder);
+        String header = builder.build().headers().firstValue(OAuth.HTTP_AUTHORIZATION_HEADER)
+            .get();
+        assertTrue(header.startsWith("OAuth "));
+        assertTrue(header.contains(OAuth.OAUTH_SIGNATURE));
+
+        consumer.setSigningStrategy(new QueryStringSigningStrategy());
+        builder = HttpRequest.newBuilder(URI.create(URL + "?a=1"));
+        consumer.sign(builder);
+        String query = builder.build().uri().getRawQuery();
+        assertTrue(query.startsWith("a=1&"));
+        assertTrue(query.contains(OAuth.OAUTH_SIGNATURE + "="));
+    }
+}
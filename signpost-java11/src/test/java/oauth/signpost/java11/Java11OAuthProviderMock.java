@@ -0,0 +1,47 @@
+package oauth.signpost.java11;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest.Builder;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.mocks.OAuthProviderMock;
+
+@SuppressWarnings("serial")
+public class Java11OAuthProviderMock extends Java11OAuthProvider implements OAuthProviderMock {
+
+    private HttpResponse<byte[]> responseMock;
+
+    public Java11OAuthProviderMock(String requestTokenUrl, String accessTokenUrl,
+            String websiteUrl) {
+        super(requestTokenUrl, accessTokenUrl, websiteUrl);
+    }
+
+    @Override
+    protected oauth.signpost.http.HttpResponse sendRequest(HttpRequest request) {
+        // HttpClient can't be mocked, but the request must still build
+        ((Builder) request.unwrap()).build();
+        return new HttpResponseAdapter(responseMock);
+    }
+
+    @Override
+    protected CompletionStage<oauth.signpost.http.HttpResponse> sendRequestAsync(
+            HttpRequest request) {
+        return CompletableFuture.completedFuture(sendRequest(request));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void mockConnection(String responseBody) throws Exception {
+        responseMock = mock(HttpResponse.class);
+        when(responseMock.statusCode()).thenReturn(200);
+        when(responseMock.body()).thenReturn(responseBody.getBytes());
+        when(responseMock.headers()).thenReturn(HttpHeaders.of(Collections.emptyMap(), (name,
+                value) -> true));
+    }
+}
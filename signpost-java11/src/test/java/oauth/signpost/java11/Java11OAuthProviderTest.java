@@ -0,0 +1,25 @@
+package oauth.signpost.java11;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthProvider;
+import oauth.signpost.OAuthProviderTest;
+
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnit44Runner;
+
+@RunWith(MockitoJUnit44Runner.class)
+public class Java11OAuthProviderTest extends OAuthProviderTest {
+
+    @Override
+    protected OAuthProvider buildProvider(String requestTokenUrl, String accessTokenUrl,
+            String websiteUrl, boolean mockConnection) throws Exception {
+        if (mockConnection) {
+            Java11OAuthProviderMock provider = new Java11OAuthProviderMock(requestTokenUrl,
+                    accessTokenUrl, websiteUrl);
+            provider.mockConnection(OAuth.OAUTH_TOKEN + "=" + TOKEN + "&"
+                    + OAuth.OAUTH_TOKEN_SECRET + "=" + TOKEN_SECRET);
+            return provider;
+        }
+        return new Java11OAuthProvider(requestTokenUrl, accessTokenUrl, websiteUrl);
+    }
+}
@@ -21,6 +21,7 @@ import oauth.signpost.http.HttpRequest;
 
 import org.mortbay.jetty.HttpFields;
 import org.mortbay.jetty.HttpFields.Field;
+import org.mortbay.jetty.client.Address;
 import org.mortbay.jetty.client.HttpExchange;
 
 public class HttpRequestAdapter implements HttpRequest {
@@ -81,8 +82,17 @@ public class HttpRequestAdapter implements HttpRequest {
     // reconstruct it here.
     private void buildRequestUrl() {
         StringBuilder sb = new StringBuilder();
-        sb.append(request.getScheme()).append("://");
-        sb.append(request.getAddress().toString().replaceAll(":\\d+", ""));
+        String scheme = request.getScheme().toString();
+        sb.append(scheme).append("://");
+        // the address always carries a port; keep it unless it's the default
+        // one for the scheme, or the URL would point at another server
+        Address address = request.getAddress();
+        sb.append(address.getHost());
+        int port = address.getPort();
+        if (!(port == 80 && "http".equalsIgnoreCase(scheme) || port == 443
+                && "https".equalsIgnoreCase(scheme))) {
+            sb.append(':').append(port);
+        }
         if (request.getURI() != null) {
             // the "URI" in Jetty is actually the path... WTF?!
             sb.append(request.getURI());
@@ -1,7 +1,9 @@
 package oauth.signpost.jetty;
 
+import static org.junit.Assert.assertEquals;
 import oauth.signpost.basic.HttpRequestAdapterTestBase;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnit44Runner;
 import org.mortbay.io.ByteArrayBuffer;
@@ -20,4 +22,16 @@ public class HttpRequestAdapterTest extends HttpRequestAdapterTestBase {
         r.setRequestContent(new ByteArrayBuffer(PAYLOAD.getBytes()));
         request = new HttpRequestAdapter(r);
     }
+
+    @Test
+    public void shouldKeepNonDefaultPortInRequestUrl() throws Exception {
+        HttpExchange r = new HttpExchange();
+        r.setURL("http://www.example.com:8080/protected?a=1");
+        assertEquals("http://www.example.com:8080/protected?a=1", new HttpRequestAdapter(r)
+                .getRequestUrl());
+
+        r.setURL("https://www.example.com:443/protected");
+        assertEquals("https://www.example.com/protected", new HttpRequestAdapter(r)
+                .getRequestUrl());
+    }
 }